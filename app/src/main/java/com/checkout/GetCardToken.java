@@ -8,7 +8,6 @@ import android.content.Intent;
 import android.content.res.Resources;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
-import android.os.AsyncTask;
 import android.support.v7.app.ActionBarActivity;
 import android.os.Bundle;
 import android.text.format.DateFormat;
@@ -28,11 +27,9 @@ import com.checkout.exceptions.CardException;
 import com.checkout.exceptions.CheckoutException;
 import com.checkout.httpconnector.Response;
 import com.checkout.models.Card;
-import com.checkout.models.CardToken;
 import com.checkout.models.CardTokenResponse;
 
 import java.io.File;
-import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Locale;
@@ -41,6 +38,7 @@ import java.util.Locale;
 public class GetCardToken extends ActionBarActivity {
 
     private String publicKey = "pk_test_6ff46046-30af-41d9-bf58-929022d2cd14";
+    private final int errorColor = Color.rgb(204, 0, 51);
 
 
     @Override
@@ -62,117 +60,36 @@ public class GetCardToken extends ActionBarActivity {
     }
 
     public void getCardToken(View v) {
-        try {
-            new ConnectionTask().execute("");
-        } catch (Exception e) {
-            e.printStackTrace();
-            goToError();
-        }
-    }
-
-    private void goToError() {
-        Intent intent = new Intent(this, Fail_result.class);
-        startActivity(intent);
-    }
-
-    private void goToSuccess() {
-        Intent intent = new Intent(this, Success_result.class);
-        startActivity(intent);
-    }
-
-
-    class ConnectionTask extends AsyncTask<String, Void, String> {
-
         final EditText name = (EditText) findViewById(R.id.name);
         final EditText numberField = (EditText) findViewById(R.id.number);
         final EditText cvvField = (EditText) findViewById(R.id.cvv);
         final Spinner spinMonth = (Spinner) findViewById(R.id.spinnerMonth);
         final Spinner spinYear = (Spinner) findViewById(R.id.spinnerYear);
-        final int errorColor = Color.rgb(204, 0, 51);
-
-        private boolean validateCardFields(final String number, final String month, final String year, final String cvv) {
-            boolean error = false;
-            clearFieldsError();
-
-            if (!CardValidator.validateCardNumber(number)) {
-                runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        numberField.getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
-                    }
-                });
-                error = true;
-            }
-            if (!CardValidator.validateExpiryDate(month, year)) {
-                runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        spinMonth.getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
-                        spinYear.getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
-                    }
-                });
-                error = true;
-            }
-            if (cvv.equals("")) {
-                runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        cvvField.getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
-                    }
-                });
-                error = true;
-            }
-            return !error;
-        }
 
-        private void clearFieldsError() {
-            runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    cvvField.getBackground().clearColorFilter();
-                    spinMonth.getBackground().clearColorFilter();
-                    spinYear.getBackground().clearColorFilter();
-                    numberField.getBackground().clearColorFilter();
-                }
-            });
+        if (!validateCardFields(numberField.getText().toString(), spinMonth.getSelectedItem().toString(), spinYear.getSelectedItem().toString(), cvvField.getText().toString())) {
+            return;
         }
-
-        @Override
-        protected String doInBackground(String... urls) {
-
-            if (validateCardFields(numberField.getText().toString(), spinMonth.getSelectedItem().toString(), spinYear.getSelectedItem().toString(), cvvField.getText().toString())) {
-                clearFieldsError();
-                try {
-                    Card card = new Card(numberField.getText().toString(), name.getText().toString(), spinMonth.getSelectedItem().toString(), spinYear.getSelectedItem().toString(), cvvField.getText().toString());
-                    CheckoutKit ck = CheckoutKit.getInstance(publicKey);
-                    final Response<CardTokenResponse> resp = ck.createCardToken(card);
-                    if (resp.hasError) {
-                        runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                goToError();
-                            }
-                        });
-                    } else {
-                        CardToken ct = resp.model.getCard();
-                        goToSuccess();
-                        return resp.model.getCardToken();
-                    }
-                } catch (final CardException e) {
+        try {
+            Card card = new Card(numberField.getText().toString(), name.getText().toString(), spinMonth.getSelectedItem().toString(), spinYear.getSelectedItem().toString(), cvvField.getText().toString());
+            CheckoutKit ck = CheckoutKit.getInstance(publicKey);
+            /* The request runs on the executor of CheckoutKit, the callback switches back to the UI thread */
+            ck.createCardTokenAsync(card, new CheckoutCallback<CardTokenResponse>() {
+                @Override
+                public void onResponse(final Response<CardTokenResponse> resp) {
                     runOnUiThread(new Runnable() {
                         @Override
                         public void run() {
-                            if (e.getType().equals(CardException.CardExceptionType.INVALID_CVV)) {
-                                cvvField.getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
-                            } else if (e.getType().equals(CardException.CardExceptionType.INVALID_EXPIRY_DATE)) {
-                                spinMonth.getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
-                                spinYear.getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
-                            } else if (e.getType().equals(CardException.CardExceptionType.INVALID_NUMBER)) {
-                                numberField.getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
+                            if (resp.hasError) {
+                                goToError();
+                            } else {
+                                goToSuccess();
                             }
                         }
                     });
-                } catch (CheckoutException | IOException e2) {
+                }
+
+                @Override
+                public void onFailure(Exception e) {
                     runOnUiThread(new Runnable() {
                         @Override
                         public void run() {
@@ -180,9 +97,56 @@ public class GetCardToken extends ActionBarActivity {
                         }
                     });
                 }
+            });
+        } catch (CardException e) {
+            if (e.getType().equals(CardException.CardExceptionType.INVALID_CVV)) {
+                cvvField.getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
+            } else if (e.getType().equals(CardException.CardExceptionType.INVALID_EXPIRY_DATE)) {
+                spinMonth.getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
+                spinYear.getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
+            } else if (e.getType().equals(CardException.CardExceptionType.INVALID_NUMBER)) {
+                numberField.getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
             }
-            return "";
+        } catch (CheckoutException e) {
+            e.printStackTrace();
+            goToError();
         }
+    }
+
+    private void goToError() {
+        Intent intent = new Intent(this, Fail_result.class);
+        startActivity(intent);
+    }
+
+    private void goToSuccess() {
+        Intent intent = new Intent(this, Success_result.class);
+        startActivity(intent);
+    }
+
+    private boolean validateCardFields(final String number, final String month, final String year, final String cvv) {
+        boolean error = false;
+        clearFieldsError();
+
+        if (!CardValidator.validateCardNumber(number)) {
+            findViewById(R.id.number).getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
+            error = true;
+        }
+        if (!CardValidator.validateExpiryDate(month, year)) {
+            findViewById(R.id.spinnerMonth).getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
+            findViewById(R.id.spinnerYear).getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
+            error = true;
+        }
+        if (cvv.equals("")) {
+            findViewById(R.id.cvv).getBackground().setColorFilter(errorColor, PorterDuff.Mode.SRC_ATOP);
+            error = true;
+        }
+        return !error;
+    }
 
+    private void clearFieldsError() {
+        findViewById(R.id.cvv).getBackground().clearColorFilter();
+        findViewById(R.id.spinnerMonth).getBackground().clearColorFilter();
+        findViewById(R.id.spinnerYear).getBackground().clearColorFilter();
+        findViewById(R.id.number).getBackground().clearColorFilter();
     }
 }
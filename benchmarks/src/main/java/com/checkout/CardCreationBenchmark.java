@@ -0,0 +1,62 @@
+package com.checkout;
+
+import com.checkout.exceptions.CardException;
+import com.checkout.models.Card;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the rejection of a card with an invalid number: the constructor throwing a new exception, the
+ * constructor in stackless mode and the non-throwing factory
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardCreationBenchmark {
+
+    private static final String INVALID_NUMBER = "4242424242424241";
+
+    @TearDown
+    public void tearDown() {
+        CardException.setStackless(false);
+    }
+
+    @Benchmark
+    public Object constructor() {
+        CardException.setStackless(false);
+        try {
+            return new Card(INVALID_NUMBER, "test", "06", "2099", "100");
+        } catch (CardException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object constructorStackless() {
+        CardException.setStackless(true);
+        try {
+            return new Card(INVALID_NUMBER, "test", "06", "2099", "100");
+        } catch (CardException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Card.Result create() {
+        return Card.create(INVALID_NUMBER, "test", "06", "2099", "100", null);
+    }
+}
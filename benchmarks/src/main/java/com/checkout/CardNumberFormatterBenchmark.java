@@ -0,0 +1,61 @@
+package com.checkout;
+
+import com.checkout.CardValidator.Cards;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks of the formatting of an Amex number for display: the groups captured by the format regular expression of
+ * the card type, and the compiled formatter writing into a reused StringBuilder
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardNumberFormatterBenchmark {
+
+    private static final String NUMBER = "378282246310005";
+
+    private final CardNumberFormatter formatter = new CardNumberFormatter();
+    private final StringBuilder out = new StringBuilder();
+    private Pattern pattern;
+
+    @Setup
+    public void setup() {
+        pattern = Pattern.compile("^(\\d{1,4})(\\d{1,6})?(\\d{1,5})?$");
+    }
+
+    @Benchmark
+    public String regex() {
+        Matcher m = pattern.matcher(NUMBER);
+        if (!m.matches()) return NUMBER;
+        StringBuilder sb = new StringBuilder();
+        for (int g = 1; g <= m.groupCount(); g++) {
+            if (m.group(g) == null) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(m.group(g));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public int compiled() {
+        out.setLength(0);
+        return formatter.format(NUMBER, Cards.AMEX, out);
+    }
+}
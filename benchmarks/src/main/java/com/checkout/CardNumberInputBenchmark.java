@@ -0,0 +1,55 @@
+package com.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the validation of a card number as it is typed: the whole number checked again after every keystroke,
+ * and the incremental validator updated with the new digit
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardNumberInputBenchmark {
+
+    private static final String NUMBER = "4242424242424242";
+
+    private final StringBuilder field = new StringBuilder();
+    private final CardNumberInput input = new CardNumberInput();
+
+    @Benchmark
+    public int revalidate() {
+        field.setLength(0);
+        int status = 0;
+        for (int i = 0; i < NUMBER.length(); i++) {
+            field.append(NUMBER.charAt(i));
+            status += CardValidator.checkCardNumber(field, 0, field.length());
+            status += CardValidator.getCardType(field.toString()) == null ? 0 : 1;
+        }
+        return status;
+    }
+
+    @Benchmark
+    public int incremental() {
+        input.clear();
+        int status = 0;
+        for (int i = 0; i < NUMBER.length(); i++) {
+            input.append(NUMBER.charAt(i));
+            status += input.getStatus();
+            status += input.getCardType() == null ? 0 : 1;
+        }
+        return status;
+    }
+}
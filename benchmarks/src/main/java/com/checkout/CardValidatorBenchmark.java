@@ -0,0 +1,70 @@
+package com.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the card number checks of CardValidator, one run per card type
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardValidatorBenchmark {
+
+    @Param({"MAESTRO", "MASTERCARD", "DINERSCLUB", "LASER", "JCB", "UNIONPAY", "DISCOVER", "AMEX", "VISA", "UNKNOWN"})
+    public String type;
+
+    private String number;
+    private char[] chars;
+
+    @Setup
+    public void setup() {
+        switch (type) {
+            case "MAESTRO": number = "6759 6498 2643 8453"; break;
+            case "MASTERCARD": number = "5555 5555 5555 4444"; break;
+            case "DINERSCLUB": number = "3056 930902 5904"; break;
+            case "LASER": number = "6304 0000 0000 0000"; break;
+            case "JCB": number = "3530 1113 3330 0000"; break;
+            case "UNIONPAY": number = "6200 0000 0000 0005"; break;
+            case "DISCOVER": number = "6011 1111 1111 1117"; break;
+            case "AMEX": number = "3782 822463 10005"; break;
+            case "VISA": number = "4242 4242 4242 4242"; break;
+            default: number = "1234 5678 9012 3456"; break;
+        }
+        chars = number.toCharArray();
+    }
+
+    @Benchmark
+    public CardValidator.Cards getCardType() {
+        return CardValidator.getCardType(number);
+    }
+
+    @Benchmark
+    public boolean validateCardNumber() {
+        return CardValidator.validateCardNumber(number);
+    }
+
+    @Benchmark
+    public boolean validateLuhnNumber() {
+        return CardValidator.validateLuhnNumber(number);
+    }
+
+    @Benchmark
+    public int checkCardNumber() {
+        return CardValidator.checkCardNumber(chars, 0, chars.length);
+    }
+}
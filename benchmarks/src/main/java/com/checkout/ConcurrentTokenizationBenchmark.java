@@ -0,0 +1,125 @@
+package com.checkout;
+
+import com.checkout.exceptions.CardException;
+import com.checkout.exceptions.CheckoutException;
+import com.checkout.httpconnector.NioTransport;
+import com.checkout.httpconnector.Response;
+import com.checkout.models.Card;
+import com.checkout.models.CardToken;
+import com.checkout.models.CardTokenResponse;
+import com.checkout.models.CustDetails;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+/**
+ * Sends batches of concurrent createCardTokenAsync calls against a local WireMock stub answering after a fixed delay.
+ * URLCONNECTION holds one executor thread per request in flight, NIO multiplexes them over 2 event loop threads.
+ * One operation is a whole batch, the score is the time to complete it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConcurrentTokenizationBenchmark {
+
+    private static final int PORT = 8090;
+    private static final int SERVER_DELAY_MILLIS = 50;
+
+    @Param({"URLCONNECTION", "NIO"})
+    public String transport;
+
+    @Param({"1000"})
+    public int concurrency;
+
+    private WireMockServer server;
+    private CheckoutKit checkoutKit;
+    private NioTransport nioTransport;
+    private ExecutorService executor;
+    private Card card;
+
+    @Setup
+    public void setup() throws CardException, CheckoutException, IOException {
+        CustDetails billingDetails = new CustDetails("100 test street", "", "E1", "UK", "London", "", "44", "00000000");
+        card = new Card("4242424242424242", "test", "06", "2099", "100", billingDetails);
+        CardToken cardToken = new CardToken("06", "2099", billingDetails, "card_789E87FC-A6BF-4B74-BDB1-80BCC4DD968C", "4242", "Visa", "C96C9E67-DF9A-442A-93C5-CEEE7955314B", "test");
+
+        server = new WireMockServer(wireMockConfig().port(PORT).containerThreads(concurrency + 50).jettyAcceptQueueSize(concurrency * 2));
+        server.start();
+        server.stubFor(post(urlEqualTo("/tokens/card"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(SERVER_DELAY_MILLIS)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(new Gson().toJson(new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, cardToken)))));
+
+        CheckoutKit.destroy();
+        checkoutKit = CheckoutKit.getInstance("pk_test_6ff46046-30af-41d9-bf58-929022d2cd14", false);
+        checkoutKit.baseUrlOverride = "http://localhost:" + PORT + "/";
+        if ("NIO".equals(transport)) {
+            nioTransport = new NioTransport(new Gson(), 2, concurrency, null);
+            checkoutKit.setTransport(nioTransport);
+        } else {
+            System.setProperty("http.maxConnections", String.valueOf(concurrency));
+            executor = Executors.newFixedThreadPool(concurrency);
+            checkoutKit.setExecutor(executor);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (nioTransport != null) nioTransport.close();
+        if (executor != null) executor.shutdownNow();
+        server.stop();
+        CheckoutKit.destroy();
+    }
+
+    @Benchmark
+    public int tokenizeBatch() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(concurrency);
+        final AtomicInteger succeeded = new AtomicInteger();
+        CheckoutCallback<CardTokenResponse> callback = new CheckoutCallback<CardTokenResponse>() {
+            @Override
+            public void onResponse(Response<CardTokenResponse> response) {
+                if (!response.hasError) succeeded.incrementAndGet();
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < concurrency; i++) {
+            checkoutKit.createCardTokenAsync(card, callback);
+        }
+        latch.await();
+        return succeeded.get();
+    }
+}
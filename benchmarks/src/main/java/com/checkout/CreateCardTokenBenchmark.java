@@ -0,0 +1,79 @@
+package com.checkout;
+
+import com.checkout.exceptions.CardException;
+import com.checkout.exceptions.CheckoutException;
+import com.checkout.httpconnector.Response;
+import com.checkout.models.Card;
+import com.checkout.models.CardToken;
+import com.checkout.models.CardTokenResponse;
+import com.checkout.models.CustDetails;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+/**
+ * End-to-end benchmark of createCardToken against a local WireMock stub
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CreateCardTokenBenchmark {
+
+    private static final int PORT = 8089;
+
+    private WireMockServer server;
+    private CheckoutKit checkoutKit;
+    private Card card;
+
+    @Setup
+    public void setup() throws CardException, CheckoutException {
+        CustDetails billingDetails = new CustDetails("100 test street", "", "E1", "UK", "London", "", "44", "00000000");
+        card = new Card("4242424242424242", "test", "06", "2099", "100", billingDetails);
+        CardToken cardToken = new CardToken("06", "2099", billingDetails, "card_789E87FC-A6BF-4B74-BDB1-80BCC4DD968C", "4242", "Visa", "C96C9E67-DF9A-442A-93C5-CEEE7955314B", "test");
+
+        server = new WireMockServer(wireMockConfig().port(PORT));
+        server.start();
+        server.stubFor(post(urlEqualTo("/tokens/card"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(new Gson().toJson(new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, cardToken)))));
+
+        CheckoutKit.destroy();
+        checkoutKit = CheckoutKit.getInstance("pk_test_6ff46046-30af-41d9-bf58-929022d2cd14", false);
+        checkoutKit.baseUrlOverride = "http://localhost:" + PORT + "/";
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+        CheckoutKit.destroy();
+    }
+
+    @Benchmark
+    public Response<CardTokenResponse> createCardToken() throws CheckoutException, IOException {
+        return checkoutKit.createCardToken(card);
+    }
+}
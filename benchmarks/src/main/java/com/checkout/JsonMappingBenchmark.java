@@ -0,0 +1,92 @@
+package com.checkout;
+
+import com.checkout.exceptions.CardException;
+import com.checkout.models.Card;
+import com.checkout.models.CardToken;
+import com.checkout.models.CardTokenResponse;
+import com.checkout.models.CustDetails;
+import com.checkout.models.ModelAdapterFactory;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the JSON mapping of the request and response models of createCardToken, with the reflective mapping of
+ * Gson and with the adapters of ModelAdapterFactory. The first* benchmarks build a new Gson instance for each operation,
+ * so they measure the cost of the first mapping, when the adapters are created. cardTokenResponseFromJson goes through
+ * the shared instance of Json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonMappingBenchmark {
+
+    private Gson gson;
+    private Gson adapters;
+    private Card card;
+    private String tokenResponseJson;
+
+    @Setup
+    public void setup() throws CardException {
+        gson = new Gson();
+        adapters = newAdapterGson();
+        CustDetails billingDetails = new CustDetails("100 test street", "", "E1", "UK", "London", "", "44", "00000000");
+        card = new Card("4242424242424242", "test", "06", "2099", "100", billingDetails);
+        CardToken cardToken = new CardToken("06", "2099", billingDetails, "card_789E87FC-A6BF-4B74-BDB1-80BCC4DD968C", "4242", "Visa", "C96C9E67-DF9A-442A-93C5-CEEE7955314B", "test");
+        tokenResponseJson = gson.toJson(new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, cardToken));
+    }
+
+    @Benchmark
+    public String serializeCard() {
+        return gson.toJson(card);
+    }
+
+    @Benchmark
+    public CardTokenResponse deserializeCardTokenResponse() {
+        return gson.fromJson(tokenResponseJson, CardTokenResponse.class);
+    }
+
+    @Benchmark
+    public String serializeCardAdapters() {
+        return adapters.toJson(card);
+    }
+
+    @Benchmark
+    public CardTokenResponse deserializeCardTokenResponseAdapters() {
+        return adapters.fromJson(tokenResponseJson, CardTokenResponse.class);
+    }
+
+    @Benchmark
+    public CardTokenResponse cardTokenResponseFromJson() {
+        return CardTokenResponse.fromJson(tokenResponseJson);
+    }
+
+    @Benchmark
+    public CardTokenResponse firstDeserializeCardTokenResponse() {
+        return new Gson().fromJson(tokenResponseJson, CardTokenResponse.class);
+    }
+
+    @Benchmark
+    public CardTokenResponse firstDeserializeCardTokenResponseAdapters() {
+        return newAdapterGson().fromJson(tokenResponseJson, CardTokenResponse.class);
+    }
+
+    private static Gson newAdapterGson() {
+        return new GsonBuilder().registerTypeAdapterFactory(new ModelAdapterFactory()).create();
+    }
+}
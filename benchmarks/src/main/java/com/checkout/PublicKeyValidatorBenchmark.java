@@ -0,0 +1,60 @@
+package com.checkout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks of the validation of a public key: the regular expression compiled on every call as CheckoutKit used to
+ * do, the precompiled expression, the hand-written matcher and the cached validation used by CheckoutKit
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublicKeyValidatorBenchmark {
+
+    private Pattern pattern;
+    private String key;
+
+    @Setup
+    public void setup() {
+        pattern = Pattern.compile(PublicKeyValidator.REGEX);
+        /* a copy, so the cache compares the characters instead of the references */
+        key = new String("pk_test_6ff46046-30af-41d9-bf58-929022d2cd14");
+        PublicKeyValidator.clearCache();
+        PublicKeyValidator.isValid("pk_test_6ff46046-30af-41d9-bf58-929022d2cd14");
+    }
+
+    @Benchmark
+    public boolean regex() {
+        return Pattern.matches(PublicKeyValidator.REGEX, key);
+    }
+
+    @Benchmark
+    public boolean precompiledRegex() {
+        return pattern.matcher(key).matches();
+    }
+
+    @Benchmark
+    public boolean matcher() {
+        return PublicKeyValidator.matches(key);
+    }
+
+    @Benchmark
+    public boolean cached() {
+        return PublicKeyValidator.isValid(key);
+    }
+}
@@ -0,0 +1,281 @@
+package com.checkout;
+
+import com.checkout.CardValidator.Cards;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class validating large sets of card records in parallel. Each record is checked the same way the Card constructor
+ * does (number, then expiry date, then CVV) and gets a one byte result code.
+ */
+public class BatchCardValidator {
+
+    /* Result code of a record, all the details are valid */
+    public final static byte RECORD_VALID = CardValidator.CARD_VALID;
+    /* Result code of a record, the number does not contain any digit */
+    public final static byte RECORD_EMPTY_NUMBER = CardValidator.CARD_EMPTY;
+    /* Result code of a record, the number does not correspond to any known card type */
+    public final static byte RECORD_UNKNOWN_TYPE = CardValidator.CARD_UNKNOWN_TYPE;
+    /* Result code of a record, the number's length is not valid for its card type */
+    public final static byte RECORD_INVALID_LENGTH = CardValidator.CARD_INVALID_LENGTH;
+    /* Result code of a record, the number does not pass the Luhn validation */
+    public final static byte RECORD_INVALID_LUHN = CardValidator.CARD_INVALID_LUHN;
+    /* Result code of a record, the card is expired or the expiry date is not valid */
+    public final static byte RECORD_INVALID_EXPIRY_DATE = 5;
+    /* Result code of a record, the CVV is not valid for the card's type */
+    public final static byte RECORD_INVALID_CVV = 6;
+
+    /* Number of records under which a task is not split anymore */
+    private final static int THRESHOLD = 2048;
+
+    /* Default number of records read from an iterator before validating them */
+    public final static int DEFAULT_CHUNK_SIZE = 65536;
+
+    private static ForkJoinPool defaultPool = null;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Default constructor, uses a pool shared by all the validators with one thread per core
+     */
+    public BatchCardValidator() {
+        this(getDefaultPool());
+    }
+
+    /**
+     * Secondary constructor
+     * @param pool ForkJoinPool instance running the validation tasks
+     */
+    public BatchCardValidator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /*
+     * Returns the pool shared by the validators created with the default constructor
+     */
+    private static synchronized ForkJoinPool getDefaultPool() {
+        if (defaultPool == null) {
+            defaultPool = new ForkJoinPool();
+        }
+        return defaultPool;
+    }
+
+    /**
+     * Validates card records stored column by column, the record i being made of the values at index i of each array
+     * @param numbers String array containing the cards' numbers
+     * @param months String array containing the expiry months
+     * @param years String array containing the expiry years
+     * @param cvvs String array containing the CVVs
+     * @return Result object containing the result code of each record
+     */
+    public Result validate(String[] numbers, String[] months, String[] years, String[] cvvs) {
+        int size = numbers.length;
+        if (months.length != size || years.length != size || cvvs.length != size) {
+            throw new IllegalArgumentException("All the arrays must have the same length");
+        }
+        long start = System.nanoTime();
+        byte[] codes = new byte[size];
+        run(numbers, months, years, cvvs, codes, 0, size);
+        return new Result(codes, size, System.nanoTime() - start);
+    }
+
+    /**
+     * Validates card records read from an iterator, chunk by chunk so that the whole input never needs to be in memory
+     * @param records Iterator of String arrays containing the number, expiry month, expiry year and CVV of each record
+     * @param chunkSize int containing the number of records validated together
+     * @return Result object containing the result code of each record, in the order of the iterator
+     */
+    public Result validate(Iterator<String[]> records, int chunkSize) {
+        if (chunkSize < 1) throw new IllegalArgumentException("The chunk size must be positive");
+        long start = System.nanoTime();
+        String[] numbers = new String[chunkSize];
+        String[] months = new String[chunkSize];
+        String[] years = new String[chunkSize];
+        String[] cvvs = new String[chunkSize];
+        byte[] codes = new byte[chunkSize];
+        int size = 0;
+
+        while (records.hasNext()) {
+            int count = 0;
+            while (count < chunkSize && records.hasNext()) {
+                String[] record = records.next();
+                numbers[count] = record[0];
+                months[count] = record[1];
+                years[count] = record[2];
+                cvvs[count] = record[3];
+                count++;
+            }
+            if (size + count > codes.length) {
+                codes = Arrays.copyOf(codes, Math.max(codes.length * 2, size + count));
+            }
+            run(numbers, months, years, cvvs, codes, size, count);
+            size += count;
+        }
+        return new Result(codes, size, System.nanoTime() - start);
+    }
+
+    /**
+     * Validates card records read from an iterator with the default chunk size
+     * @param records Iterator of String arrays containing the number, expiry month, expiry year and CVV of each record
+     * @return Result object containing the result code of each record, in the order of the iterator
+     */
+    public Result validate(Iterator<String[]> records) {
+        return validate(records, DEFAULT_CHUNK_SIZE);
+    }
+
+    /*
+     * Validates count records and writes their codes starting at codes[offset]
+     */
+    private void run(String[] numbers, String[] months, String[] years, String[] cvvs, byte[] codes, int offset, int count) {
+        Calendar cal = Calendar.getInstance();
+        ValidationTask task = new ValidationTask(numbers, months, years, cvvs, codes, offset, 0, count,
+                cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
+        pool.invoke(task);
+    }
+
+    /**
+     * Validates a single record against a given date, without allocating
+     * @param number String containing the card's number
+     * @param month String containing the expiry month
+     * @param year String containing the expiry year
+     * @param cvv String containing the CVV
+     * @param curMonth int containing the current month, from 1 to 12
+     * @param curYear int containing the current year on 4 digits
+     * @return byte containing the result code of the record
+     */
+    static byte validateRecord(String number, String month, String year, String cvv, int curMonth, int curYear) {
+        if (number == null) return RECORD_EMPTY_NUMBER;
+        int scan = CardValidator.scanCardNumber(number, 0, number.length());
+        int status = CardValidator.scanStatus(scan);
+        if (status != CardValidator.CARD_VALID) return (byte) status;
+
+        if (month == null || year == null || (year.length() != 4 && year.length() != 2)) return RECORD_INVALID_EXPIRY_DATE;
+        int iMonth = CardValidator.parseExpiryField(month);
+        int iYear = CardValidator.parseExpiryField(year);
+        if (!CardValidator.validateExpiryDate(iMonth, iYear, curMonth, curYear)) return RECORD_INVALID_EXPIRY_DATE;
+
+        Cards card = CardValidator.scanCard(scan);
+        if (cvv == null || !CardValidator.validateCVV(cvv, card)) return RECORD_INVALID_CVV;
+        return RECORD_VALID;
+    }
+
+    /*
+     * Fork/join task validating a range of records, split in halves until it is small enough
+     */
+    private static class ValidationTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] numbers;
+        private final String[] months;
+        private final String[] years;
+        private final String[] cvvs;
+        private final byte[] codes;
+        private final int offset;
+        private final int from;
+        private final int to;
+        private final int curMonth;
+        private final int curYear;
+
+        ValidationTask(String[] numbers, String[] months, String[] years, String[] cvvs, byte[] codes, int offset, int from, int to, int curMonth, int curYear) {
+            this.numbers = numbers;
+            this.months = months;
+            this.years = years;
+            this.cvvs = cvvs;
+            this.codes = codes;
+            this.offset = offset;
+            this.from = from;
+            this.to = to;
+            this.curMonth = curMonth;
+            this.curYear = curYear;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    codes[offset + i] = validateRecord(numbers[i], months[i], years[i], cvvs[i], curMonth, curYear);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ValidationTask(numbers, months, years, cvvs, codes, offset, from, mid, curMonth, curYear),
+                        new ValidationTask(numbers, months, years, cvvs, codes, offset, mid, to, curMonth, curYear));
+            }
+        }
+    }
+
+    /**
+     * Class containing the result codes of a batch and the time it took to compute them
+     */
+    public static class Result {
+
+        private final byte[] codes;
+        private final int size;
+        private final long elapsedNanos;
+
+        Result(byte[] codes, int size, long elapsedNanos) {
+            this.codes = codes;
+            this.size = size;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Getter for the number of records
+         * @return int containing the number of validated records
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Getter for the result code of a record
+         * @param index int containing the index of the record
+         * @return byte containing one of the RECORD_ result codes
+         */
+        public byte getCode(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+            return codes[index];
+        }
+
+        /**
+         * Getter for the result codes
+         * @return byte array containing the result code of each record, a copy that can be modified
+         */
+        public byte[] getCodes() {
+            return Arrays.copyOf(codes, size);
+        }
+
+        /**
+         * Counts the records having a given result code
+         * @param code byte containing one of the RECORD_ result codes
+         * @return int containing the number of records with this code
+         */
+        public int count(byte code) {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (codes[i] == code) n++;
+            }
+            return n;
+        }
+
+        /**
+         * Getter for the duration of the validation
+         * @return long containing the elapsed time in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Getter for the throughput of the validation
+         * @return double containing the number of records validated per second
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : size * 1e9 / elapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.checkout;
+
+import com.checkout.httpconnector.Response;
+import com.checkout.models.Card;
+import com.checkout.models.CardTokenResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class creating card tokens for many cards, keeping a bounded number of requests in flight. The cards are read from the
+ * iterator only when a slot is free, so a large input is never loaded in memory at once.
+ */
+public class BatchTokenizer {
+
+    /**
+     * Interface used to be notified of each result as soon as it is received, in completion order
+     */
+    public interface Listener {
+
+        /**
+         * Called once per card, on the thread that sent the request
+         * @param index int containing the position of the card in the input
+         * @param outcome Outcome object containing the response or the exception raised
+         */
+        void onResult(int index, Outcome outcome);
+    }
+
+    private final CheckoutKit checkoutKit;
+    private final int maxInFlight;
+    private final Executor executor;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile long startTime = 0;
+    private volatile long endTime = 0;
+
+    /**
+     * Default constructor, each batch runs on its own pool of maxInFlight threads
+     * @param checkoutKit CheckoutKit instance sending the requests
+     * @param maxInFlight int containing the maximum number of requests sent at the same time
+     */
+    public BatchTokenizer(CheckoutKit checkoutKit, int maxInFlight) {
+        this(checkoutKit, maxInFlight, null);
+    }
+
+    /**
+     * Secondary constructor
+     * @param checkoutKit CheckoutKit instance sending the requests
+     * @param maxInFlight int containing the maximum number of requests sent at the same time
+     * @param executor Executor running the requests, it needs maxInFlight threads to reach that concurrency
+     */
+    public BatchTokenizer(CheckoutKit checkoutKit, int maxInFlight, Executor executor) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be positive");
+        this.checkoutKit = checkoutKit;
+        this.maxInFlight = maxInFlight;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a card token for each card, blocking until all the requests are over
+     * @param cards Iterator of Card objects to be tokenized
+     * @return List of Outcome objects, in the order of the input
+     * @throws InterruptedException if the thread is interrupted while waiting, the requests in flight keep running
+     */
+    public List<Outcome> tokenize(Iterator<Card> cards) throws InterruptedException {
+        return tokenize(cards, null);
+    }
+
+    /**
+     * Creates a card token for each card, blocking until all the requests are over
+     * @param cards Iterator of Card objects to be tokenized
+     * @param listener Listener notified of each result as soon as it is received, can be null
+     * @return List of Outcome objects, in the order of the input
+     * @throws InterruptedException if the thread is interrupted while waiting, the requests in flight keep running
+     */
+    public List<Outcome> tokenize(Iterator<Card> cards, final Listener listener) throws InterruptedException {
+        final List<Outcome> results = new ArrayList<Outcome>();
+        final Semaphore slots = new Semaphore(maxInFlight);
+        ExecutorService ownExecutor = executor == null ? Executors.newFixedThreadPool(maxInFlight, new BatchThreadFactory()) : null;
+        Executor runner = executor == null ? ownExecutor : executor;
+
+        submitted.set(0);
+        succeeded.set(0);
+        failed.set(0);
+        endTime = 0;
+        startTime = System.nanoTime();
+        try {
+            int index = 0;
+            while (cards.hasNext()) {
+                slots.acquire();
+                final Card card = cards.next();
+                final int position = index++;
+                synchronized (results) {
+                    results.add(null);
+                }
+                submitted.incrementAndGet();
+                Runnable request = new Runnable() {
+                    @Override
+                    public void run() {
+                        Outcome outcome;
+                        try {
+                            outcome = new Outcome(checkoutKit.createCardToken(card), null);
+                        } catch (Exception e) {
+                            outcome = new Outcome(null, e);
+                        }
+                        (outcome.isSuccess() ? succeeded : failed).incrementAndGet();
+                        synchronized (results) {
+                            results.set(position, outcome);
+                        }
+                        try {
+                            if (listener != null) listener.onResult(position, outcome);
+                        } finally {
+                            slots.release();
+                        }
+                    }
+                };
+                try {
+                    runner.execute(request);
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    synchronized (results) {
+                        results.set(position, new Outcome(null, e));
+                    }
+                    slots.release();
+                }
+            }
+            /* every slot is free again once all the requests are over */
+            slots.acquire(maxInFlight);
+            slots.release(maxInFlight);
+        } finally {
+            endTime = System.nanoTime();
+            if (ownExecutor != null) ownExecutor.shutdown();
+        }
+        synchronized (results) {
+            return Collections.unmodifiableList(new ArrayList<Outcome>(results));
+        }
+    }
+
+    /**
+     * Getter for the number of cards sent so far in the current or last batch
+     * @return long containing the number of requests sent
+     */
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    /**
+     * Getter for the number of cards tokenized so far in the current or last batch
+     * @return long containing the number of tokens created
+     */
+    public long getSucceeded() {
+        return succeeded.get();
+    }
+
+    /**
+     * Getter for the number of cards that could not be tokenized so far in the current or last batch
+     * @return long containing the number of requests that failed or returned an error
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Getter for the number of requests currently in flight
+     * @return long containing the number of requests sent and not over yet
+     */
+    public long getInFlight() {
+        return submitted.get() - succeeded.get() - failed.get();
+    }
+
+    /**
+     * Getter for the throughput of the current or last batch
+     * @return double containing the number of requests completed per second
+     */
+    public double getThroughput() {
+        long start = startTime;
+        if (start == 0) return 0;
+        long end = endTime == 0 ? System.nanoTime() : endTime;
+        return end == start ? 0 : (succeeded.get() + failed.get()) * 1e9 / (end - start);
+    }
+
+    /**
+     * Class containing the result of the tokenization of one card
+     */
+    public static class Outcome {
+
+        private final Response<CardTokenResponse> response;
+        private final Exception error;
+
+        Outcome(Response<CardTokenResponse> response, Exception error) {
+            this.response = response;
+            this.error = error;
+        }
+
+        /**
+         * Getter for the response
+         * @return Response object returned by the server or null if the request failed
+         */
+        public Response<CardTokenResponse> getResponse() {
+            return response;
+        }
+
+        /**
+         * Getter for the exception
+         * @return Exception raised while sending the request or null if the server answered
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * Checks if a card token was created
+         * @return boolean, true if the server answered without error
+         */
+        public boolean isSuccess() {
+            return error == null && response != null && !response.hasError;
+        }
+    }
+
+    /*
+     * Thread factory of the pools created for each batch
+     */
+    private static class BatchThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "checkoutkit-batch-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
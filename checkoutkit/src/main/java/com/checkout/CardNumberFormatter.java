@@ -0,0 +1,196 @@
+package com.checkout;
+
+import com.checkout.CardValidator.Cards;
+
+/**
+ * Formats card numbers for display with the grouping of each card type, read once from the format of the Cards
+ * elements. The output is written into a StringBuilder or a char array given by the caller and no regular expression is
+ * used, so an edit field can be reformatted on every keystroke without allocating. Instances are immutable and can be
+ * shared between threads.
+ */
+public final class CardNumberFormatter {
+
+    /* Separator used by the default constructor */
+    public static final char DEFAULT_SEPARATOR = ' ';
+
+    /* Number of digits covered by the tables, separators are only added between the first MAX_DIGITS + 1 digits */
+    private static final int MAX_DIGITS = CardTypeTrie.MAX_LENGTH;
+
+    /* Grouping used when the card type is not known */
+    private static final int[] DEFAULT_GROUPS = {4};
+
+    /*
+     * Separators displayed before a cursor placed after n digits, indexed by the ordinal of the card type + 1 (0 for an
+     * unknown type) then by n, from 0 to MAX_DIGITS + 1
+     */
+    private static final int[][] SEPARATORS;
+
+    static {
+        Cards[] cards = CardValidator.CARDS;
+        SEPARATORS = new int[cards.length + 1][];
+        SEPARATORS[0] = compile(DEFAULT_GROUPS);
+        for (Cards card : cards) SEPARATORS[card.ordinal() + 1] = compile(card.groups());
+    }
+
+    private final char separator;
+
+    /**
+     * Default constructor, groups are separated by a space
+     */
+    public CardNumberFormatter() {
+        this(DEFAULT_SEPARATOR);
+    }
+
+    /**
+     * Constructor
+     * @param separator char displayed between the groups of digits
+     * @throws IllegalArgumentException if the separator is a digit
+     */
+    public CardNumberFormatter(char separator) {
+        if (separator >= '0' && separator <= '9') throw new IllegalArgumentException("The separator cannot be a digit");
+        this.separator = separator;
+    }
+
+    /*
+     * Builds the table of the separators of a grouping
+     * @param groups int array containing the length of each group, the last one repeats
+     * @return int array containing at index n the number of groups ending strictly between 0 and n digits
+     */
+    private static int[] compile(int[] groups) {
+        int[] separators = new int[MAX_DIGITS + 2];
+        int end = groups[0];
+        int count = 0;
+        for (int n = 1, g = 0; n < separators.length; n++) {
+            if (n - 1 == end) {
+                count++;
+                end += groups[Math.min(++g, groups.length - 1)];
+            }
+            separators[n] = count;
+        }
+        return separators;
+    }
+
+    private static int[] table(Cards card) {
+        return SEPARATORS[card == null ? 0 : card.ordinal() + 1];
+    }
+
+    /**
+     * Getter for the separator
+     * @return char displayed between the groups of digits
+     */
+    public char getSeparator() {
+        return separator;
+    }
+
+    /**
+     * Checks if a group of digits ends after the given number of digits
+     * @param card Cards element giving the grouping, null for the default grouping of 4 digits
+     * @param digits int containing the number of digits
+     * @return boolean, true if a separator is displayed before the next digit
+     */
+    public static boolean isGroupEnd(Cards card, int digits) {
+        if (digits <= 0 || digits > MAX_DIGITS) return false;
+        int[] separators = table(card);
+        return separators[digits + 1] != separators[digits];
+    }
+
+    /**
+     * Returns the position in the formatted number of a cursor placed after a number of digits, which is also the
+     * length of the formatted number when it contains that many digits
+     * @param card Cards element giving the grouping, null for the default grouping of 4 digits
+     * @param digits int containing the number of digits before the cursor
+     * @return int containing the number of characters before the cursor once formatted
+     */
+    public static int formattedPosition(Cards card, int digits) {
+        if (digits <= 0) return 0;
+        return digits + table(card)[Math.min(digits, MAX_DIGITS + 1)];
+    }
+
+    /**
+     * Returns the number of digits before a cursor in a text, the position to keep when the text is reformatted
+     * @param text CharSequence containing the text of the field, formatted or not
+     * @param cursor int containing the index of the cursor in text
+     * @return int containing the number of digits before the cursor
+     */
+    public static int digitPosition(CharSequence text, int cursor) {
+        int digits = 0;
+        for (int i = 0, end = Math.min(cursor, text.length()); i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Appends the formatted digits of a number, any other character being ignored
+     * @param number CharSequence containing the card's number
+     * @param card Cards element giving the grouping, null for the default grouping of 4 digits
+     * @param out StringBuilder receiving the formatted number, it must not be number itself
+     * @return int containing the number of characters appended
+     */
+    public int format(CharSequence number, Cards card, StringBuilder out) {
+        int[] separators = table(card);
+        int start = out.length();
+        int digits = 0;
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') continue;
+            if (digits > 0 && digits <= MAX_DIGITS && separators[digits + 1] != separators[digits]) out.append(separator);
+            out.append(c);
+            digits++;
+        }
+        return out.length() - start;
+    }
+
+    /**
+     * Writes the formatted digits of a number into an array, any other character being ignored
+     * @param number CharSequence containing the card's number
+     * @param card Cards element giving the grouping, null for the default grouping of 4 digits
+     * @param out char array receiving the formatted number, with room for formattedPosition(card, digits) characters
+     * @param offset int containing the index of out where the first character is written
+     * @return int containing the number of characters written
+     * @throws ArrayIndexOutOfBoundsException if out is too small
+     */
+    public int format(CharSequence number, Cards card, char[] out, int offset) {
+        int[] separators = table(card);
+        int pos = offset;
+        int digits = 0;
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') continue;
+            if (digits > 0 && digits <= MAX_DIGITS && separators[digits + 1] != separators[digits]) out[pos++] = separator;
+            out[pos++] = c;
+            digits++;
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Appends the formatted digits of an input, grouped for its most likely card type
+     * @param input CardNumberInput containing the digits typed
+     * @param out StringBuilder receiving the formatted number
+     * @return int containing the number of characters appended
+     */
+    public int format(CardNumberInput input, StringBuilder out) {
+        int[] separators = table(input.getCardType());
+        int start = out.length();
+        for (int d = 0, length = input.length(); d < length; d++) {
+            if (d > 0 && separators[d + 1] != separators[d]) out.append(separator);
+            out.append(input.digitAt(d));
+        }
+        return out.length() - start;
+    }
+
+    /**
+     * Reformats the text of an edit field and moves its cursor, the cursor stays after the same digit
+     * @param text CharSequence containing the text of the field after the edit
+     * @param cursor int containing the index of the cursor in text
+     * @param card Cards element giving the grouping, null for the default grouping of 4 digits
+     * @param out StringBuilder receiving the formatted number, it must not be text itself
+     * @return int containing the index of the cursor in the appended text
+     */
+    public int reformat(CharSequence text, int cursor, Cards card, StringBuilder out) {
+        format(text, card, out);
+        return formattedPosition(card, digitPosition(text, cursor));
+    }
+}
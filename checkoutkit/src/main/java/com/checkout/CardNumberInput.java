@@ -0,0 +1,215 @@
+package com.checkout;
+
+import com.checkout.CardValidator.Cards;
+
+import java.util.EnumSet;
+
+/**
+ * Stateful validator of a card number typed digit by digit. It keeps, for every digit entered, the state of the
+ * CardTypeTrie walk and the running Luhn sums, so that appending or deleting the last digit updates the candidate card
+ * types, the checksum and the length checks in constant time instead of validating the whole number again.
+ * An instance is meant to follow one input field and is not thread-safe.
+ */
+public class CardNumberInput {
+
+    /* Maximum number of digits accepted, longer than any card number */
+    public static final int MAX_DIGITS = CardTypeTrie.MAX_LENGTH;
+
+    /* Grouping used while the card type is not known */
+    private static final int[] DEFAULT_GROUPS = {4};
+
+    /* State after each digit, index i holds the state once i digits are entered, index 0 the empty state */
+    private final char[] digits = new char[MAX_DIGITS];
+    private final int[] nodes = new int[MAX_DIGITS + 1];
+    private final int[] rules = new int[MAX_DIGITS + 1];
+    private final int[] evenSums = new int[MAX_DIGITS + 1];
+    private final int[] oddSums = new int[MAX_DIGITS + 1];
+    private int length = 0;
+
+    /**
+     * Default constructor, the input is empty
+     */
+    public CardNumberInput() {
+        nodes[0] = CardTypeTrie.ROOT;
+    }
+
+    /**
+     * Adds a digit at the end of the number
+     * @param c char typed, anything else than a digit is ignored
+     * @return boolean, true if the digit was added, false if c is not a digit or MAX_DIGITS are already entered
+     */
+    public boolean append(char c) {
+        if (c < '0' || c > '9' || length == MAX_DIGITS) return false;
+        int d = c - '0';
+        int node = CardTypeTrie.next(nodes[length], d);
+        digits[length] = c;
+        nodes[length + 1] = node;
+        rules[length + 1] = rules[length] | CardTypeTrie.rules(node);
+        if ((length & 1) == 0) {
+            evenSums[length + 1] = evenSums[length] + CardValidator.LUHN_DOUBLED[d];
+            oddSums[length + 1] = oddSums[length] + d;
+        } else {
+            evenSums[length + 1] = evenSums[length] + d;
+            oddSums[length + 1] = oddSums[length] + CardValidator.LUHN_DOUBLED[d];
+        }
+        length++;
+        return true;
+    }
+
+    /**
+     * Removes the last digit of the number
+     * @return boolean, true if a digit was removed, false if the input is empty
+     */
+    public boolean deleteLast() {
+        if (length == 0) return false;
+        length--;
+        return true;
+    }
+
+    /**
+     * Removes all the digits
+     */
+    public void clear() {
+        length = 0;
+    }
+
+    /**
+     * Replaces the number, for the edits that do not happen at the end of the input (paste, deletion in the middle).
+     * Costs one step per digit.
+     * @param number CharSequence containing the new number, non digit characters are ignored
+     */
+    public void setNumber(CharSequence number) {
+        length = 0;
+        for (int i = 0; i < number.length(); i++) append(number.charAt(i));
+    }
+
+    /**
+     * Getter for the number of digits entered
+     * @return int containing the number of digits
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Getter for a digit of the number
+     * @param index int containing the position of the digit, between 0 and length() - 1
+     * @return char containing the digit
+     */
+    public char digitAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException("No digit at " + index);
+        return digits[index];
+    }
+
+    /**
+     * Getter for the digits entered
+     * @return String containing the digits, without any separator
+     */
+    public String getNumber() {
+        return new String(digits, 0, length);
+    }
+
+    /**
+     * Returns the result of the validation of the digits entered, the same as CardValidator.checkCardNumber
+     * @return int result code, CardValidator.CARD_VALID or the reason why the number is not valid yet
+     */
+    public int getStatus() {
+        return CardValidator.scanStatus(CardValidator.scanResult(rules[length], length, evenSums[length], oddSums[length]));
+    }
+
+    /**
+     * Checks if the digits entered form a valid card number
+     * @return boolean, true if the number is valid, more digits may still be accepted
+     */
+    public boolean isValid() {
+        return getStatus() == CardValidator.CARD_VALID;
+    }
+
+    /**
+     * Checks if the number is valid and cannot be any longer, the input can move on to the next field
+     * @return boolean, true if the number is valid and no card type it can still become accepts more digits
+     */
+    public boolean isComplete() {
+        return isValid() && CardTypeTrie.candidates(nodes[length], rules[length], length + 1) == 0;
+    }
+
+    /**
+     * Checks if the number is or can still become a known card type
+     * @return boolean, false if the number can never become valid whatever the next digits
+     */
+    public boolean hasCandidates() {
+        return candidateRules() != 0;
+    }
+
+    /**
+     * Returns the card types the number is or can still become, without allocating
+     * @return int mask with the bit of the ordinal of each possible Cards element set
+     */
+    public int getCandidateMask() {
+        return CardTypeTrie.cards(candidateRules());
+    }
+
+    /**
+     * Checks if the number is or can still become a card of the given type
+     * @param card Cards element to check
+     * @return boolean, true if the number, possibly with more digits, can be of that type
+     */
+    public boolean isCandidate(Cards card) {
+        return (getCandidateMask() & (1 << card.ordinal())) != 0;
+    }
+
+    /**
+     * Returns the card types the number is or can still become
+     * @return EnumSet of the possible Cards elements, empty if there is none
+     */
+    public EnumSet<Cards> getCandidates() {
+        EnumSet<Cards> set = EnumSet.noneOf(Cards.class);
+        int mask = getCandidateMask();
+        for (int i = 0; i < CardValidator.CARDS.length; i++) {
+            if ((mask & (1 << i)) != 0) set.add(CardValidator.CARDS[i]);
+        }
+        return set;
+    }
+
+    /**
+     * Returns the most likely card type: the type of the number if it has a valid length for it, otherwise the candidate
+     * whose prefix matches the most digits, ties broken in the order used by CardValidator.getCardType
+     * @return Cards element or null if no digit is entered or no card type is possible
+     */
+    public Cards getCardType() {
+        if (length == 0) return null;
+        Cards card = CardTypeTrie.resolve(rules[length], length);
+        if (card != null) return card;
+        int candidates = candidateRules();
+        if (candidates == 0) return null;
+        /* the rules completed at a position have a prefix of that many digits, prefixes are only a few digits long */
+        for (int i = length; i > 0; i--) {
+            int matched = candidates & rules[i] & ~rules[i - 1];
+            if (matched != 0) return CardTypeTrie.card(Integer.numberOfTrailingZeros(matched));
+        }
+        return CardTypeTrie.card(Integer.numberOfTrailingZeros(candidates));
+    }
+
+    /**
+     * Returns the display grouping of the most likely card type, read from its format
+     * @return int array containing the length of each group of digits, the last one repeats until all the digits are placed
+     */
+    public int[] getGroups() {
+        Cards card = getCardType();
+        return card == null ? DEFAULT_GROUPS.clone() : card.groups().clone();
+    }
+
+    /**
+     * Checks if a separator is displayed after the given number of digits, for instance to add a space as soon as a
+     * group is typed
+     * @param position int containing the number of digits before the separator
+     * @return boolean, true if a group of the most likely card type ends after that many digits
+     */
+    public boolean isGroupEnd(int position) {
+        return CardNumberFormatter.isGroupEnd(getCardType(), position);
+    }
+
+    private int candidateRules() {
+        return CardTypeTrie.candidates(nodes[length], rules[length], length);
+    }
+}
@@ -0,0 +1,326 @@
+package com.checkout;
+
+import com.checkout.exceptions.CheckoutException;
+import com.checkout.httpconnector.Response;
+import com.checkout.models.CardProviderResponse;
+import com.checkout.models.Json;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * In-memory cache of the card providers returned by getCardProviders.
+ * - a response younger than the TTL is returned without any request,
+ * - a response older than the TTL but within the stale window is returned immediately while it is revalidated in the
+ *   background, with If-None-Match when the server sent an ETag,
+ * - otherwise the caller waits for a new response. Concurrent callers share the same request.
+ * Only successful responses are cached. The cache can be persisted to a file, the response read from it at start-up is
+ * served immediately and revalidated in the background.
+ * The cached response belongs to the public key and the server it was requested with, a call made with another key or
+ * environment never gets it and replaces it with its own response.
+ */
+public class CardProviderCache {
+
+    /* Default time to live of a response, in milliseconds */
+    public static final long DEFAULT_TTL = 60 * 60 * 1000;
+    /* Default time during which an expired response is still served while being revalidated, in milliseconds */
+    public static final long DEFAULT_STALE_WINDOW = 24 * 60 * 60 * 1000;
+
+    /*
+     * Interface used by the cache to request the card providers
+     */
+    interface Loader {
+        /*
+         * @param etag String containing the ETag of the cached response or null
+         * @return Response object, with a 304 status and no model if the cached response is still valid
+         */
+        Response<CardProviderResponse> load(String etag) throws CheckoutException, IOException;
+    }
+
+    private final long ttl;
+    private final long staleWindow;
+    private final File file;
+    private final Gson gson = Json.gson();
+
+    private final Object lock = new Object();
+    private volatile Entry entry = null;
+    private FutureTask<Response<CardProviderResponse>> inFlight = null;
+    private String inFlightOwner = null;
+
+    /**
+     * Default constructor, in-memory cache with the default TTL and stale window
+     */
+    public CardProviderCache() {
+        this(DEFAULT_TTL, DEFAULT_STALE_WINDOW, null);
+    }
+
+    /**
+     * Secondary constructor
+     * @param ttl long containing the time in milliseconds during which a response is returned without any request
+     * @param staleWindow long containing the time in milliseconds after the TTL during which a response is still returned while being revalidated
+     * @param file File where the cache is persisted, null to keep it in memory only
+     */
+    public CardProviderCache(long ttl, long staleWindow, File file) {
+        if (ttl < 0 || staleWindow < 0) throw new IllegalArgumentException("The TTL and the stale window cannot be negative");
+        this.ttl = ttl;
+        this.staleWindow = staleWindow;
+        this.file = file;
+        if (file != null) this.entry = read(file);
+    }
+
+    /**
+     * Removes the cached response, the next call waits for a new one
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            entry = null;
+        }
+        if (file != null) file.delete();
+    }
+
+    /**
+     * Getter for the cached response
+     * @return Response object cached or null if there is none
+     */
+    public Response<CardProviderResponse> peek() {
+        Entry e = entry;
+        return e == null ? null : e.response;
+    }
+
+    /*
+     * Same as get(String, Loader, Executor) for a cache used with a single public key and server
+     */
+    Response<CardProviderResponse> get(Loader loader, Executor executor) throws CheckoutException, IOException {
+        return get(null, loader, executor);
+    }
+
+    /*
+     * Returns the card providers, from the cache when possible
+     * @param owner String identifying the public key and the server of the request, the cached response is only returned
+     *              to the same owner
+     * @param loader Loader object sending the request
+     * @param executor Executor running the background revalidations
+     * @return Response object, the cached one or the one returned by the server
+     */
+    Response<CardProviderResponse> get(String owner, Loader loader, Executor executor) throws CheckoutException, IOException {
+        long now = System.currentTimeMillis();
+        Entry e = entry;
+        if (e != null && !e.belongsTo(owner)) e = null;
+        if (e != null && isFresh(e, now)) return e.response;
+        boolean serveStale = e != null && (e.persisted || (now - e.fetchedAt >= 0 && now - e.fetchedAt < ttl + staleWindow));
+
+        FutureTask<Response<CardProviderResponse>> task;
+        boolean created = false;
+        synchronized (lock) {
+            Entry current = entry;
+            if (current != null && !current.belongsTo(owner)) current = null;
+            if (current != null && isFresh(current, now)) return current.response;
+            if (inFlight == null) {
+                inFlight = newLoad(owner, loader, current);
+                inFlightOwner = owner;
+                created = true;
+                task = inFlight;
+            } else if (Entry.same(inFlightOwner, owner)) {
+                task = inFlight;
+            } else {
+                /* the request in flight is made for another key, it cannot be shared */
+                task = newLoad(owner, loader, current);
+                created = true;
+            }
+        }
+
+        if (serveStale) {
+            if (created) {
+                try {
+                    executor.execute(task);
+                } catch (RuntimeException ex) {
+                    synchronized (lock) {
+                        if (inFlight == task) inFlight = null;
+                    }
+                }
+            }
+            return e.response;
+        }
+        if (created) task.run();
+        return await(task);
+    }
+
+    /*
+     * Checks if a response can be returned without being revalidated
+     */
+    private boolean isFresh(Entry e, long now) {
+        long age = now - e.fetchedAt;
+        return !e.persisted && age >= 0 && age < ttl;
+    }
+
+    /*
+     * Creates the task loading the card providers, it is shared by all the callers until it is over
+     */
+    private FutureTask<Response<CardProviderResponse>> newLoad(final String owner, final Loader loader, final Entry previous) {
+        final FutureTask<?>[] self = new FutureTask<?>[1];
+        FutureTask<Response<CardProviderResponse>> task = new FutureTask<Response<CardProviderResponse>>(new Callable<Response<CardProviderResponse>>() {
+            @Override
+            public Response<CardProviderResponse> call() throws Exception {
+                try {
+                    return load(owner, loader, previous);
+                } finally {
+                    synchronized (lock) {
+                        if (inFlight == self[0]) inFlight = null;
+                    }
+                }
+            }
+        });
+        self[0] = task;
+        return task;
+    }
+
+    /*
+     * Sends the request and updates the cache with its result
+     */
+    private Response<CardProviderResponse> load(String owner, Loader loader, Entry previous) throws CheckoutException, IOException {
+        String etag = previous == null ? null : previous.etag;
+        Response<CardProviderResponse> response = loader.load(etag);
+        long now = System.currentTimeMillis();
+        Entry updated = null;
+        if (response.httpStatus == 304 && previous != null) {
+            updated = new Entry(owner, previous.response, previous.etag, now, false);
+        } else if (!response.hasError && response.model != null) {
+            updated = new Entry(owner, response, response.etag, now, false);
+        }
+        if (updated == null) return response;
+
+        synchronized (lock) {
+            entry = updated;
+        }
+        if (file != null) write(file, updated);
+        return updated.response;
+    }
+
+    /*
+     * Waits for the result of a load, rethrowing its exception
+     */
+    private static Response<CardProviderResponse> await(FutureTask<Response<CardProviderResponse>> task) throws CheckoutException, IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the card providers");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CheckoutException) throw (CheckoutException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new CheckoutException(cause);
+        }
+    }
+
+    /*
+     * Reads the cached response from the file, returns null if the file does not exist or cannot be read
+     */
+    private Entry read(File file) {
+        if (!file.isFile()) return null;
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            Snapshot snapshot = gson.fromJson(reader, Snapshot.class);
+            if (snapshot == null || snapshot.data == null) return null;
+            Response<CardProviderResponse> response = new Response<CardProviderResponse>(snapshot.data);
+            response.httpStatus = 200;
+            response.etag = snapshot.etag;
+            return new Entry(snapshot.owner, response, snapshot.etag, snapshot.fetchedAt, true);
+        } catch (IOException | JsonParseException e) {
+            return null;
+        } finally {
+            close(reader);
+        }
+    }
+
+    /*
+     * Writes the cached response to the file, through a temporary file so that a crash never leaves a truncated cache
+     */
+    private void write(File file, Entry entry) {
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+            gson.toJson(new Snapshot(entry.owner, entry.etag, entry.fetchedAt, entry.response.model), writer);
+            writer.close();
+            writer = null;
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                tmp.renameTo(file);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+        } finally {
+            close(writer);
+        }
+    }
+
+    private static void close(Closeable c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+    /*
+     * Cached response and the information needed to know when to revalidate it
+     */
+    private static class Entry {
+        final String owner;
+        final Response<CardProviderResponse> response;
+        final String etag;
+        final long fetchedAt;
+        final boolean persisted;
+
+        Entry(String owner, Response<CardProviderResponse> response, String etag, long fetchedAt, boolean persisted) {
+            this.owner = owner;
+            this.response = response;
+            this.etag = etag;
+            this.fetchedAt = fetchedAt;
+            this.persisted = persisted;
+        }
+
+        boolean belongsTo(String owner) {
+            return same(this.owner, owner);
+        }
+
+        static boolean same(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /*
+     * Format of the cache file
+     */
+    private static class Snapshot {
+        String owner;
+        String etag;
+        long fetchedAt;
+        CardProviderResponse data;
+
+        Snapshot(String owner, String etag, long fetchedAt, CardProviderResponse data) {
+            this.owner = owner;
+            this.etag = etag;
+            this.fetchedAt = fetchedAt;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.checkout;
+
+import com.checkout.CardValidator.Cards;
+
+/**
+ * Digit-prefix trie used to identify the type of a card number without running any regular expression.
+ * It is built once from the prefixes and lengths accepted by the patterns of CardValidator.Cards and resolves
+ * a number in a single pass over its digits, without allocating.
+ */
+final class CardTypeTrie {
+
+    /* Index of the root node, the node reached before reading any digit */
+    static final int ROOT = 0;
+
+    /* Value returned by next when the path leaves the trie, no prefix can match anymore */
+    static final int NONE = -1;
+
+    /* Longest card number length handled by the length masks */
+    static final int MAX_LENGTH = 30;
+
+    /*
+     * Rules mirroring Cards.pattern, in the same order as the enumeration so that the first matching rule
+     * gives the same result as the first matching regular expression.
+     * Each rule is made of the card, the accepted lengths and the accepted prefixes.
+     */
+    private static final Cards[] RULE_CARDS = new Cards[]{
+            Cards.MAESTRO,      // ^(5[06-9]|6[37])[0-9]{10,17}$
+            Cards.MASTERCARD,   // ^5[0-5][0-9]{14}$
+            Cards.DINERSCLUB,   // ^3[0-9]{11}$ (optional group absent)
+            Cards.DINERSCLUB,   // ^3(?:0[0-5]|[68][0-9])[0-9]{11}$
+            Cards.LASER,        // ^(6304|6706|6709|6771)[0-9]{12,15}$
+            Cards.JCB,          // ^(?:2131|1800)[0-9]{11}$
+            Cards.JCB,          // ^35[0-9]{3}[0-9]{11}$
+            Cards.UNIONPAY,     // ^(62[0-9]{14,17})$
+            Cards.DISCOVER,     // ^6(?:011|5[0-9]{2})[0-9]{12}$
+            Cards.AMEX,         // ^3[47][0-9]{13}$
+            Cards.VISA          // ^4[0-9]{12}(?:[0-9]{3})?$
+    };
+
+    private static final int[][] RULE_LENGTHS = new int[][]{
+            {12, 13, 14, 15, 16, 17, 18, 19},
+            {16},
+            {12},
+            {14},
+            {16, 17, 18, 19},
+            {15},
+            {16},
+            {16, 17, 18, 19},
+            {16},
+            {15},
+            {13, 16}
+    };
+
+    private static final String[][] RULE_PREFIXES = new String[][]{
+            {"50", "56", "57", "58", "59", "63", "67"},
+            {"50", "51", "52", "53", "54", "55"},
+            {"3"},
+            {"300", "301", "302", "303", "304", "305", "36", "38"},
+            {"6304", "6706", "6709", "6771"},
+            {"2131", "1800"},
+            {"35"},
+            {"62"},
+            {"6011", "65"},
+            {"34", "37"},
+            {"4"}
+    };
+
+    /* Bit i is set if a number of length i is accepted by the rule of the same index */
+    private static final int[] lengthMasks;
+
+    /* children[node * 10 + digit] contains the index of the child node or NONE */
+    private static final int[] children;
+
+    /* Bit r is set if the prefix leading to the node completes the rule r */
+    private static final int[] ruleMasks;
+
+    /* Bit r is set if the rule r is completed by the node or one of its descendants */
+    private static final int[] subtreeMasks;
+
+    /* Bit r is set in longerMasks[i] if the rule r accepts a number of at least i digits */
+    private static final int[] longerMasks = new int[MAX_LENGTH + 2];
+
+    static {
+        int nodes = 1;
+        for (String[] prefixes : RULE_PREFIXES) {
+            for (String prefix : prefixes) nodes += prefix.length();
+        }
+        int[] tmpChildren = new int[nodes * 10];
+        int[] tmpRules = new int[nodes];
+        for (int i = 0; i < tmpChildren.length; i++) tmpChildren[i] = NONE;
+
+        int count = 1;
+        for (int r = 0; r < RULE_PREFIXES.length; r++) {
+            for (String prefix : RULE_PREFIXES[r]) {
+                int node = ROOT;
+                for (int i = 0; i < prefix.length(); i++) {
+                    int slot = node * 10 + (prefix.charAt(i) - '0');
+                    if (tmpChildren[slot] == NONE) tmpChildren[slot] = count++;
+                    node = tmpChildren[slot];
+                }
+                tmpRules[node] |= 1 << r;
+            }
+        }
+
+        lengthMasks = new int[RULE_LENGTHS.length];
+        for (int r = 0; r < RULE_LENGTHS.length; r++) {
+            for (int len : RULE_LENGTHS[r]) {
+                lengthMasks[r] |= 1 << len;
+                for (int i = 0; i <= len; i++) longerMasks[i] |= 1 << r;
+            }
+        }
+
+        /* the children are always created after their parent, so a reverse pass sees them before the parent */
+        int[] tmpSubtree = tmpRules.clone();
+        for (int node = count - 1; node >= 0; node--) {
+            for (int d = 0; d < 10; d++) {
+                int child = tmpChildren[node * 10 + d];
+                if (child != NONE) tmpSubtree[node] |= tmpSubtree[child];
+            }
+        }
+        children = tmpChildren;
+        ruleMasks = tmpRules;
+        subtreeMasks = tmpSubtree;
+    }
+
+    private CardTypeTrie() {
+    }
+
+    /**
+     * Moves one digit down the trie
+     * @param node int containing the current node, ROOT before the first digit
+     * @param digit int between 0 and 9
+     * @return int containing the next node or NONE if no prefix continues with this digit
+     */
+    static int next(int node, int digit) {
+        return node == NONE ? NONE : children[node * 10 + digit];
+    }
+
+    /**
+     * Returns the rules whose prefix ends on the given node
+     * @param node int containing the node
+     * @return int mask of the completed rules, to be accumulated along the path
+     */
+    static int rules(int node) {
+        return node == NONE ? 0 : ruleMasks[node];
+    }
+
+    /**
+     * Returns the rules that a number can still match once more digits are added
+     * @param node int containing the node reached by the digits of the number
+     * @param rules int mask accumulated with rules along the path of the number
+     * @param length int containing the number of digits
+     * @return int mask of the rules completed or reachable below the node, accepting at least length digits
+     */
+    static int candidates(int node, int rules, int length) {
+        if (length > MAX_LENGTH) return 0;
+        int reachable = node == NONE ? rules : rules | subtreeMasks[node];
+        return reachable & longerMasks[length];
+    }
+
+    /**
+     * Returns the card of a rule
+     * @param rule int containing the index of the rule
+     * @return Cards element identified by the rule
+     */
+    static Cards card(int rule) {
+        return RULE_CARDS[rule];
+    }
+
+    /**
+     * Returns the cards of the rules of a mask
+     * @param rules int mask of rules
+     * @return int mask with the bit of the ordinal of each Cards element set
+     */
+    static int cards(int rules) {
+        int mask = 0;
+        for (int r = 0; rules != 0 && r < RULE_CARDS.length; r++, rules >>>= 1) {
+            if ((rules & 1) != 0) mask |= 1 << RULE_CARDS[r].ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the card matching the accumulated rules for a number of the given length
+     * @param rules int mask accumulated with rules along the path of the number
+     * @param length int containing the number of digits
+     * @return Cards element matching first in the enumeration order or null if none matches
+     */
+    static Cards resolve(int rules, int length) {
+        if (length <= 0 || length > MAX_LENGTH) return null;
+        for (int r = 0; rules != 0 && r < RULE_CARDS.length; r++, rules >>>= 1) {
+            if ((rules & 1) != 0 && (lengthMasks[r] & (1 << length)) != 0) return RULE_CARDS[r];
+        }
+        return null;
+    }
+
+    /**
+     * Identifies the card type of the digits contained in a sequence, any other character being ignored
+     * @param num CharSequence containing the card's number
+     * @param offset int containing the index of the first character to read
+     * @param length int containing the number of characters to read
+     * @return Cards element corresponding to the digits or null if it was not recognized
+     */
+    static Cards lookup(CharSequence num, int offset, int length) {
+        int node = ROOT;
+        int rules = 0;
+        int digits = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = num.charAt(i);
+            if (c < '0' || c > '9') continue;
+            node = next(node, c - '0');
+            rules |= rules(node);
+            digits++;
+        }
+        return resolve(rules, digits);
+    }
+}
@@ -8,8 +8,12 @@ import java.util.regex.Pattern;
  */
 public class CardValidator {
 
-    /* Regular expression containing the default format for displaying a card's number */
-    private static String DEFAULT_CARD_FORMAT = "(\\d{1,4})";
+    /*
+     * Regular expression containing the default format for displaying a card's number. It must stay a compile-time
+     * constant: the Cards elements read it, and reading a non constant field would initialize CardValidator, whose
+     * CARDS array needs Cards.values() before the elements exist.
+     */
+    private final static String DEFAULT_CARD_FORMAT = "(\\d{1,4})";
 
     /**
      * enumeration representing the default cards used by Checkout
@@ -40,6 +44,8 @@ public class CardValidator {
         private final int[] cvvLength;
         private final boolean luhn;
         private final boolean supported;
+        /* Lengths of the groups of digits displayed, read from format, the last one repeats until all the digits are placed */
+        private final int[] groups;
 
         Cards(String name, String pattern, String format, int[] cardLength, int[] cvvLength, boolean luhn, boolean supported) {
             this.name = name;
@@ -49,9 +55,65 @@ public class CardValidator {
             this.cvvLength = cvvLength;
             this.luhn = luhn;
             this.supported = supported;
+            this.groups = parseGroups(format);
+        }
+
+        /*
+         * Reads the length of each group of a display format, the maximum of each \d{min,max} quantifier
+         * @param format String containing the regular expression of the display format
+         * @return int array containing the group lengths
+         */
+        private static int[] parseGroups(String format) {
+            int count = 0;
+            for (int i = format.indexOf("\\d{"); i >= 0; i = format.indexOf("\\d{", i + 1)) count++;
+            int[] groups = new int[count];
+            int g = 0;
+            for (int i = format.indexOf("\\d{"); i >= 0; i = format.indexOf("\\d{", i + 1)) {
+                int end = format.indexOf('}', i);
+                String quantifier = format.substring(i + 3, end);
+                groups[g++] = Integer.parseInt(quantifier.substring(quantifier.indexOf(',') + 1));
+            }
+            return groups;
+        }
+
+        /*
+         * Getter for the display groups, the array must not be modified
+         * @return int array containing the length of each group of digits, the last one repeats
+         */
+        int[] groups() {
+            return groups;
+        }
+
+        /*
+         * Checks if the given length is one of the possible lengths of the card's code
+         * @param length int containing the number of digits
+         * @return boolean, if the length is valid for this card or not
+         */
+        boolean hasLength(int length) {
+            for (int i = 0; i < cardLength.length; i++) {
+                if (cardLength[i] == length) return true;
+            }
+            return false;
         }
     }
 
+    /* Result code of checkCardNumber, the number is valid */
+    public final static int CARD_VALID = 0;
+    /* Result code of checkCardNumber, the number does not contain any digit */
+    public final static int CARD_EMPTY = 1;
+    /* Result code of checkCardNumber, the number does not correspond to any known card type */
+    public final static int CARD_UNKNOWN_TYPE = 2;
+    /* Result code of checkCardNumber, the number's length is not valid for its card type */
+    public final static int CARD_INVALID_LENGTH = 3;
+    /* Result code of checkCardNumber, the number does not pass the Luhn validation */
+    public final static int CARD_INVALID_LUHN = 4;
+
+    /* Value of a digit once doubled by the Luhn algorithm, indexed by the digit */
+    final static int[] LUHN_DOUBLED = {0, 2, 4, 6, 8, 1, 3, 5, 7, 9};
+
+    /* Cached values of Cards, values() copies the array on every call */
+    final static Cards[] CARDS = Cards.values();
+
     /* Regular expression used for sanitizing the card's name */
     public final static String CARD_NAME_REPLACE_PATTERN = "[^A-Z\\s]";
 
@@ -84,23 +146,12 @@ public class CardValidator {
     }
 
     /**
-     * Returns the Cards element corresponding to the given number
+     * Returns the Cards element corresponding to the given number, non digit characters are ignored
      * @param num String containing the card's number
      * @return Cards element corresponding to num or null if it was not recognized
      */
     public static Cards getCardType(String num) {
-        num = sanitizeEntry(num, true);
-        if (Pattern.matches("^(54)", num) && num.length() > 16) {
-            return Cards.MAESTRO;
-        }
-
-        Cards[] cards = Cards.values();
-        for (int i = 0; i < cards.length ; i++) {
-            if (Pattern.matches(cards[i].pattern, num)) {
-                return cards[i];
-            }
-        }
-        return null;
+        return CardTypeTrie.lookup(num, 0, num.length());
     }
 
     /*
@@ -108,20 +159,15 @@ public class CardValidator {
      * @param num String containing the card's number to be tested
      * @return boolean containing the result of the computation
      */
-    private static boolean validateLuhnNumber(String num) {
+    static boolean validateLuhnNumber(String num) {
         if (num.equals("")) return false;
         int nCheck = 0;
-        int nDigit = 0;
         boolean bEven = false;
-        num = sanitizeEntry(num, true);
 
         for (int i = num.length() - 1 ; i >= 0 ; i--) {
-            nDigit = Integer.parseInt(String.valueOf(num.charAt(i)));
-
-            if (bEven) {
-                if ((nDigit *= 2) > 9) nDigit -= 9;
-            }
-            nCheck += nDigit;
+            char c = num.charAt(i);
+            if (c < '0' || c > '9') continue;
+            nCheck += bEven ? LUHN_DOUBLED[c - '0'] : c - '0';
             bEven = !bEven;
         }
 
@@ -134,22 +180,119 @@ public class CardValidator {
      * @return boolean containing the result of the verification
      */
     public static boolean validateCardNumber(String num) {
-        if (num.equals("")) return false;
-        num = sanitizeEntry(num, true);
-        if (Pattern.matches("^\\d+$", num)) {
-            Cards c = getCardType(num);
-            if (c != null) {
-                boolean len = false;
-                for (int i = 0; i < c.cardLength.length; i++) {
-                    if (c.cardLength[i] == num.length()) {
-                        len = true;
-                        break;
-                    }
-                }
-                return len && (!c.luhn || validateLuhnNumber(num));
+        return checkCardNumber(num, 0, num.length()) == CARD_VALID;
+    }
+
+    /**
+     * Checks the card's number in a single pass without allocating, non digit characters are skipped
+     * @param num CharSequence containing the card's number
+     * @param offset int containing the index of the first character to read
+     * @param length int containing the number of characters to read
+     * @return int result code, CARD_VALID or the reason why the number was rejected
+     */
+    public static int checkCardNumber(CharSequence num, int offset, int length) {
+        return scanStatus(scanCardNumber(num, offset, length));
+    }
+
+    /**
+     * Checks the card's number in a single pass without allocating, non digit characters are skipped
+     * @param num char array containing the card's number
+     * @param offset int containing the index of the first character to read
+     * @param length int containing the number of characters to read
+     * @return int result code, CARD_VALID or the reason why the number was rejected
+     */
+    public static int checkCardNumber(char[] num, int offset, int length) {
+        return scanStatus(scanCardNumber(num, offset, length));
+    }
+
+    /*
+     * Scans the digits of the card's number, identifying its type and computing its Luhn checksum at the same time
+     * @return int containing the result code in its lowest byte and the card type in the next one, see scanStatus and scanCard
+     */
+    static int scanCardNumber(CharSequence num, int offset, int length) {
+        int node = CardTypeTrie.ROOT;
+        int rules = 0;
+        int digits = 0;
+        int evenSum = 0;
+        int oddSum = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = num.charAt(i);
+            if (c < '0' || c > '9') continue;
+            int d = c - '0';
+            node = CardTypeTrie.next(node, d);
+            rules |= CardTypeTrie.rules(node);
+            if ((digits & 1) == 0) {
+                evenSum += LUHN_DOUBLED[d];
+                oddSum += d;
+            } else {
+                evenSum += d;
+                oddSum += LUHN_DOUBLED[d];
             }
+            digits++;
         }
-        return false;
+        return scanResult(rules, digits, evenSum, oddSum);
+    }
+
+    /*
+     * Same as scanCardNumber(CharSequence, int, int) for a char array
+     */
+    static int scanCardNumber(char[] num, int offset, int length) {
+        int node = CardTypeTrie.ROOT;
+        int rules = 0;
+        int digits = 0;
+        int evenSum = 0;
+        int oddSum = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = num[i];
+            if (c < '0' || c > '9') continue;
+            int d = c - '0';
+            node = CardTypeTrie.next(node, d);
+            rules |= CardTypeTrie.rules(node);
+            if ((digits & 1) == 0) {
+                evenSum += LUHN_DOUBLED[d];
+                oddSum += d;
+            } else {
+                evenSum += d;
+                oddSum += LUHN_DOUBLED[d];
+            }
+            digits++;
+        }
+        return scanResult(rules, digits, evenSum, oddSum);
+    }
+
+    /*
+     * Builds the result of a scan
+     * @param rules int mask of the CardTypeTrie rules met along the digits
+     * @param digits int containing the number of digits
+     * @param evenSum int containing the Luhn sum if the digits at even indexes (from the left) are doubled
+     * @param oddSum int containing the Luhn sum if the digits at odd indexes (from the left) are doubled
+     */
+    static int scanResult(int rules, int digits, int evenSum, int oddSum) {
+        if (digits == 0) return CARD_EMPTY;
+        Cards c = CardTypeTrie.resolve(rules, digits);
+        if (c == null) return CARD_UNKNOWN_TYPE;
+        int type = (c.ordinal() + 1) << 8;
+        if (!c.hasLength(digits)) return type | CARD_INVALID_LENGTH;
+        /* the rightmost digit is never doubled, so the doubled digits are the ones with the same parity as the count */
+        int sum = (digits & 1) == 0 ? evenSum : oddSum;
+        if (c.luhn && sum % 10 != 0) return type | CARD_INVALID_LUHN;
+        return type | CARD_VALID;
+    }
+
+    /*
+     * Extracts the result code from the value returned by scanCardNumber
+     */
+    static int scanStatus(int scan) {
+        return scan & 0xFF;
+    }
+
+    /*
+     * Extracts the card type from the value returned by scanCardNumber
+     * @return Cards element or null if the type was not recognized
+     */
+    static Cards scanCard(int scan) {
+        int ordinal = (scan >>> 8) - 1;
+        return ordinal < 0 ? null : CARDS[ordinal];
     }
 
     /**
@@ -180,14 +323,60 @@ public class CardValidator {
      * @return boolean containing the result of the verification
      */
     public static boolean validateExpiryDate(int month, int year) {
-        if (month < 1 || year < 1) return false;
         Calendar cal = Calendar.getInstance();
-        int curMonth = cal.get(Calendar.MONTH) + 1;
-        int curYear = cal.get(Calendar.YEAR);
+        return validateExpiryDate(month, year, cal.get(Calendar.MONTH) + 1, cal.get(Calendar.YEAR));
+    }
+
+    /*
+     * Checks if the card is still valid at a given date, used when the current date is read once for many cards
+     * @param month int containing the expiring month of the card
+     * @param year int containing the expiring year of the card
+     * @param curMonth int containing the current month, from 1 to 12
+     * @param curYear int containing the current year on 4 digits
+     * @return boolean containing the result of the verification
+     */
+    static boolean validateExpiryDate(int month, int year, int curMonth, int curYear) {
+        if (month < 1 || year < 1) return false;
         if(year < 100) curYear -= 2000;
         return (curYear == year) ? curMonth <= month : curYear < year;
     }
 
+    /**
+     * Parses a month or a year the same way validateExpiryDate(String, String) does, without throwing or allocating
+     * @param value String containing the month or the year
+     * @return int containing the parsed value or -1 if it is not a number
+     */
+    public static int parseExpiryField(String value) {
+        int result = 0;
+        int len = value.length();
+        if (len == 0 || len > 9) return parseExpiryFieldSlow(value);
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') return parseExpiryFieldSlow(value);
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /*
+     * Fallback of parseExpiryField for signs, non ASCII digits and long values, accepts what Integer.parseInt accepts
+     * but returns -1 rather than building a NumberFormatException for the rest
+     */
+    private static int parseExpiryFieldSlow(String value) {
+        int len = value.length();
+        int i = len > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+        if (i == len) return -1;
+        long result = 0;
+        for (; i < len; i++) {
+            int digit = Character.digit(value.charAt(i), 10);
+            if (digit < 0) return -1;
+            result = result * 10 + digit;
+            if (result > Integer.MAX_VALUE + 1L) return -1;
+        }
+        if (value.charAt(0) == '-') return (int) -result;
+        return result > Integer.MAX_VALUE ? -1 : (int) result;
+    }
+
     /**
      * Checks if the CVV is valid for a given card's type
      * @param cvv String containing the value of the CVV
@@ -0,0 +1,24 @@
+package com.checkout;
+
+import com.checkout.httpconnector.Response;
+
+/**
+ * Interface used to receive the result of an asynchronous call to CheckoutKit. The methods are called on the thread
+ * that ran the request, Android applications need to switch back to the UI thread themselves.
+ * @param <T> type of the model returned by the server
+ */
+public interface CheckoutCallback<T> {
+
+    /**
+     * Called when the server answered, including when it returned an error (see Response.hasError)
+     * @param response Response object containing the model or the error returned by the server
+     */
+    void onResponse(Response<T> response);
+
+    /**
+     * Called when no response could be obtained
+     * @param e Exception raised: CheckoutException or IOException if the request failed, TimeoutException if it did
+     *          not complete in time, CancellationException if it was cancelled
+     */
+    void onFailure(Exception e);
+}
@@ -1,26 +1,59 @@
 package com.checkout;
 
 import com.checkout.exceptions.CheckoutException;
+import com.checkout.exceptions.DeadlineExceededException;
+import com.checkout.httpconnector.AsyncTransport;
+import com.checkout.httpconnector.ConnectionPool;
 import com.checkout.httpconnector.HttpConnector;
+import com.checkout.httpconnector.Request;
+import com.checkout.httpconnector.Transport;
 import com.checkout.httpconnector.HttpConnector.HttpMethods;
 import com.checkout.httpconnector.Response;
 import com.checkout.logger.Log;
+import com.checkout.metrics.CheckoutMetrics;
+import com.checkout.metrics.LatencyHistogram;
 import com.checkout.models.Card;
 import com.checkout.models.CardProviderResponse;
 import com.checkout.models.CardTokenResponse;
+import com.checkout.models.Json;
+import com.checkout.resilience.Bulkhead;
+import com.checkout.resilience.CircuitBreaker;
+import com.checkout.resilience.Resilience;
 import com.google.gson.Gson;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 import java.util.logging.SocketHandler;
-import java.util.regex.Pattern;
 
 
 /**
- * Main class allowing to create one CheckoutKit instance, provide the merchant's public key and create card tokens
+ * Main class allowing to create one CheckoutKit instance, provide the merchant's public key and create card tokens.
+ *
+ * getInstance returns a single shared instance whose settings can be changed at any time. Applications working for
+ * several merchants at once create one instance per public key with a Builder (or a CheckoutKitRegistry) instead: those
+ * instances are immutable, their setters throw an IllegalStateException, and can be used by any number of threads.
  */
 public class CheckoutKit {
 
@@ -55,16 +88,35 @@ public class CheckoutKit {
 
 
     private static CheckoutKit instance = null; /* Used for singleton pattern */
-    private static String PUBLIC_KEY_REGEX_VALIDATION = "^pk_(?:test_)?(?:\\w{8})-(?:\\w{4})-(?:\\w{4})-(?:\\w{4})-(?:\\w{12})$";
     /* Used for testing purposes, overrides the value of the Environment URL (replaced by localhost in unit tests) */
     protected String baseUrlOverride;
-    private String publicKey;
-    private Environment baseUrl;
-    private boolean logging;
-    private Log logger;
+    private volatile String publicKey;
+    private volatile Environment baseUrl;
+    private volatile boolean logging;
+    private volatile Log logger;
+
+    /* Number of threads of the default executor running the asynchronous calls */
+    private static final int DEFAULT_ASYNC_THREADS = 4;
+    private static ExecutorService defaultExecutor = null;
+    private static ScheduledExecutorService timeoutScheduler = null;
+    /* Number of getCardProviders requests recorded before the hedging delay is read from the metrics */
+    private static final int HEDGE_MIN_SAMPLES = 20;
+    /* Hedging delay used until enough requests are recorded, in milliseconds */
+    private static final long DEFAULT_HEDGE_DELAY = 250;
+    /* Maximum number of threads sending the attempts of hedged requests, shared by all the instances */
+    private static final int MAX_HEDGE_THREADS = 32;
+    private static ExecutorService hedgeExecutor = null;
 
     protected HttpConnector httpClient;
+    private volatile Transport transport = null;
     protected Gson gson;
+    private volatile Executor executor = null;
+    private volatile CardProviderCache providerCache = null;
+    private volatile RetryPolicy retryPolicy = null;
+    private volatile boolean hedging = false;
+    private volatile Resilience resilience = null;
+    /* true for the instances created by a Builder, whose settings cannot be changed */
+    private final boolean immutable;
 
 
     /*
@@ -79,13 +131,64 @@ public class CheckoutKit {
         this.publicKey = publicKey;
         this.baseUrl = baseUrl;
         this.logging = debug;
-        gson = new Gson();
+        gson = Json.gson();
         this.logger = log;
         httpClient = new HttpConnector(gson, debug, logger);
-        if(logging){
+        httpClient.setMetrics(new CheckoutMetrics());
+        this.immutable = false;
+        if(logging && logger.isLoggable(Log.Level.INFO)){
+            logger.info("**CheckoutKit created**  	"+ publicKey);
+        }
+
+    }
+
+    /*
+     * Constructor used by Builder, the settings are copied from the builder and cannot be changed afterwards
+     *
+     * @param publicKey String containing the merchant's public key, already validated
+     * @param b Builder object containing the settings
+     */
+    private CheckoutKit(String publicKey, Builder b) {
+        this.publicKey = publicKey;
+        this.baseUrl = b.environment;
+        this.logging = b.debug;
+        this.logger = b.logger;
+        gson = Json.gson();
+        httpClient = new HttpConnector(gson, b.debug, b.logger);
+        httpClient.setMetrics(b.metrics);
+        httpClient.setConnectionPool(b.connectionPool);
+        httpClient.setConnectTimeout(b.connectTimeout);
+        httpClient.setReadTimeout(b.readTimeout);
+        httpClient.setResponseCompression(b.responseCompression);
+        httpClient.setRequestCompressionThreshold(b.requestCompressionThreshold);
+        /* getTransport hands the connector out, it must not be a way around the immutability */
+        httpClient.freeze();
+        this.transport = b.transport;
+        this.executor = b.executor;
+        this.providerCache = b.cardProviderCache ? new CardProviderCache(b.cacheTtl, b.cacheStaleWindow, null) : null;
+        this.retryPolicy = b.retryPolicy;
+        this.hedging = b.hedging;
+        this.resilience = b.resilience;
+        this.immutable = true;
+        if(logging && logger.isLoggable(Log.Level.INFO)){
             logger.info("**CheckoutKit created**  	"+ publicKey);
         }
+    }
 
+    /*
+     * Rejects the changes of the settings of an instance created by a Builder
+     */
+    private void checkMutable() {
+        if (immutable) throw new IllegalStateException("The settings of a CheckoutKit created by a Builder cannot be changed");
+    }
+
+    /**
+     * Checks if the settings of this instance can be changed
+     *
+     * @return boolean, true for the instances created by a Builder
+     */
+    public boolean isImmutable() {
+        return immutable;
     }
 
     /**
@@ -93,7 +196,9 @@ public class CheckoutKit {
      * @param logger Log object
      */
     public void setLogger(Log logger) {
+        checkMutable();
         this.logger = logger;
+        this.httpClient.setLogger(logger);
     }
 
     /**
@@ -282,14 +387,14 @@ public class CheckoutKit {
     }
 
     /*
-     * Function used to check if the merchant's public key is valid
+     * Function used to check if the merchant's public key is valid, see PublicKeyValidator.REGEX for the format
      *
      * @param pk String containing the public key to be tested
      * @return boolean, if the public key is valid or not
      * @throws CheckoutException if the public key is not valid
      */
     private static boolean checkPK(String pk) throws CheckoutException {
-        if (!Pattern.matches(PUBLIC_KEY_REGEX_VALIDATION, pk))
+        if (!PublicKeyValidator.isValid(pk))
             throw new CheckoutException(CheckoutException.CKExceptionType.INVALID_PUBLIC_KEY);
         else return true;
     }
@@ -328,6 +433,7 @@ public class CheckoutKit {
      * @param debug boolean containing the new value of the debug mode
      */
     public void setDebugMode(boolean debug) {
+        checkMutable();
         this.logging = debug;
         this.httpClient.setDebug(debug);
     }
@@ -347,9 +453,33 @@ public class CheckoutKit {
      * @param env Environment object containing the new environment
      */
     public void setEnvironment(Environment env) {
+        checkMutable();
+        if (env != this.baseUrl) {
+            CardProviderCache cache = providerCache;
+            if (cache != null) cache.invalidate();
+        }
         this.baseUrl = env;
     }
 
+    /**
+     * Sets the cache used by getCardProviders
+     *
+     * @param cache CardProviderCache object, null to send a request on every call
+     */
+    public void setCardProviderCache(CardProviderCache cache) {
+        checkMutable();
+        this.providerCache = cache;
+    }
+
+    /**
+     * Getter for the cache used by getCardProviders
+     *
+     * @return current CardProviderCache object or null if the card providers are not cached
+     */
+    public CardProviderCache getCardProviderCache() {
+        return providerCache;
+    }
+
     /**
      * Getter for the public key
      *
@@ -366,9 +496,234 @@ public class CheckoutKit {
      * @throws CheckoutException if the public key is not valid
      */
     public void setPublicKey(String publicKey) throws CheckoutException {
+        checkMutable();
         if (checkPK(publicKey)) this.publicKey = publicKey;
     }
 
+    /**
+     * Enables the reuse of the connections to Checkout's server
+     *
+     * @param pool ConnectionPool object containing the pool settings, null to close the connections after every request
+     */
+    public void setConnectionPool(ConnectionPool pool) {
+        checkMutable();
+        this.httpClient.setConnectionPool(pool);
+    }
+
+    /**
+     * Changes the default timeouts of the requests
+     *
+     * @param connectTimeout int containing the time in milliseconds to establish a connection, 0 to wait forever
+     * @param readTimeout int containing the time in milliseconds to wait for data once connected, 0 to wait forever
+     */
+    public void setTimeouts(int connectTimeout, int readTimeout) {
+        checkMutable();
+        this.httpClient.setConnectTimeout(connectTimeout);
+        this.httpClient.setReadTimeout(readTimeout);
+    }
+
+    /**
+     * Changes the compression of the requests and responses
+     *
+     * @param responses boolean, true to accept gzip and deflate encoded responses (default)
+     * @param requestThreshold int containing the size in bytes from which a payload is sent gzip encoded, -1 to never
+     *                         compress them (default)
+     */
+    public void setCompression(boolean responses, int requestThreshold) {
+        checkMutable();
+        this.httpClient.setResponseCompression(responses);
+        this.httpClient.setRequestCompressionThreshold(requestThreshold);
+    }
+
+    /**
+     * Getter for the metrics of the requests sent to Checkout's server, recorded per endpoint (GETCARDPROVIDERS, CREATECARDTOKEN)
+     *
+     * @return CheckoutMetrics object or null if the metrics are disabled
+     */
+    public CheckoutMetrics getMetrics() {
+        return this.httpClient.getMetrics();
+    }
+
+    /**
+     * Changes where the metrics are recorded
+     *
+     * @param metrics CheckoutMetrics object, can be shared by several instances, null to disable the metrics
+     */
+    public void setMetrics(CheckoutMetrics metrics) {
+        checkMutable();
+        this.httpClient.setMetrics(metrics);
+    }
+
+    /**
+     * Sets the transport sending the requests
+     *
+     * @param transport Transport object, null to use the default HttpConnector. The debug mode, logger, connection pool
+     *                  and metrics set on the CheckoutKit only apply to the default transport.
+     */
+    public void setTransport(Transport transport) {
+        checkMutable();
+        this.transport = transport;
+    }
+
+    /**
+     * Getter for the transport sending the requests. The HttpConnector of an instance created by a Builder is frozen,
+     * its setters throw an IllegalStateException.
+     *
+     * @return Transport object used by the calls
+     */
+    public Transport getTransport() {
+        Transport t = transport;
+        return t == null ? httpClient : t;
+    }
+
+    /**
+     * Sets the policy retrying the requests that failed for a transient reason
+     *
+     * @param policy RetryPolicy object, null to never retry
+     */
+    public void setRetryPolicy(RetryPolicy policy) {
+        checkMutable();
+        this.retryPolicy = policy;
+    }
+
+    /**
+     * Getter for the retry policy
+     *
+     * @return current RetryPolicy object or null if the requests are never retried
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Enables hedged requests for getCardProviders: when no response is received after the 95th percentile of the
+     * latency recorded in the metrics (250 ms until 20 requests are recorded), a second identical request is sent and
+     * the first response received is returned. The attempts run on a pool of threads dedicated to hedging, never on the
+     * executor of the asynchronous calls.
+     *
+     * @param hedging boolean, true to send hedged requests
+     */
+    public void setHedging(boolean hedging) {
+        checkMutable();
+        this.hedging = hedging;
+    }
+
+    /**
+     * Getter for the hedging mode
+     *
+     * @return boolean, true if getCardProviders sends hedged requests
+     */
+    public boolean isHedging() {
+        return hedging;
+    }
+
+    /**
+     * Sets the circuit breakers and bulkheads guarding the calls. A call is rejected with a CheckoutException of type
+     * CIRCUIT_OPEN when the circuit of its endpoint is open, and of type BULKHEAD_FULL when its environment already has
+     * as many calls in flight as the bulkhead allows.
+     *
+     * @param resilience Resilience object, can be shared by several instances, null to send every call
+     */
+    public void setResilience(Resilience resilience) {
+        checkMutable();
+        this.resilience = resilience;
+    }
+
+    /**
+     * Getter for the circuit breakers and bulkheads
+     *
+     * @return current Resilience object or null if the calls are not guarded
+     */
+    public Resilience getResilience() {
+        return resilience;
+    }
+
+    /**
+     * Prepares the first request ahead of time: creates the JSON adapters of the models and, if a connection pool is set,
+     * opens a connection to the server specified in Environment so that the first card token does not wait for the TCP
+     * and TLS handshakes.
+     *
+     * @throws IOException if the server could not be reached
+     */
+    public void warmUp() throws IOException {
+        if(logging && logger.isLoggable(Log.Level.INFO)){
+            logger.info("**WarmUp called**  	" + publicKey);
+        }
+        Json.warmUp();
+        if (getTransport() == httpClient) httpClient.warmUp(baseUrlOverride == null ? this.baseUrl.url : baseUrlOverride);
+    }
+
+    /**
+     * Sets the executor running the asynchronous calls
+     *
+     * @param executor Executor object, null to use the default executor (a pool of 4 threads shared by all instances)
+     */
+    public void setExecutor(Executor executor) {
+        checkMutable();
+        this.executor = executor;
+    }
+
+    /**
+     * Getter for the executor running the asynchronous calls
+     *
+     * @return Executor object used by the asynchronous calls
+     */
+    public Executor getExecutor() {
+        Executor e = executor;
+        return e == null ? getDefaultExecutor() : e;
+    }
+
+    /*
+     * Returns the executor shared by the instances that were not given one, creates it on the first call
+     */
+    private static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(DEFAULT_ASYNC_THREADS, DEFAULT_ASYNC_THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("checkoutkit-async"));
+            pool.allowCoreThreadTimeOut(true);
+            defaultExecutor = pool;
+        }
+        return defaultExecutor;
+    }
+
+    /*
+     * Returns the executor sending the attempts of the hedged requests, creates it on the first call. It is not the
+     * executor of the asynchronous calls: their threads wait for the attempts, sharing it could fill every thread with
+     * waiting calls while the attempts sit in its queue. It never queues, an attempt finding no free thread is rejected.
+     */
+    private static synchronized ExecutorService getHedgeExecutor() {
+        if (hedgeExecutor == null) {
+            hedgeExecutor = new ThreadPoolExecutor(0, MAX_HEDGE_THREADS, 60, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), new DaemonThreadFactory("checkoutkit-hedge"));
+        }
+        return hedgeExecutor;
+    }
+
+    /*
+     * Returns the scheduler cancelling the asynchronous calls that exceed their timeout, creates it on the first call
+     */
+    private static synchronized ScheduledExecutorService getTimeoutScheduler() {
+        if (timeoutScheduler == null) {
+            timeoutScheduler = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("checkoutkit-timeout"));
+        }
+        return timeoutScheduler;
+    }
+
+    /*
+     * Runs a call on the executor
+     *
+     * @param call Callable object sending the request
+     * @param timeoutMillis long containing the time after which the call is cancelled, 0 for no timeout
+     * @param callback CheckoutCallback object notified of the result, can be null
+     * @return Future object giving access to the result or allowing to cancel the call
+     */
+    private <T> Future<Response<T>> submit(Callable<Response<T>> call, long timeoutMillis, CheckoutCallback<T> callback) {
+        CheckoutTask<T> task = new CheckoutTask<T>(call, callback);
+        if (timeoutMillis > 0) task.scheduleTimeout(getTimeoutScheduler(), timeoutMillis);
+        getExecutor().execute(task);
+        return task;
+    }
+
     /**
      * Function that calls getCardProviders via REST on the server specified in Environment
      *
@@ -376,10 +731,49 @@ public class CheckoutKit {
      * @throws CheckoutException if any problem occurred in the communication with the server or if the public key is not valid
      */
     public Response<CardProviderResponse> getCardProviders() throws CheckoutException, IOException {
-        if(logging){
-            logger.info("**GetCardProviders called**  	" + publicKey);
+        return getCardProviders(0);
+    }
+
+    /**
+     * Function that calls getCardProviders via REST on the server specified in Environment, within a deadline
+     *
+     * @param timeoutMillis long containing the time in milliseconds after which the call fails, connection, retries and
+     *                      reading included, 0 for no deadline
+     * @return CardProvider array containing the Checkout card providers
+     * @throws CheckoutException if any problem occurred in the communication with the server, if the public key is not
+     *                           valid or, with the type DEADLINE_EXCEEDED, if the deadline passed
+     */
+    public Response<CardProviderResponse> getCardProviders(long timeoutMillis) throws CheckoutException, IOException {
+        final String key = publicKey;
+        final long deadline = deadline(timeoutMillis);
+        if(logging && logger.isLoggable(Log.Level.INFO)){
+            logger.info("**GetCardProviders called**  	" + key);
+        }
+        final Transport t = getTransport();
+        final String url = getUrl(RESTFunctions.GETCARDPROVIDERS);
+        CardProviderCache cache = providerCache;
+        try {
+            if (cache == null) {
+                return loadCardProviders(t, url, key, null, deadline);
+            }
+            /* the cached providers belong to the merchant's key and to the server they were requested from */
+            return cache.get(key + " " + url, new CardProviderCache.Loader() {
+                @Override
+                public Response<CardProviderResponse> load(String etag) throws CheckoutException, IOException {
+                    return loadCardProviders(t, url, key, etag, deadline);
+                }
+            }, getExecutor());
+        } catch (DeadlineExceededException e) {
+            throw new CheckoutException(CheckoutException.CKExceptionType.DEADLINE_EXCEEDED, e);
         }
-        return httpClient.getRequest(getUrl(RESTFunctions.GETCARDPROVIDERS), publicKey, CardProviderResponse.class);
+    }
+
+    /*
+     * Sends the getCardProviders request, hedged if the hedging mode is enabled
+     */
+    private Response<CardProviderResponse> loadCardProviders(Transport t, String url, String key, String etag, long deadline) throws CheckoutException, IOException {
+        Request request = newRequest(RESTFunctions.GETCARDPROVIDERS, url, key, null, etag, deadline);
+        return execute(t, request, CardProviderResponse.class, hedging);
     }
 
     /**
@@ -390,9 +784,640 @@ public class CheckoutKit {
      * @throws CheckoutException if any problem occurred in the communication with the server or if the public key is not valid
      */
     public Response<CardTokenResponse> createCardToken(Card card) throws CheckoutException, IOException {
-        if(logging){
-            logger.info("**CreateCardToken called**  	"+ publicKey);
+        return createCardToken(card, 0);
+    }
+
+    /**
+     * Function that calls createCardToken via REST on the server specified in Environment, within a deadline
+     *
+     * @param card Card object containing the informations to be tokenized
+     * @param timeoutMillis long containing the time in milliseconds after which the call fails, connection, sending,
+     *                      retries and reading included, 0 for no deadline
+     * @return CardToken object containing all the information received by the server
+     * @throws CheckoutException if any problem occurred in the communication with the server, if the public key is not
+     *                           valid or, with the type DEADLINE_EXCEEDED, if the deadline passed
+     */
+    public Response<CardTokenResponse> createCardToken(Card card, long timeoutMillis) throws CheckoutException, IOException {
+        String key = publicKey;
+        long deadline = deadline(timeoutMillis);
+        if(logging && logger.isLoggable(Log.Level.INFO)){
+            logger.info("**CreateCardToken called**  	"+ key);
+        }
+        try {
+            return execute(getTransport(), newRequest(RESTFunctions.CREATECARDTOKEN, getUrl(RESTFunctions.CREATECARDTOKEN), key, gson.toJson(card), null, deadline), CardTokenResponse.class);
+        } catch (DeadlineExceededException e) {
+            throw new CheckoutException(CheckoutException.CKExceptionType.DEADLINE_EXCEEDED, e);
+        }
+    }
+
+    /*
+     * Returns the System.nanoTime() value after which a call started now fails, Request.NO_DEADLINE for a timeout of 0
+     */
+    private static long deadline(long timeoutMillis) {
+        return timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : Request.NO_DEADLINE;
+    }
+
+    /*
+     * Sends a request through the bulkhead of the environment, if any
+     *
+     * @param t Transport object sending the request
+     * @param request Request object to be sent
+     * @param returnType T instance returned by the server
+     * @return Response object of the last attempt
+     */
+    private <T> Response<T> execute(Transport t, Request request, Class<T> returnType) throws CheckoutException, IOException {
+        return execute(t, request, returnType, false);
+    }
+
+    /*
+     * Sends a request through the bulkhead of the environment, if any. A hedged request takes a single permit of the
+     * bulkhead and of the circuit breaker whatever the number of copies sent.
+     *
+     * @param t Transport object sending the request
+     * @param request Request object to be sent
+     * @param returnType T instance returned by the server
+     * @param hedged boolean, true to send each attempt with executeHedged
+     * @return Response object of the last attempt
+     */
+    private <T> Response<T> execute(Transport t, Request request, Class<T> returnType, boolean hedged) throws CheckoutException, IOException {
+        Resilience r = resilience;
+        if (r == null) return executeWithRetries(t, request, returnType, null, hedged);
+        Bulkhead bulkhead = r.getBulkhead(baseUrl.name());
+        if (!bulkhead.tryAcquire()) throw CheckoutException.stackless(CheckoutException.CKExceptionType.BULKHEAD_FULL);
+        try {
+            return executeWithRetries(t, request, returnType, r.getCircuitBreaker(request.getEndpoint()), hedged);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /*
+     * Sends a request, retrying it as described by the retry policy as long as the deadline of the request allows it
+     */
+    private <T> Response<T> executeWithRetries(Transport t, Request request, Class<T> returnType, CircuitBreaker breaker, boolean hedged) throws CheckoutException, IOException {
+        RetryPolicy policy = retryPolicy;
+        if (policy == null) return executeOnce(t, request, returnType, breaker, hedged);
+        for (int attempt = 1; ; attempt++) {
+            long delay;
+            try {
+                Response<T> response = executeOnce(t, request, returnType, breaker, hedged);
+                if (attempt >= policy.getMaxAttempts() || !policy.isRetryable(response.httpStatus)) return response;
+                delay = policy.delayBefore(attempt + 1, response.retryAfter);
+                if (delay < 0 || TimeUnit.MILLISECONDS.toNanos(delay) >= request.remainingNanos()) return response;
+            } catch (IOException e) {
+                if (attempt >= policy.getMaxAttempts() || !policy.isRetryable(e)) throw e;
+                delay = policy.delayBefore(attempt + 1, null);
+                if (TimeUnit.MILLISECONDS.toNanos(delay) >= request.remainingNanos()) throw e;
+            }
+            logRetry(request, attempt + 1, delay);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry " + request.getEndpoint());
+            }
+        }
+    }
+
+    /*
+     * Sends a request once, through the circuit breaker of its endpoint if any. A call interrupted by the cancellation
+     * of its caller is neither a success nor a failure of the endpoint.
+     */
+    private <T> Response<T> executeOnce(Transport t, Request request, Class<T> returnType, CircuitBreaker breaker, boolean hedged) throws CheckoutException, IOException {
+        if (breaker == null) return hedged ? executeHedged(t, request, returnType) : t.execute(request, returnType);
+        if (!breaker.tryAcquire()) throw CheckoutException.stackless(CheckoutException.CKExceptionType.CIRCUIT_OPEN);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Response<T> response = hedged ? executeHedged(t, request, returnType) : t.execute(request, returnType);
+            failed = CircuitBreaker.isFailure(response.httpStatus);
+            return response;
+        } finally {
+            if (failed && Thread.currentThread().isInterrupted()) {
+                breaker.onCancelled();
+            } else if (failed) {
+                breaker.onFailure(System.nanoTime() - start);
+            } else {
+                breaker.onSuccess(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /*
+     * Sends a request on the hedge executor and, if it is not over after the hedging delay, a second identical one.
+     * Returns the first response received, the other request is cancelled. When the hedge executor has no free thread,
+     * the request is sent on the calling thread and not hedged. The copies go straight to the transport, the caller
+     * holds the permits of the bulkhead and of the circuit breaker for all of them.
+     */
+    private <T> Response<T> executeHedged(final Transport t, final Request request, final Class<T> returnType) throws CheckoutException, IOException {
+        Callable<Response<T>> call = new Callable<Response<T>>() {
+            @Override
+            public Response<T> call() throws Exception {
+                return t.execute(request, returnType);
+            }
+        };
+        ExecutorCompletionService<Response<T>> completion = new ExecutorCompletionService<Response<T>>(getHedgeExecutor());
+        List<Future<Response<T>>> sent = new ArrayList<Future<Response<T>>>(2);
+        try {
+            sent.add(completion.submit(call));
+        } catch (RejectedExecutionException e) {
+            return t.execute(request, returnType);
+        }
+        try {
+            Future<Response<T>> first = completion.poll(hedgeDelay(), TimeUnit.MILLISECONDS);
+            if (first == null) {
+                try {
+                    sent.add(completion.submit(call));
+                    if(logging && logger.isLoggable(Log.Level.INFO)){
+                        logger.info("**Hedged request sent**  	" + request.getEndpoint());
+                    }
+                } catch (RejectedExecutionException e) {
+                    // the first request goes on alone
+                }
+                first = completion.take();
+            }
+            try {
+                return first.get();
+            } catch (ExecutionException e) {
+                if (sent.size() < 2) throw unwrap(e);
+            }
+            try {
+                return completion.take().get();
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + request.getEndpoint());
+        } finally {
+            for (Future<Response<T>> f : sent) f.cancel(true);
+        }
+    }
+
+    /*
+     * Returns the delay after which a hedged getCardProviders request is sent, in milliseconds
+     */
+    private long hedgeDelay() {
+        CheckoutMetrics metrics = getMetrics();
+        if (metrics != null) {
+            LatencyHistogram.Snapshot latency = metrics.endpoint(RESTFunctions.GETCARDPROVIDERS.name()).totalSnapshot();
+            if (latency.getCount() >= HEDGE_MIN_SAMPLES) return Math.max(1, latency.getPercentile(95, TimeUnit.MILLISECONDS));
+        }
+        return DEFAULT_HEDGE_DELAY;
+    }
+
+    /*
+     * Returns the exception raised by a request run on the executor, rethrows the other ones
+     */
+    private static IOException unwrap(ExecutionException e) throws CheckoutException {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) return (IOException) cause;
+        if (cause instanceof CheckoutException) throw (CheckoutException) cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        return new IOException(cause);
+    }
+
+    private void logRetry(Request request, int attempt, long delay) {
+        if(logging && logger.isLoggable(Log.Level.INFO)){
+            logger.info("**Retry**  	" + request.getEndpoint() + " attempt " + attempt + " in " + delay + " ms");
+        }
+    }
+
+    /*
+     * Sends a request through an AsyncTransport, no thread is held while waiting for the response
+     *
+     * @param transport AsyncTransport object sending the request
+     * @param request Request object to be sent
+     * @param returnType T instance returned by the server
+     * @param timeoutMillis long containing the time after which the request is cancelled, 0 for no timeout
+     * @param callback CheckoutCallback object notified of the result, can be null
+     * @return Future object giving access to the result or allowing to cancel the request
+     */
+    private <T> Future<Response<T>> submit(AsyncTransport transport, Request request, Class<T> returnType, long timeoutMillis, CheckoutCallback<T> callback) {
+        CheckoutTask<T> task = new CheckoutTask<T>(callback);
+        Resilience r = resilience;
+        CircuitBreaker breaker = null;
+        if (r != null) {
+            final Bulkhead bulkhead = r.getBulkhead(baseUrl.name());
+            if (!bulkhead.tryAcquire()) {
+                task.fail(CheckoutException.stackless(CheckoutException.CKExceptionType.BULKHEAD_FULL));
+                return task;
+            }
+            task.setOnDone(new Runnable() {
+                @Override
+                public void run() {
+                    bulkhead.release();
+                }
+            });
+            breaker = r.getCircuitBreaker(request.getEndpoint());
+        }
+        if (timeoutMillis > 0) task.scheduleTimeout(getTimeoutScheduler(), timeoutMillis);
+        new AsyncAttempt<T>(task, transport, request, returnType, retryPolicy, breaker, 1).run();
+        return task;
+    }
+
+    /*
+     * One attempt of a request sent through an AsyncTransport, schedules the next attempt when the retry policy allows it
+     */
+    private class AsyncAttempt<T> implements CheckoutCallback<T>, Runnable {
+        private final CheckoutTask<T> task;
+        private final AsyncTransport transport;
+        private final Request request;
+        private final Class<T> returnType;
+        private final RetryPolicy policy;
+        private final CircuitBreaker breaker;
+        private final int attempt;
+        private long start;
+
+        AsyncAttempt(CheckoutTask<T> task, AsyncTransport transport, Request request, Class<T> returnType, RetryPolicy policy, CircuitBreaker breaker, int attempt) {
+            this.task = task;
+            this.transport = transport;
+            this.request = request;
+            this.returnType = returnType;
+            this.policy = policy;
+            this.breaker = breaker;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            if (task.isDone()) return;
+            if (breaker != null && !breaker.tryAcquire()) {
+                task.fail(CheckoutException.stackless(CheckoutException.CKExceptionType.CIRCUIT_OPEN));
+                return;
+            }
+            start = System.nanoTime();
+            try {
+                task.setDelegate(transport.executeAsync(request, returnType, this));
+            } catch (RuntimeException e) {
+                if (breaker != null) breaker.onFailure(System.nanoTime() - start);
+                task.fail(e);
+            }
+        }
+
+        @Override
+        public void onResponse(Response<T> response) {
+            if (breaker != null) {
+                if (CircuitBreaker.isFailure(response.httpStatus)) {
+                    breaker.onFailure(System.nanoTime() - start);
+                } else {
+                    breaker.onSuccess(System.nanoTime() - start);
+                }
+            }
+            if (policy != null && attempt < policy.getMaxAttempts() && policy.isRetryable(response.httpStatus)) {
+                long delay = policy.delayBefore(attempt + 1, response.retryAfter);
+                if (delay >= 0 && retry(delay)) return;
+            }
+            task.complete(response);
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            if (e instanceof CancellationException) {
+                /* cancelled by the caller or by the timeout of the task, the server is not at fault */
+                if (breaker != null) breaker.onCancelled();
+                task.fail(e);
+                return;
+            }
+            if (breaker != null) breaker.onFailure(System.nanoTime() - start);
+            if (policy != null && attempt < policy.getMaxAttempts() && e instanceof IOException && policy.isRetryable((IOException) e)
+                    && retry(policy.delayBefore(attempt + 1, null))) return;
+            task.fail(e);
+        }
+
+        /*
+         * Schedules the next attempt, returns false if it could not be scheduled or would start after the deadline,
+         * the current outcome is then the one of the call
+         */
+        private boolean retry(long delay) {
+            if (task.isDone()) return true;
+            if (TimeUnit.MILLISECONDS.toNanos(delay) >= request.remainingNanos()) return false;
+            logRetry(request, attempt + 1, delay);
+            try {
+                task.setDelegate(getTimeoutScheduler().schedule(new AsyncAttempt<T>(task, transport, request, returnType, policy, breaker, attempt + 1), delay, TimeUnit.MILLISECONDS));
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+    }
+
+    /*
+     * Creates the request calling the function f, recorded in the metrics under the name of f
+     */
+    private static Request newRequest(RESTFunctions f, String url, String key, String payload, String ifNoneMatch, long deadline) {
+        return new Request(f.method, url, key, payload, ifNoneMatch, f.name(), deadline);
+    }
+
+    /**
+     * Function that calls getCardProviders via REST without blocking, the request runs on the executor
+     *
+     * @param callback CheckoutCallback object notified once the request is over, can be null
+     * @return Future object giving access to the response or allowing to cancel the request
+     */
+    public Future<Response<CardProviderResponse>> getCardProvidersAsync(CheckoutCallback<CardProviderResponse> callback) {
+        return getCardProvidersAsync(0, callback);
+    }
+
+    /**
+     * Function that calls getCardProviders via REST without blocking, the request runs on the executor
+     *
+     * @param timeoutMillis long containing the time in milliseconds after which the request is cancelled, 0 for no timeout
+     * @param callback CheckoutCallback object notified once the request is over, can be null
+     * @return Future object giving access to the response or allowing to cancel the request
+     */
+    public Future<Response<CardProviderResponse>> getCardProvidersAsync(final long timeoutMillis, CheckoutCallback<CardProviderResponse> callback) {
+        return submit(new Callable<Response<CardProviderResponse>>() {
+            @Override
+            public Response<CardProviderResponse> call() throws Exception {
+                return getCardProviders(timeoutMillis);
+            }
+        }, timeoutMillis, callback);
+    }
+
+    /**
+     * Function that calls createCardToken via REST without blocking, the request runs on the executor
+     *
+     * @param card Card object containing the informations to be tokenized
+     * @param callback CheckoutCallback object notified once the request is over, can be null
+     * @return Future object giving access to the response or allowing to cancel the request
+     */
+    public Future<Response<CardTokenResponse>> createCardTokenAsync(Card card, CheckoutCallback<CardTokenResponse> callback) {
+        return createCardTokenAsync(card, 0, callback);
+    }
+
+    /**
+     * Function that calls createCardToken via REST without blocking, the request runs on the executor or, if the
+     * transport is an AsyncTransport, is sent without holding any thread
+     *
+     * @param card Card object containing the informations to be tokenized
+     * @param timeoutMillis long containing the time in milliseconds after which the request is cancelled, 0 for no timeout
+     * @param callback CheckoutCallback object notified once the request is over, can be null
+     * @return Future object giving access to the response or allowing to cancel the request
+     */
+    public Future<Response<CardTokenResponse>> createCardTokenAsync(final Card card, final long timeoutMillis, CheckoutCallback<CardTokenResponse> callback) {
+        Transport t = getTransport();
+        if (t instanceof AsyncTransport) {
+            String key = publicKey;
+            if(logging && logger.isLoggable(Log.Level.INFO)){
+                logger.info("**CreateCardToken called**  	"+ key);
+            }
+            return submit((AsyncTransport) t, newRequest(RESTFunctions.CREATECARDTOKEN, getUrl(RESTFunctions.CREATECARDTOKEN), key, gson.toJson(card), null, deadline(timeoutMillis)),
+                    CardTokenResponse.class, timeoutMillis, callback);
+        }
+        return submit(new Callable<Response<CardTokenResponse>>() {
+            @Override
+            public Response<CardTokenResponse> call() throws Exception {
+                return createCardToken(card, timeoutMillis);
+            }
+        }, timeoutMillis, callback);
+    }
+
+    /**
+     * Builder of immutable CheckoutKit instances, one per merchant's public key. Every instance built by the same Builder
+     * shares its metrics, connection pool, transport, executor, retry policy and circuit breakers, the JSON mapping is
+     * shared by all the instances. A Builder is not thread-safe, CheckoutKitRegistry builds the instances concurrently.
+     */
+    public static class Builder {
+
+        private String publicKey = null;
+        private Environment environment = Environment.SANDBOX;
+        private boolean debug = true;
+        private Log logger = Log.getLog();
+        private CheckoutMetrics metrics = new CheckoutMetrics();
+        private ConnectionPool connectionPool = null;
+        private int connectTimeout = HttpConnector.DEFAULT_CONNECT_TIMEOUT;
+        private int readTimeout = HttpConnector.DEFAULT_READ_TIMEOUT;
+        private boolean responseCompression = true;
+        private int requestCompressionThreshold = -1;
+        private Transport transport = null;
+        private Executor executor = null;
+        private boolean cardProviderCache = false;
+        private long cacheTtl = CardProviderCache.DEFAULT_TTL;
+        private long cacheStaleWindow = CardProviderCache.DEFAULT_STALE_WINDOW;
+        private RetryPolicy retryPolicy = null;
+        private boolean hedging = false;
+        private Resilience resilience = null;
+
+        /**
+         * Default constructor, uses the same default settings as getInstance
+         */
+        public Builder() {
+        }
+
+        /**
+         * Copy constructor, the instances built by both builders share the same metrics, pool, transport and executor
+         * @param other Builder object whose settings are copied
+         */
+        public Builder(Builder other) {
+            this.publicKey = other.publicKey;
+            this.environment = other.environment;
+            this.debug = other.debug;
+            this.logger = other.logger;
+            this.metrics = other.metrics;
+            this.connectionPool = other.connectionPool;
+            this.connectTimeout = other.connectTimeout;
+            this.readTimeout = other.readTimeout;
+            this.responseCompression = other.responseCompression;
+            this.requestCompressionThreshold = other.requestCompressionThreshold;
+            this.transport = other.transport;
+            this.executor = other.executor;
+            this.cardProviderCache = other.cardProviderCache;
+            this.cacheTtl = other.cacheTtl;
+            this.cacheStaleWindow = other.cacheStaleWindow;
+            this.retryPolicy = other.retryPolicy;
+            this.hedging = other.hedging;
+            this.resilience = other.resilience;
+        }
+
+        /**
+         * Sets the merchant's public key
+         * @param publicKey String containing the merchant's public key
+         * @return this Builder
+         */
+        public Builder publicKey(String publicKey) {
+            this.publicKey = publicKey;
+            return this;
+        }
+
+        /**
+         * Sets the environment, default is SANDBOX
+         * @param environment Environment object containing the merchant's environment
+         * @return this Builder
+         */
+        public Builder environment(Environment environment) {
+            if (environment == null) throw new IllegalArgumentException("The environment cannot be null");
+            this.environment = environment;
+            return this;
+        }
+
+        /**
+         * Sets the debug mode, default is true
+         * @param debug boolean, if the debug mode is activated or not
+         * @return this Builder
+         */
+        public Builder debug(boolean debug) {
+            this.debug = debug;
+            return this;
+        }
+
+        /**
+         * Sets the logger, default is Log.getLog()
+         * @param logger Log instance for logging purposes if debug mode is activated
+         * @return this Builder
+         */
+        public Builder logger(Log logger) {
+            if (logger == null) throw new IllegalArgumentException("The logger cannot be null");
+            this.logger = logger;
+            return this;
+        }
+
+        /**
+         * Sets where the metrics are recorded, by default a CheckoutMetrics created with the Builder
+         * @param metrics CheckoutMetrics object, null to disable the metrics
+         * @return this Builder
+         */
+        public Builder metrics(CheckoutMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Enables the reuse of the connections to Checkout's server
+         * @param pool ConnectionPool object containing the pool settings, null to close the connections after every request
+         * @return this Builder
+         */
+        public Builder connectionPool(ConnectionPool pool) {
+            this.connectionPool = pool;
+            return this;
+        }
+
+        /**
+         * Sets the default timeouts of the requests
+         * @param connectTimeout int containing the time in milliseconds to establish a connection, 0 to wait forever
+         * @param readTimeout int containing the time in milliseconds to wait for data once connected, 0 to wait forever
+         * @return this Builder
+         */
+        public Builder timeouts(int connectTimeout, int readTimeout) {
+            if (connectTimeout < 0 || readTimeout < 0) throw new IllegalArgumentException("The timeouts cannot be negative");
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the compression of the requests and responses
+         * @param responses boolean, true to accept gzip and deflate encoded responses (default)
+         * @param requestThreshold int containing the size in bytes from which a payload is sent gzip encoded, -1 to never
+         *                         compress them (default)
+         * @return this Builder
+         */
+        public Builder compression(boolean responses, int requestThreshold) {
+            this.responseCompression = responses;
+            this.requestCompressionThreshold = requestThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the transport sending the requests, shared by all the instances built
+         * @param transport Transport object, null to use a HttpConnector per instance
+         * @return this Builder
+         */
+        public Builder transport(Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Sets the executor running the asynchronous calls
+         * @param executor Executor object, null to use the default executor shared by all instances
+         * @return this Builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Gives each instance built its own cache of the card providers, the providers depend on the public key
+         * @param ttl long containing the time in milliseconds during which a response is returned without any request
+         * @param staleWindow long containing the time in milliseconds after the TTL during which a response is still returned while being revalidated
+         * @return this Builder
+         */
+        public Builder cardProviderCache(long ttl, long staleWindow) {
+            if (ttl < 0 || staleWindow < 0) throw new IllegalArgumentException("The TTL and the stale window cannot be negative");
+            this.cardProviderCache = true;
+            this.cacheTtl = ttl;
+            this.cacheStaleWindow = staleWindow;
+            return this;
+        }
+
+        /**
+         * Sets the policy retrying the requests that failed for a transient reason
+         * @param policy RetryPolicy object, null to never retry
+         * @return this Builder
+         */
+        public Builder retryPolicy(RetryPolicy policy) {
+            this.retryPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Enables hedged requests for getCardProviders, see CheckoutKit.setHedging
+         * @param hedging boolean, true to send hedged requests
+         * @return this Builder
+         */
+        public Builder hedging(boolean hedging) {
+            this.hedging = hedging;
+            return this;
+        }
+
+        /**
+         * Sets the circuit breakers and bulkheads guarding the calls, shared by all the instances built
+         * @param resilience Resilience object, null to send every call
+         * @return this Builder
+         */
+        public Builder resilience(Resilience resilience) {
+            this.resilience = resilience;
+            return this;
+        }
+
+        /**
+         * Creates an immutable CheckoutKit instance with the current settings
+         * @return CheckoutKit instance
+         * @throws CheckoutException if the public key is missing or not valid
+         */
+        public CheckoutKit build() throws CheckoutException {
+            return build(publicKey);
+        }
+
+        /*
+         * Creates an immutable CheckoutKit instance for the given public key with the current settings
+         */
+        CheckoutKit build(String publicKey) throws CheckoutException {
+            if (publicKey == null) throw new CheckoutException(CheckoutException.CKExceptionType.NO_PUBLIC_KEY);
+            checkPK(publicKey);
+            return new CheckoutKit(publicKey, this);
+        }
+    }
+
+    /*
+     * Thread factory creating daemon threads, so that the pools of CheckoutKit never prevent the application from exiting
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
         }
-        return httpClient.postRequest(getUrl(RESTFunctions.CREATECARDTOKEN), publicKey, gson.toJson(card), CardTokenResponse.class);
     }
 }
\ No newline at end of file
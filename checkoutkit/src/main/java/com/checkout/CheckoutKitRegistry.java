@@ -0,0 +1,57 @@
+package com.checkout;
+
+import com.checkout.exceptions.CheckoutException;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of immutable CheckoutKit instances, one per merchant's public key, all built from the same settings. The
+ * instances share the metrics, connection pool, transport and executor of the builder, looking up an instance already
+ * created does not take any lock.
+ */
+public class CheckoutKitRegistry {
+
+    private final CheckoutKit.Builder template;
+    private final ConcurrentHashMap<String, CheckoutKit> instances = new ConcurrentHashMap<String, CheckoutKit>();
+
+    /**
+     * Default constructor
+     * @param template Builder object containing the settings of the instances, it is copied so later changes are ignored.
+     *                 Its public key is ignored.
+     */
+    public CheckoutKitRegistry(CheckoutKit.Builder template) {
+        this.template = new CheckoutKit.Builder(template);
+    }
+
+    /**
+     * Returns the instance of a merchant, creates it on the first call
+     * @param publicKey String containing the merchant's public key
+     * @return CheckoutKit instance, the same one for every call with the same key
+     * @throws CheckoutException if the public key is missing or not valid
+     */
+    public CheckoutKit get(String publicKey) throws CheckoutException {
+        if (publicKey == null) throw new CheckoutException(CheckoutException.CKExceptionType.NO_PUBLIC_KEY);
+        CheckoutKit ck = instances.get(publicKey);
+        if (ck != null) return ck;
+        CheckoutKit created = template.build(publicKey);
+        ck = instances.putIfAbsent(publicKey, created);
+        return ck == null ? created : ck;
+    }
+
+    /**
+     * Removes the instance of a merchant, the next call to get creates a new one
+     * @param publicKey String containing the merchant's public key
+     * @return CheckoutKit instance removed or null if there was none
+     */
+    public CheckoutKit remove(String publicKey) {
+        return publicKey == null ? null : instances.remove(publicKey);
+    }
+
+    /**
+     * Getter for the number of instances
+     * @return int containing the number of merchants with an instance
+     */
+    public int size() {
+        return instances.size();
+    }
+}
@@ -0,0 +1,135 @@
+package com.checkout;
+
+import com.checkout.exceptions.CheckoutException;
+import com.checkout.exceptions.DeadlineExceededException;
+import com.checkout.httpconnector.Response;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+ * Future returned by the asynchronous methods of CheckoutKit, it notifies the callback once the request is over and
+ * cancels the request if it does not complete before its timeout. It either runs its call on an executor or is
+ * completed by an AsyncTransport.
+ */
+class CheckoutTask<T> extends FutureTask<Response<T>> {
+
+    private final CheckoutCallback<T> callback;
+    private volatile ScheduledFuture<?> timeout = null;
+    private volatile boolean timedOut = false;
+    private volatile Future<?> delegate = null;
+    private volatile Runnable onDone = null;
+
+    CheckoutTask(Callable<Response<T>> call, CheckoutCallback<T> callback) {
+        super(call);
+        this.callback = callback;
+    }
+
+    /*
+     * Creates a task completed by an AsyncTransport through complete and fail, it must not be run
+     */
+    CheckoutTask(CheckoutCallback<T> callback) {
+        this(new Callable<Response<T>>() {
+            @Override
+            public Response<T> call() throws Exception {
+                throw new IllegalStateException("The task is completed by the transport");
+            }
+        }, callback);
+    }
+
+    /*
+     * Sets the future of the request sent by the transport, cancelled along with the task
+     */
+    void setDelegate(Future<?> delegate) {
+        this.delegate = delegate;
+        if (isCancelled()) delegate.cancel(true);
+    }
+
+    /*
+     * Sets an action run once the task is over whatever its outcome, before the callback is notified. It must be set
+     * before the task can complete.
+     */
+    void setOnDone(Runnable onDone) {
+        this.onDone = onDone;
+    }
+
+    void complete(Response<T> response) {
+        set(response);
+    }
+
+    void fail(Throwable t) {
+        setException(t);
+    }
+
+    /*
+     * Schedules the cancellation of the task if it is not done after the given delay
+     */
+    void scheduleTimeout(ScheduledExecutorService scheduler, long timeoutMillis) {
+        timeout = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!isDone()) {
+                    timedOut = true;
+                    cancel(true);
+                }
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * The deadline given to the request is the timeout of the task, a request failing on it and the timeout firing at
+     * the same time must give the same outcome: the task is cancelled and the callback gets a TimeoutException
+     */
+    @Override
+    protected void setException(Throwable t) {
+        if (timeout != null && (t instanceof DeadlineExceededException || (t instanceof CheckoutException
+                && ((CheckoutException) t).getType() == CheckoutException.CKExceptionType.DEADLINE_EXCEEDED))) {
+            timedOut = true;
+            cancel(true);
+            return;
+        }
+        super.setException(t);
+    }
+
+    /*
+     * Checks if the task was cancelled because of its timeout
+     */
+    boolean isTimedOut() {
+        return timedOut;
+    }
+
+    @Override
+    protected void done() {
+        ScheduledFuture<?> t = timeout;
+        if (t != null) t.cancel(false);
+        Future<?> d = delegate;
+        if (d != null && isCancelled()) d.cancel(true);
+        Runnable r = onDone;
+        if (r != null) r.run();
+        if (callback == null) return;
+
+        Response<T> response;
+        try {
+            response = get();
+        } catch (CancellationException e) {
+            callback.onFailure(timedOut ? new TimeoutException("The request did not complete in time") : e);
+            return;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            callback.onFailure(cause instanceof Exception ? (Exception) cause : e);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            callback.onFailure(e);
+            return;
+        }
+        callback.onResponse(response);
+    }
+}
@@ -0,0 +1,82 @@
+package com.checkout;
+
+/**
+ * Validation of the merchant's public keys without any regular expression. A key is checked in a single pass over its
+ * characters, and the keys already validated are kept in a small direct-mapped cache so that validating the same key
+ * again costs a hash lookup and a comparison, without allocating.
+ */
+final class PublicKeyValidator {
+
+    /* Format of the public keys, the hand-written matcher accepts exactly the strings matched by this expression */
+    static final String REGEX = "^pk_(?:test_)?(?:\\w{8})-(?:\\w{4})-(?:\\w{4})-(?:\\w{4})-(?:\\w{12})$";
+
+    /* Number of keys kept in the cache, a power of 2 */
+    static final int CACHE_SIZE = 64;
+
+    private static final String PREFIX = "pk_";
+    private static final String TEST_PREFIX = "pk_test_";
+    /* Lengths of the word groups following the prefix, separated by dashes */
+    private static final int[] GROUPS = {8, 4, 4, 4, 12};
+    /* Length of the key after its prefix: the groups and the 4 dashes */
+    private static final int BODY_LENGTH = 8 + 4 + 4 + 4 + 12 + 4;
+
+    /*
+     * Keys already validated, indexed by their hash. Strings are immutable, so the entries can be read and replaced
+     * by several threads without synchronization: a thread sees either a valid key or a stale one, never a broken one.
+     */
+    private static final String[] cache = new String[CACHE_SIZE];
+
+    private PublicKeyValidator() {
+    }
+
+    /*
+     * Checks if a public key is valid, from the cache when it was validated before
+     * @param pk String containing the public key, can be null
+     * @return boolean, true if the key matches REGEX
+     */
+    static boolean isValid(String pk) {
+        if (pk == null) return false;
+        int slot = pk.hashCode() & (CACHE_SIZE - 1);
+        String cached = cache[slot];
+        if (cached == pk || (cached != null && cached.equals(pk))) return true;
+        if (!matches(pk)) return false;
+        cache[slot] = pk;
+        return true;
+    }
+
+    /*
+     * Checks if a public key matches REGEX, without using the cache
+     */
+    static boolean matches(String pk) {
+        int start;
+        if (pk.length() == PREFIX.length() + BODY_LENGTH && pk.startsWith(PREFIX)) {
+            start = PREFIX.length();
+        } else if (pk.length() == TEST_PREFIX.length() + BODY_LENGTH && pk.startsWith(TEST_PREFIX)) {
+            start = TEST_PREFIX.length();
+        } else {
+            return false;
+        }
+        int i = start;
+        for (int g = 0; g < GROUPS.length; g++) {
+            if (g > 0 && pk.charAt(i++) != '-') return false;
+            for (int end = i + GROUPS[g]; i < end; i++) {
+                if (!isWordChar(pk.charAt(i))) return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Same characters as \w in a Java regular expression: [a-zA-Z_0-9]
+     */
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /*
+     * Empties the cache, used by the tests and the benchmarks
+     */
+    static void clearCache() {
+        for (int i = 0; i < CACHE_SIZE; i++) cache[i] = null;
+    }
+}
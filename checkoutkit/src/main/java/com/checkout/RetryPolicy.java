@@ -0,0 +1,146 @@
+package com.checkout;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Describes how CheckoutKit retries the requests that failed for a transient reason:
+ * - the connection could not be established, was reset or timed out,
+ * - the server answered 429 Too Many Requests or a 5xx status other than 501 Not Implemented.
+ * The delay before each retry grows exponentially and is randomized ("full jitter") so that clients failing at the
+ * same time do not retry at the same time. A Retry-After header sent by the server is honored, unless it asks to wait
+ * longer than maxBackoff, in which case its response is returned without retrying.
+ *
+ * A token request whose response is lost after the server processed it is sent again, the extra card token is never used.
+ */
+public class RetryPolicy {
+
+    /* Default number of attempts, the first one included */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    /* Default delay before the first retry, in milliseconds */
+    public static final long DEFAULT_INITIAL_BACKOFF = 100;
+    /* Default maximum delay between two attempts, in milliseconds */
+    public static final long DEFAULT_MAX_BACKOFF = 5000;
+
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    /**
+     * Default constructor, uses the default settings
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    /**
+     * Secondary constructor
+     * @param maxAttempts int containing the maximum number of attempts, the first one included
+     * @param initialBackoff long containing the maximum delay before the first retry, in milliseconds, doubled at each retry
+     * @param maxBackoff long containing the maximum delay between two attempts, in milliseconds
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff) {
+        if (maxAttempts < 1 || initialBackoff < 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("Invalid retry policy settings");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Getter for the maximum number of attempts
+     * @return int containing the maximum number of attempts, the first one included
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Getter for the initial backoff
+     * @return long containing the maximum delay before the first retry, in milliseconds
+     */
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * Getter for the maximum backoff
+     * @return long containing the maximum delay between two attempts, in milliseconds
+     */
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * Checks if a response is worth retrying
+     * @param httpStatus int containing the HTTP status of the response
+     * @return boolean, true for 429 and the 5xx statuses other than 501
+     */
+    public boolean isRetryable(int httpStatus) {
+        return httpStatus == 429 || (httpStatus >= 500 && httpStatus < 600 && httpStatus != 501);
+    }
+
+    /**
+     * Checks if an exception is worth retrying
+     * @param e IOException raised by the transport
+     * @return boolean, true if the connection could not be established, was reset or timed out
+     */
+    public boolean isRetryable(IOException e) {
+        if (e instanceof SocketTimeoutException) return true;
+        if (e instanceof InterruptedIOException) return false;
+        return e instanceof SocketException;
+    }
+
+    /**
+     * Computes the delay before an attempt
+     * @param attempt int containing the number of the next attempt, 2 for the first retry
+     * @param retryAfter String containing the Retry-After header of the previous response, null if there is none
+     * @return long containing the delay in milliseconds, -1 if the server asks to wait longer than the maximum backoff
+     */
+    public long delayBefore(int attempt, String retryAfter) {
+        long requested = parseRetryAfter(retryAfter, System.currentTimeMillis());
+        if (requested > maxBackoff) return -1;
+        if (requested >= 0) return requested;
+        long ceiling = initialBackoff << Math.min(attempt - 2, 30);
+        if (ceiling > maxBackoff || ceiling < 0) ceiling = maxBackoff;
+        return (long) (random.get().nextDouble() * ceiling);
+    }
+
+    /*
+     * Parses a Retry-After header, given either as a number of seconds or as an HTTP date
+     * @return long containing the delay in milliseconds, -1 if the header is absent or invalid
+     */
+    static long parseRetryAfter(String retryAfter, long now) {
+        if (retryAfter == null) return -1;
+        String value = retryAfter.trim();
+        if (value.isEmpty()) return -1;
+        if (Character.isDigit(value.charAt(0))) {
+            try {
+                return Long.parseLong(value) * 1000;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, format.parse(value).getTime() - now);
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+}
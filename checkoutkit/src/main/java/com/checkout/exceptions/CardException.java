@@ -12,6 +12,14 @@ public class CardException extends Exception {
 
     private CardExceptionType type;
 
+    /* Instances thrown in stackless mode, one per type */
+    private static final CardException[] STACKLESS = new CardException[CardExceptionType.values().length];
+    private static volatile boolean stackless = false;
+
+    static {
+        for (CardExceptionType t : CardExceptionType.values()) STACKLESS[t.ordinal()] = new CardException(t, false);
+    }
+
     /**
      * Default constructor. Adds the type of the exception to the message printed when the exception is raised
      * @param type CardExceptionType object containing more precise information about the error
@@ -21,6 +29,16 @@ public class CardException extends Exception {
         this.type = type;
     }
 
+    /**
+     * Secondary constructor
+     * @param type CardExceptionType object containing more precise information about the error
+     * @param writableStackTrace boolean, false to create an exception without stack trace, which costs much less to throw
+     */
+    public CardException(CardExceptionType type, boolean writableStackTrace) {
+        super(type.toString(), null, false, writableStackTrace);
+        this.type = type;
+    }
+
     public CardException(String message)
     {
         super(message);
@@ -44,4 +62,31 @@ public class CardException extends Exception {
     public CardExceptionType getType() {
         return type;
     }
+
+    /**
+     * Returns the exception raised by the validation of the card's details: a new exception with its stack trace or, in
+     * stackless mode, a preallocated exception without stack trace shared by all the failures of the same type
+     * @param type CardExceptionType object containing more precise information about the error
+     * @return CardException object to be thrown
+     */
+    public static CardException forType(CardExceptionType type) {
+        return stackless ? STACKLESS[type.ordinal()] : new CardException(type);
+    }
+
+    /**
+     * Enables the stackless mode, for the applications validating large amounts of card details where invalid
+     * details are frequent. The exceptions then carry no stack trace and must not be compared by reference.
+     * @param enabled boolean, true to throw preallocated exceptions without stack trace
+     */
+    public static void setStackless(boolean enabled) {
+        stackless = enabled;
+    }
+
+    /**
+     * Getter for the stackless mode
+     * @return boolean, true if the validation throws preallocated exceptions without stack trace
+     */
+    public static boolean isStackless() {
+        return stackless;
+    }
 }
@@ -8,10 +8,17 @@ public class CheckoutException extends Exception {
     /**
      * Enum used to specify the type of the exception and its origin
      */
-    public enum CKExceptionType { INVALID_PUBLIC_KEY, API_ERROR, NO_PUBLIC_KEY }
+    public enum CKExceptionType { INVALID_PUBLIC_KEY, API_ERROR, NO_PUBLIC_KEY, DEADLINE_EXCEEDED, CIRCUIT_OPEN, BULKHEAD_FULL }
 
     private CKExceptionType type;
 
+    /* Preallocated instances without stack trace, one per type */
+    private static final CheckoutException[] STACKLESS = new CheckoutException[CKExceptionType.values().length];
+
+    static {
+        for (CKExceptionType t : CKExceptionType.values()) STACKLESS[t.ordinal()] = new CheckoutException(t, false);
+    }
+
     /**
      * Default constructor. Adds the type of the exception to the message printed when the exception is raised
      * @param type CKExceptionType object containing more precise information about the error
@@ -22,6 +29,26 @@ public class CheckoutException extends Exception {
 
     }
 
+    /**
+     * Secondary constructor
+     * @param type CKExceptionType object containing more precise information about the error
+     * @param cause Throwable at the origin of the error
+     */
+    public CheckoutException(CKExceptionType type, Throwable cause) {
+        super(type.toString(), cause);
+        this.type = type;
+    }
+
+    /**
+     * Secondary constructor
+     * @param type CKExceptionType object containing more precise information about the error
+     * @param writableStackTrace boolean, false to create an exception without stack trace, which costs much less to throw
+     */
+    public CheckoutException(CKExceptionType type, boolean writableStackTrace) {
+        super(type.toString(), null, false, writableStackTrace);
+        this.type = type;
+    }
+
     public CheckoutException(String message)
     {
         super(message);
@@ -42,4 +69,22 @@ public class CheckoutException extends Exception {
         super(message, cause, enableSuppression, writableStackTrace);
     }
 
+    /**
+     * Getter for the type of the exception
+     * @return CKExceptionType object or null if the exception was created from a message or a cause only
+     */
+    public CKExceptionType getType() {
+        return type;
+    }
+
+    /**
+     * Returns a preallocated exception without stack trace, used where calls are rejected at a high rate without
+     * reaching the server (open circuit, full bulkhead)
+     * @param type CKExceptionType object containing more precise information about the error
+     * @return CheckoutException object shared by all the callers
+     */
+    public static CheckoutException stackless(CKExceptionType type) {
+        return STACKLESS[type.ordinal()];
+    }
+
 }
\ No newline at end of file
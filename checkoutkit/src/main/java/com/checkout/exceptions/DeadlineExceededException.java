@@ -0,0 +1,30 @@
+package com.checkout.exceptions;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Exception raised by a Transport when the deadline of a request passes before its response is read. It is never
+ * retried, CheckoutKit reports it as a CheckoutException of type DEADLINE_EXCEEDED.
+ */
+public class DeadlineExceededException extends InterruptedIOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Default constructor
+     * @param endpoint String containing the name of the function called
+     */
+    public DeadlineExceededException(String endpoint) {
+        super("Deadline exceeded for " + endpoint);
+    }
+
+    /**
+     * Secondary constructor
+     * @param endpoint String containing the name of the function called
+     * @param cause Throwable raised when the request was aborted
+     */
+    public DeadlineExceededException(String endpoint, Throwable cause) {
+        this(endpoint);
+        initCause(cause);
+    }
+}
@@ -0,0 +1,21 @@
+package com.checkout.httpconnector;
+
+import com.checkout.CheckoutCallback;
+
+import java.util.concurrent.Future;
+
+/**
+ * Transport able to send a request without holding a thread until its response arrives
+ */
+public interface AsyncTransport extends Transport {
+
+    /**
+     * Sends a request without blocking
+     * @param request Request object describing what to send
+     * @param returnType T instance returned by the server
+     * @param callback CheckoutCallback object notified once the request is over, on a thread of the transport, can be null
+     * @param <T>
+     * @return Future object giving access to the response, cancelling it aborts the request
+     */
+    <T> Future<Response<T>> executeAsync(Request request, Class<T> returnType, CheckoutCallback<T> callback);
+}
@@ -0,0 +1,209 @@
+package com.checkout.httpconnector;
+
+import com.checkout.exceptions.DeadlineExceededException;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class describing how HttpConnector reuses its connections. When a pool is set, the connections are not disconnected
+ * after each request but handed back to the platform keep-alive cache, so that the next request to the same host skips
+ * the TCP and TLS handshakes.
+ *
+ * HttpURLConnection does not give access to its sockets, any request may be sent on any idle socket of the platform
+ * cache. The pool therefore does not manage connections but the requests sent through the cache:
+ * - at most maxConcurrentRequestsPerHost requests are sent to the same host at the same time, so that the cache never
+ *   needs more warm connections than it keeps. Each request borrows one of as many slots, most recently released first,
+ * - the warm connections are recycled periodically: every recycleInterval requests through a slot, one is sent with
+ *   "Connection: close" and the socket carrying it is replaced. The number of requests sent on one given socket is not
+ *   capped, the platform picks the socket,
+ * - the platform keeps its own limits on the idle connections (http.maxConnections, http.keepAliveDuration), they are
+ *   process-wide settings and are only changed if the application calls applySystemProperties.
+ * NioTransport, which owns its sockets, keeps real per-connection pools instead.
+ */
+public class ConnectionPool {
+
+    /* Default maximum number of requests sent to the same host at the same time */
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST = 5;
+    /* Default time in milliseconds the platform keeps an idle connection, once applySystemProperties is called */
+    public static final long DEFAULT_KEEP_ALIVE_DURATION = 5 * 60 * 1000;
+    /* Default number of requests through a slot between two recycled connections */
+    public static final int DEFAULT_RECYCLE_INTERVAL = 100;
+
+    private final int maxConcurrentRequestsPerHost;
+    private final long keepAliveDuration;
+    private final int recycleInterval;
+    private final ConcurrentHashMap<String, Host> hosts = new ConcurrentHashMap<String, Host>();
+
+    /**
+     * Default constructor, uses the default settings
+     */
+    public ConnectionPool() {
+        this(DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST, DEFAULT_KEEP_ALIVE_DURATION, DEFAULT_RECYCLE_INTERVAL);
+    }
+
+    /**
+     * Secondary constructor
+     * @param maxConcurrentRequestsPerHost int containing the maximum number of requests sent to the same host at the same time
+     * @param keepAliveDuration long containing the time in milliseconds the platform keeps an idle connection, only
+     *                          applied by applySystemProperties
+     * @param recycleInterval int containing the number of requests through a slot after which one is sent with
+     *                        "Connection: close"
+     */
+    public ConnectionPool(int maxConcurrentRequestsPerHost, long keepAliveDuration, int recycleInterval) {
+        if (maxConcurrentRequestsPerHost < 1 || keepAliveDuration < 0 || recycleInterval < 1) {
+            throw new IllegalArgumentException("Invalid connection pool settings");
+        }
+        this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+        this.keepAliveDuration = keepAliveDuration;
+        this.recycleInterval = recycleInterval;
+    }
+
+    /**
+     * Sets the http.keepAlive, http.maxConnections and http.keepAliveDuration system properties from the pool settings,
+     * except the ones the application already set. These properties are process-wide: they apply to every
+     * HttpURLConnection of the process, not only to this pool, and the platform only reads them before its first HTTP
+     * request, so this method should be called once when the application starts.
+     */
+    public void applySystemProperties() {
+        setDefaultProperty("http.keepAlive", "true");
+        setDefaultProperty("http.maxConnections", String.valueOf(maxConcurrentRequestsPerHost));
+        setDefaultProperty("http.keepAliveDuration", String.valueOf(keepAliveDuration));
+    }
+
+    /*
+     * Sets a system property read by the platform HTTP stack, if the application did not set it already
+     */
+    private static void setDefaultProperty(String key, String value) {
+        try {
+            if (System.getProperty(key) == null) System.setProperty(key, value);
+        } catch (SecurityException e) {
+            // the platform defaults apply
+        }
+    }
+
+    /**
+     * Getter for the maximum number of concurrent requests per host
+     * @return int containing the maximum number of requests sent to the same host at the same time
+     */
+    public int getMaxConcurrentRequestsPerHost() {
+        return maxConcurrentRequestsPerHost;
+    }
+
+    /**
+     * Getter for the keep-alive duration, applied by the platform once applySystemProperties is called
+     * @return long containing the time in milliseconds the platform keeps an idle connection
+     */
+    public long getKeepAliveDuration() {
+        return keepAliveDuration;
+    }
+
+    /**
+     * Getter for the recycle interval
+     * @return int containing the number of requests through a slot after which one is sent with "Connection: close"
+     */
+    public int getRecycleInterval() {
+        return recycleInterval;
+    }
+
+    /**
+     * Returns the number of requests currently sent to the given host
+     * @param host String containing the host name and port, as returned by URL.getAuthority()
+     * @return int containing the number of slots in use
+     */
+    public int getActiveRequests(String host) {
+        Host h = hosts.get(host);
+        return h == null ? 0 : maxConcurrentRequestsPerHost - h.idle.size();
+    }
+
+    /*
+     * Waits for a slot to send a request to the given host
+     * @param host String containing the host name and port
+     * @return Slot object to be given back to release once the request is over
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    Slot acquire(String host) throws InterruptedIOException {
+        return acquire(host, Request.NO_DEADLINE, null);
+    }
+
+    /*
+     * Waits for a slot to send a request to the given host, at most until the deadline
+     * @param host String containing the host name and port
+     * @param deadline long containing the System.nanoTime() value after which the request fails, Request.NO_DEADLINE for none
+     * @param endpoint String containing the name of the function called
+     * @return Slot object to be given back to release once the request is over
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     * @throws DeadlineExceededException if the deadline passes while waiting
+     */
+    Slot acquire(String host, long deadline, String endpoint) throws InterruptedIOException {
+        Host h = hosts.get(host);
+        if (h == null) {
+            Host created = new Host(maxConcurrentRequestsPerHost);
+            h = hosts.putIfAbsent(host, created);
+            if (h == null) h = created;
+        }
+        Slot c;
+        try {
+            if (deadline == Request.NO_DEADLINE) {
+                c = h.idle.takeFirst();
+            } else if ((c = h.idle.pollFirst(Request.remainingNanos(deadline), TimeUnit.NANOSECONDS)) == null) {
+                throw new DeadlineExceededException(endpoint);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to send a request to " + host);
+        }
+        return c;
+    }
+
+    /*
+     * Gives the slot back once the request is over
+     * @param slot Slot object returned by acquire
+     * @param closed boolean, true if the connection carrying the request was closed, the slot starts a new interval
+     */
+    void release(Slot slot, boolean closed) {
+        if (closed) slot.requests = 0;
+        slot.host.idle.offerFirst(slot);
+    }
+
+    /*
+     * Counts a request sent through the slot and checks if it must be sent with "Connection: close"
+     */
+    boolean shouldRecycle(Slot slot) {
+        return ++slot.requests >= recycleInterval;
+    }
+
+    /*
+     * State of the requests to one host: the slots not in use, the most recently released first
+     */
+    static class Host {
+        private final LinkedBlockingDeque<Slot> idle = new LinkedBlockingDeque<Slot>();
+
+        Host(int slots) {
+            for (int i = 0; i < slots; i++) idle.add(new Slot(this));
+        }
+    }
+
+    /*
+     * Permit to send one request to a host, used by one request at a time. It is not tied to a socket, the platform
+     * picks the one carrying the request. The deque hands it from a thread to the next, so its counter needs no
+     * synchronization.
+     */
+    static class Slot {
+        private final Host host;
+        private int requests = 0;
+
+        Slot(Host host) {
+            this.host = host;
+        }
+
+        /*
+         * Getter for the number of requests sent through the slot since the last recycled connection
+         */
+        int getRequests() {
+            return requests;
+        }
+    }
+}
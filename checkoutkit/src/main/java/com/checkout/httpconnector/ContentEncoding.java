@@ -0,0 +1,73 @@
+package com.checkout.httpconnector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Helpers handling the compression of the bodies, shared by the transports
+ */
+final class ContentEncoding {
+
+    /* Value of the Accept-Encoding header sent with the requests */
+    static final String ACCEPTED = "gzip, deflate";
+
+    /* Size of the buffers of the decoders, the responses of the API are small */
+    private static final int BUFFER_SIZE = 512;
+
+    private ContentEncoding() {
+    }
+
+    /*
+     * Wraps a body with the decoder of its Content-Encoding, the stream is returned unchanged when the encoding is
+     * absent or unknown, or when the body is empty
+     * @param in InputStream of the body as received
+     * @param encoding String containing the Content-Encoding header, null if there is none
+     * @return InputStream of the decoded body
+     */
+    static InputStream decode(InputStream in, String encoding) throws IOException {
+        if (encoding == null) return in;
+        String e = encoding.trim().toLowerCase(Locale.US);
+        boolean gzip = e.equals("gzip") || e.equals("x-gzip");
+        if (!gzip && !e.equals("deflate")) return in;
+
+        PushbackInputStream body = new PushbackInputStream(in, 2);
+        int first = body.read();
+        if (first == -1) return body;
+        int second = body.read();
+        if (second != -1) body.unread(second);
+        body.unread(first);
+        if (gzip) return new GZIPInputStream(body, BUFFER_SIZE);
+
+        /* "deflate" should be zlib wrapped, some servers send raw deflate data: the zlib header is checked to tell them apart */
+        boolean zlib = (first & 0x0F) == 8 && second != -1 && ((first << 8) | second) % 31 == 0;
+        final Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(body, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /*
+     * Compresses a body with gzip
+     */
+    static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + 32);
+        GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+        gzip.write(body);
+        gzip.close();
+        return out.toByteArray();
+    }
+}
@@ -1,34 +1,66 @@
 package com.checkout.httpconnector;
 
+import com.checkout.exceptions.DeadlineExceededException;
 import com.checkout.logger.Log;
+import com.checkout.metrics.CheckoutMetrics;
+import com.checkout.metrics.EndpointMetrics;
+import com.checkout.models.Json;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 
-
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.logging.Logger;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Class used to manage the http connections with Checkout's server. Serves as an abstraction for get and post requests
+ * Class used to manage the http connections with Checkout's server. Serves as an abstraction for get and post requests.
+ * An instance can be shared by many threads sending requests at the same time. It is the default Transport of CheckoutKit,
+ * based on HttpURLConnection.
  */
-public class HttpConnector {
+public class HttpConnector implements Transport {
 
     /**
      * Enumeration representing the different types of HTTP methods that can be used
      */
     public enum HttpMethods { GET, POST }
 
-    private Gson gson;
-    private HttpURLConnection connection = null;
-    private int httpStatus = 0;
-    public static Log logger=null;
-    private boolean debug;
+    /* Charset of the JSON payloads exchanged with the server */
+    private static final String UTF_8 = "UTF-8";
+    /* Default time to establish a connection, in milliseconds */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    /* Default time to wait for data once connected, in milliseconds */
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+    private static ScheduledExecutorService deadlineScheduler = null;
+
+    /**
+     * Logger given to the last HttpConnector created or updated with setLogger
+     * @deprecated each connector keeps its own logger, set with the constructor or setLogger, and Log sends its entries
+     * to the LogAppender set with Log.setAppender. A connector without a logger still uses the one of this field.
+     */
+    @Deprecated
+    public static volatile Log logger = null;
+
+    /* Only configuration is kept in fields, everything related to a request stays local to sendRequest */
+    private final Gson gson;
+    private volatile Log log;
+    private volatile boolean debug;
+    private volatile ConnectionPool pool = null;
+    private volatile CheckoutMetrics metrics = null;
+    private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+    private volatile boolean responseCompression = true;
+    private volatile int requestCompressionThreshold = -1;
+    private volatile boolean frozen = false;
 
     /**
      * Default constructor
@@ -36,9 +68,54 @@ public class HttpConnector {
      * @param debug Boolean if we need to log activity or not
      * @param logger Log object, where to log if debug is true
      */
+    @SuppressWarnings("deprecation")
     public HttpConnector(Gson gsonInstance, boolean debug, Log logger){
         this.debug = debug;
         gson = gsonInstance;
+        this.log = logger;
+        HttpConnector.logger = logger;
+    }
+
+    /**
+     * Secondary constructor, uses the shared Gson instance of Json
+     * @param debug Boolean if we need to log activity or not
+     * @param logger Log object, where to log if debug is true
+     */
+    public HttpConnector(boolean debug, Log logger){
+        this(Json.gson(), debug, logger);
+    }
+
+    /**
+     * Prevents any further change of the settings, their setters then throw an IllegalStateException. CheckoutKit freezes
+     * the connector of the instances created by a Builder.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * Checks if the settings of this connector can be changed
+     * @return boolean, true once freeze has been called
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /*
+     * Rejects the changes of the settings of a frozen connector
+     */
+    private void checkMutable() {
+        if (frozen) throw new IllegalStateException("The settings of a frozen HttpConnector cannot be changed");
+    }
+
+    /**
+     * Setter for the logger
+     * @param logger Log object, where to log if debug is true
+     */
+    @SuppressWarnings("deprecation")
+    public void setLogger(Log logger) {
+        checkMutable();
+        this.log = logger;
         HttpConnector.logger = logger;
     }
 
@@ -47,28 +124,215 @@ public class HttpConnector {
      * @param debug Boolean containing the new value for debug
      */
     public void setDebug(boolean debug) {
+        checkMutable();
         this.debug = debug;
     }
 
+    /**
+     * Setter for the connection pool
+     * @param pool ConnectionPool object describing how connections are reused, null to disconnect after every request
+     */
+    public void setConnectionPool(ConnectionPool pool) {
+        checkMutable();
+        this.pool = pool;
+    }
+
+    /**
+     * Getter for the connection pool
+     * @return current ConnectionPool object or null if connections are not reused
+     */
+    public ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    /**
+     * Setter for the metrics
+     * @param metrics CheckoutMetrics object recording the latency and the result of each request, null to record nothing
+     */
+    public void setMetrics(CheckoutMetrics metrics) {
+        checkMutable();
+        this.metrics = metrics;
+    }
+
+    /**
+     * Getter for the metrics
+     * @return current CheckoutMetrics object or null if nothing is recorded
+     */
+    public CheckoutMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Setter for the connect timeout
+     * @param connectTimeout int containing the time in milliseconds to establish a connection, 0 to wait forever
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        checkMutable();
+        if (connectTimeout < 0) throw new IllegalArgumentException("The timeout cannot be negative");
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Getter for the connect timeout
+     * @return int containing the time in milliseconds to establish a connection, 0 if it is infinite
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Setter for the read timeout
+     * @param readTimeout int containing the time in milliseconds to wait for data once connected, 0 to wait forever
+     */
+    public void setReadTimeout(int readTimeout) {
+        checkMutable();
+        if (readTimeout < 0) throw new IllegalArgumentException("The timeout cannot be negative");
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Getter for the read timeout
+     * @return int containing the time in milliseconds to wait for data once connected, 0 if it is infinite
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Setter for the compression of the responses
+     * @param responseCompression boolean, true to accept gzip and deflate encoded responses (default), false to ask for plain ones
+     */
+    public void setResponseCompression(boolean responseCompression) {
+        checkMutable();
+        this.responseCompression = responseCompression;
+    }
+
+    /**
+     * Getter for the compression of the responses
+     * @return boolean, true if gzip and deflate encoded responses are accepted
+     */
+    public boolean getResponseCompression() {
+        return responseCompression;
+    }
+
+    /**
+     * Setter for the compression of the payloads. The server must accept gzip encoded requests, they are not compressed by default.
+     * @param threshold int containing the size in bytes from which a payload is sent gzip encoded, -1 to never compress them
+     */
+    public void setRequestCompressionThreshold(int threshold) {
+        checkMutable();
+        this.requestCompressionThreshold = threshold < 0 ? -1 : threshold;
+    }
+
+    /**
+     * Getter for the compression threshold of the payloads
+     * @return int containing the size in bytes from which a payload is sent gzip encoded, -1 if they are never compressed
+     */
+    public int getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    /**
+     * Opens a connection to the host of the given url and hands it to the keep-alive cache, so that the first request
+     * does not pay for the TCP and TLS handshakes. Does nothing if no connection pool is set. Waits at most the connect
+     * timeout for a slot of the pool when the host is busy.
+     * @param uri String containing any url of the server
+     * @throws IOException If there is a problem with the communication with the server
+     */
+    public void warmUp(String uri) throws IOException {
+        ConnectionPool pool = this.pool;
+        if (pool == null) return;
+        Log logger = logger();
+        boolean debug = this.debug && logger != null && logger.isLoggable(Log.Level.INFO);
+        URL url = new URL(uri);
+        int connectTimeout = this.connectTimeout;
+        long deadline = connectTimeout == 0 ? Request.NO_DEADLINE : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectTimeout);
+        ConnectionPool.Slot slot = pool.acquire(url.getAuthority(), deadline, "WARMUP");
+        HttpURLConnection conn = null;
+        boolean closed = true;
+        try {
+            conn = (HttpURLConnection) url.openConnection();
+            conn.setRequestMethod("HEAD");
+            conn.setConnectTimeout(connectTimeout);
+            conn.setReadTimeout(readTimeout);
+            conn.setUseCaches(false);
+            conn.setRequestProperty("Client-Id", "MobileKit.Android");
+            boolean closing = pool.shouldRecycle(slot);
+            if (closing) conn.setRequestProperty("Connection", "close");
+            int status = conn.getResponseCode();
+            drain(status < 400 ? conn.getInputStream() : conn.getErrorStream());
+            closed = closing;
+            if(debug){
+                logger.info("** WarmUp **  	"+url.getAuthority()+"	"+status);
+            }
+        } catch (IOException e) {
+            if (conn != null) conn.disconnect();
+            throw e;
+        } finally {
+            pool.release(slot, closed);
+        }
+    }
+
+    /*
+     * Returns the logger of the connector, or the one of the deprecated static field if none was given
+     */
+    @SuppressWarnings("deprecation")
+    private Log logger() {
+        Log log = this.log;
+        return log != null ? log : HttpConnector.logger;
+    }
+
+    /*
+     * Reads what is left of a response body and closes the stream, which gives the connection back to the keep-alive cache
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) return;
+        try {
+            byte[] buffer = new byte[512];
+            while (in.read(buffer) != -1) {
+                // discard
+            }
+        } finally {
+            in.close();
+        }
+    }
+
     /*
      * Private method handling the sending and receiving of the HTTP requests
      * @param uri String containing the url the request is sent to
      * @param apiKey String containing the public key of the merchant
      * @param method String containing the HTTP method
      * @param payload String containing the payload to be sent (for a POST request)
+     * @param ifNoneMatch String containing the ETag of the cached response, null if there is none
+     * @param endpoint String containing the name under which the request is recorded in the metrics, null for the url path
+     * @param deadline long containing the System.nanoTime() value after which the request fails, Request.NO_DEADLINE for none
      * @param returnType T instance returned by the server
      * @param <T>
      * @return Response<T>, Response object containing a T instance corresponding to the server's response
      * @throws IOException If there is a problem with the communication with the server
+     * @throws DeadlineExceededException If the deadline passes before the response is read
      * @throws JsonSyntaxException If the JSON is not correct, it cannot be parsed
      */
-    private <T> Response<T> sendRequest(String uri,String apiKey,HttpMethods method, String payload,Class<T> returnType) throws IOException,JsonSyntaxException {
+    private <T> Response<T> sendRequest(String uri,String apiKey,HttpMethods method, String payload,String ifNoneMatch,String endpoint,long deadline,Class<T> returnType) throws IOException,JsonSyntaxException {
         com.checkout.httpconnector.Response<T> response = null;
-        JsonObject json = null;
-        String lines = null;
         T jsonObject = null;
-        BufferedReader reader = null;
-        OutputStreamWriter outputStreamWriter=null;
+        JsonReader reader = null;
+        OutputStream outputStream=null;
+        CountingInputStream inputStream=null;
+        CountingInputStream decoded=null;
+        HttpURLConnection connection = null;
+        int httpStatus;
+        Log logger = logger();
+        boolean debug = this.debug && logger != null && logger.isLoggable(Log.Level.INFO);
+        ConnectionPool pool = this.pool;
+        ConnectionPool.Slot slot = null;
+        boolean reusable = false;
+        boolean closing = false;
+        CheckoutMetrics metrics = this.metrics;
+        long start = 0, connected = 0, firstByte = 0, done = 0, sent = 0, uncompressed = 0;
+        byte[] body = null;
+        int connectTimeout = this.connectTimeout, readTimeout = this.readTimeout;
+        Watchdog watchdog = null;
 
         URL url = new URL(uri);
 
@@ -78,92 +342,237 @@ public class HttpConnector {
         }
 
         try{
+            if(deadline!=Request.NO_DEADLINE && Request.remainingNanos(deadline)==0){
+                throw new DeadlineExceededException(endpoint);
+            }
+            if(pool!=null){
+                slot = pool.acquire(url.getAuthority(), deadline, endpoint);
+            }
+            start = System.nanoTime();
             connection = (HttpURLConnection) url.openConnection();
+            if(deadline!=Request.NO_DEADLINE){
+                long left = Math.max(1, TimeUnit.NANOSECONDS.toMillis(Request.remainingNanos(deadline)));
+                connectTimeout = within(connectTimeout, left);
+                readTimeout = within(readTimeout, left);
+                watchdog = new Watchdog(connection, left);
+            }
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
             connection.setRequestMethod(method.toString());
             connection.setUseCaches(false);
             connection.setRequestProperty("Content-Type", "application/json");
             connection.setRequestProperty("Authorization", apiKey);
             connection.setRequestProperty("Client-Id", "MobileKit.Android");
+            if(ifNoneMatch!=null){
+                connection.setRequestProperty("If-None-Match", ifNoneMatch);
+            }
+            if(slot!=null && pool.shouldRecycle(slot)){
+                closing = true;
+                connection.setRequestProperty("Connection", "close");
+            }
+            if(responseCompression){
+                connection.setRequestProperty("Accept-Encoding", ContentEncoding.ACCEPTED);
+            }
+            if(HttpMethods.POST == method){
+                body = payload.getBytes(UTF_8);
+                uncompressed = body.length;
+                int threshold = requestCompressionThreshold;
+                if(threshold>=0 && body.length>=threshold){
+                    body = ContentEncoding.gzip(body);
+                    connection.setRequestProperty("Content-Encoding", "gzip");
+                }
+            }
             connection.setDoOutput(true);
 
             connection.connect();
+            connected = System.nanoTime();
 
             if(HttpMethods.POST == method){
-                outputStreamWriter = new OutputStreamWriter(connection.getOutputStream());
+                outputStream = connection.getOutputStream();
 
-                outputStreamWriter.write(payload);
-                outputStreamWriter.flush();
+                outputStream.write(body);
+                outputStream.flush();
+                sent = body.length;
             }
 
             httpStatus = connection.getResponseCode();
+            firstByte = System.nanoTime();
 
-            if (this.httpStatus == 200) {
+            if (httpStatus == 200) {
 
-                reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+                inputStream = new CountingInputStream(connection.getInputStream());
+                decoded = new CountingInputStream(ContentEncoding.decode(inputStream, connection.getContentEncoding()));
+                reader = new JsonReader(new InputStreamReader(decoded, UTF_8));
 
-                lines = reader.readLine();
+                jsonObject = gson.fromJson(reader, returnType);
 
-                if(lines!=null){
-                    json = gson.fromJson(lines, JsonObject.class);
+                if(slot!=null){
+                    drain(inputStream);
                 }
+                done = System.nanoTime();
 
                 if(debug){
-                    logger.info("** HttpResponse**  Status 200 OK"+json);
+                    logger.info("** HttpResponse**  Status 200 OK"+gson.toJson(jsonObject));
                 }
 
-                jsonObject = gson.fromJson(json.toString(),returnType);
-
                 response = new com.checkout.httpconnector.Response<T>(jsonObject);
-                response.httpStatus= this.httpStatus;
-            } else{
+                response.httpStatus= httpStatus;
+                response.etag= connection.getHeaderField("ETag");
+            } else if (httpStatus == HttpURLConnection.HTTP_NOT_MODIFIED && ifNoneMatch != null) {
 
-                reader = new BufferedReader(new InputStreamReader(connection.getErrorStream()));
+                if(slot!=null){
+                    drain(connection.getInputStream());
+                }
+                done = System.nanoTime();
 
-                lines = reader.readLine();
+                response = new com.checkout.httpconnector.Response<T>(null);
+                response.httpStatus= httpStatus;
+                response.etag= ifNoneMatch;
 
-                if(lines!=null){
-                    json = gson.fromJson(lines, JsonObject.class);
+                if(debug){
+                    logger.info("** HttpResponse**  Status 304 Not Modified");
                 }
+            } else{
+
+                ResponseError error = null;
+                InputStream errorStream = connection.getErrorStream();
 
-                ResponseError error = gson.fromJson(json.toString(),ResponseError.class);
+                if(errorStream!=null){
+                    inputStream = new CountingInputStream(errorStream);
+                    decoded = new CountingInputStream(ContentEncoding.decode(inputStream, connection.getContentEncoding()));
+                    reader = new JsonReader(new InputStreamReader(decoded, UTF_8));
+                    error = gson.fromJson(reader, ResponseError.class);
+
+                    if(slot!=null){
+                        drain(inputStream);
+                    }
+                }
+                done = System.nanoTime();
 
                 response = new com.checkout.httpconnector.Response<T>(jsonObject);
 
                 response.error=error;
                 response.hasError=true;
-                response.httpStatus= this.httpStatus;
+                response.httpStatus= httpStatus;
+                response.retryAfter= connection.getHeaderField("Retry-After");
 
                 if(debug){
-                    logger.info("** HttpResponse**  StatusError: "+response.httpStatus+json);
+                    logger.info("** HttpResponse**  StatusError: "+response.httpStatus+gson.toJson(error));
                 }
             }
 
-            reader.close();
-
+            reusable = true;
             return response;
 
         }catch (IOException e) {
+            if(watchdog!=null && (watchdog.fired || Request.remainingNanos(deadline)==0) && !(e instanceof DeadlineExceededException)){
+                e = new DeadlineExceededException(endpoint, e);
+            }
             if(debug){
                 logger.info("** Exception ** "+ e.toString());
             }
             throw e;
+        }catch (RuntimeException e) {
+            /* Gson wraps the IOException raised when the watchdog closes the connection during the parsing */
+            if(watchdog!=null && watchdog.fired){
+                throw new DeadlineExceededException(endpoint, e);
+            }
+            throw e;
         }
         finally {
 
+            if(watchdog!=null){
+                watchdog.cancel();
+            }
+
+            if(metrics!=null && start!=0){
+                long received = inputStream==null ? 0 : inputStream.getCount();
+                EndpointMetrics m = metrics.endpoint(endpoint==null ? url.getPath() : endpoint);
+                if(response!=null){
+                    m.recordResponse(connected-start, firstByte-connected, done-firstByte, response.httpStatus,
+                            response.error==null ? null : response.error.errorCode, sent, received,
+                            sent==0 ? 0 : uncompressed, decoded==null ? received : decoded.getCount());
+                } else {
+                    m.recordFailure(System.nanoTime()-start, sent, received);
+                }
+            }
+
             if(reader!=null){
                 reader.close();
             }
 
-            if(outputStreamWriter!=null){
-                outputStreamWriter.close();
+            if(outputStream!=null){
+                outputStream.close();
             }
 
-            if(connection!=null){
+            boolean disconnect = slot==null || !reusable || (watchdog!=null && watchdog.fired);
+            if(connection!=null && disconnect){
                 connection.disconnect();
             }
+
+            if(slot!=null){
+                pool.release(slot, disconnect || closing);
+            }
+        }
+    }
+
+
+    @Override
+    public <T> Response<T> execute(Request request, Class<T> returnType) throws IOException, JsonSyntaxException {
+
+        return sendRequest(request.getUrl(),request.getKey(),request.getMethod(),request.getPayload(),request.getIfNoneMatch(),request.getEndpoint(),request.getDeadline(),returnType);
+    }
+
+    /*
+     * Returns the timeout bounded by the time left before the deadline, a timeout of 0 being infinite
+     */
+    private static int within(int timeout, long left) {
+        return (int) (timeout == 0 ? Math.min(left, Integer.MAX_VALUE) : Math.min(timeout, left));
+    }
+
+    /*
+     * Returns the scheduler of the watchdogs, creates it on the first call
+     */
+    private static synchronized ScheduledExecutorService getDeadlineScheduler() {
+        if (deadlineScheduler == null) {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "checkoutkit-deadline");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            deadlineScheduler = scheduler;
         }
+        return deadlineScheduler;
     }
 
+    /*
+     * Disconnects the connection of a request still running when its deadline passes. The timeouts only bound each
+     * connect or read on its own, closing the connection aborts whatever blocking call is in progress.
+     */
+    private static class Watchdog implements Runnable {
+        private final HttpURLConnection connection;
+        private final ScheduledFuture<?> future;
+        volatile boolean fired = false;
+
+        Watchdog(HttpURLConnection connection, long delayMillis) {
+            this.connection = connection;
+            this.future = getDeadlineScheduler().schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            fired = true;
+            connection.disconnect();
+        }
+
+        void cancel() {
+            future.cancel(false);
+        }
+    }
 
     /**
      * Method allowing to send a POST request to a given url with a payload
@@ -178,7 +587,24 @@ public class HttpConnector {
      */
     public <T> Response<T> postRequest(String url,String key,String payload,Class<T> returnType) throws JsonSyntaxException, IOException {
 
-        return sendRequest(url,key, HttpMethods.POST, payload,returnType);
+        return sendRequest(url,key, HttpMethods.POST, payload,null,null,Request.NO_DEADLINE,returnType);
+    }
+
+    /**
+     * Method allowing to send a POST request to a given url with a payload, recorded in the metrics under the given endpoint
+     * @param url String containing the url the request must be sent to
+     * @param key String containing the public key of the merchant
+     * @param payload String containing the data to be sent with the request
+     * @param returnType T instance returned by the server
+     * @param endpoint String containing the name under which the request is recorded in the metrics
+     * @param <T>
+     * @return Response<T>, Response object containing a T instance corresponding to the server's response
+     * @throws IOException If there is a problem with the communication with the server
+     * @throws JsonSyntaxException If the JSON is not correct, it cannot be parsed
+     */
+    public <T> Response<T> postRequest(String url,String key,String payload,Class<T> returnType,String endpoint) throws JsonSyntaxException, IOException {
+
+        return sendRequest(url,key, HttpMethods.POST, payload,null,endpoint,Request.NO_DEADLINE,returnType);
     }
 
     /**
@@ -193,6 +619,40 @@ public class HttpConnector {
      */
     public <T> Response<T> getRequest(String url,String key,Class<T> returnType) throws JsonSyntaxException, IOException{
 
-        return sendRequest(url,key, HttpMethods.GET, null,returnType);
+        return sendRequest(url,key, HttpMethods.GET, null,null,null,Request.NO_DEADLINE,returnType);
+    }
+
+    /**
+     * Method allowing to send a conditional GET request to a given url. If the server answers 304 Not Modified, the
+     * returned Response has no model and no error, its httpStatus is 304
+     * @param url String containing the url the request must be sent to
+     * @param key String containing the public key of the merchant
+     * @param returnType T instance returned by the server
+     * @param ifNoneMatch String containing the ETag of the response held by the caller, null for a plain request
+     * @param <T>
+     * @return Response<T>, Response object containing a T instance corresponding to the server's response
+     * @throws IOException If there is a problem with the communication with the server
+     * @throws JsonSyntaxException If the JSON is not correct, it cannot be parsed
+     */
+    public <T> Response<T> getRequest(String url,String key,Class<T> returnType,String ifNoneMatch) throws JsonSyntaxException, IOException{
+
+        return sendRequest(url,key, HttpMethods.GET, null,ifNoneMatch,null,Request.NO_DEADLINE,returnType);
+    }
+
+    /**
+     * Method allowing to send a conditional GET request to a given url, recorded in the metrics under the given endpoint
+     * @param url String containing the url the request must be sent to
+     * @param key String containing the public key of the merchant
+     * @param returnType T instance returned by the server
+     * @param ifNoneMatch String containing the ETag of the response held by the caller, null for a plain request
+     * @param endpoint String containing the name under which the request is recorded in the metrics
+     * @param <T>
+     * @return Response<T>, Response object containing a T instance corresponding to the server's response
+     * @throws IOException If there is a problem with the communication with the server
+     * @throws JsonSyntaxException If the JSON is not correct, it cannot be parsed
+     */
+    public <T> Response<T> getRequest(String url,String key,Class<T> returnType,String ifNoneMatch,String endpoint) throws JsonSyntaxException, IOException{
+
+        return sendRequest(url,key, HttpMethods.GET, null,ifNoneMatch,endpoint,Request.NO_DEADLINE,returnType);
     }
 }
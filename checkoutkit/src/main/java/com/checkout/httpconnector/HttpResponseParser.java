@@ -0,0 +1,261 @@
+package com.checkout.httpconnector;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/*
+ * Incremental parser of HTTP/1.1 responses, fed with the bytes read from a non-blocking channel as they arrive.
+ * Handles Content-Length, chunked and read-until-close bodies, skips the interim 1xx responses.
+ */
+class HttpResponseParser {
+
+    private static final int MAX_LINE = 8192;
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private enum State { STATUS_LINE, HEADERS, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILERS, UNTIL_CLOSE, DONE }
+
+    private final boolean bodyExpected;
+    private State state = State.STATUS_LINE;
+    private byte[] line = new byte[128];
+    private int lineLength = 0;
+
+    private boolean http11 = true;
+    private int status = 0;
+    private long contentLength = -1;
+    private boolean chunked = false;
+    private boolean closeRequested = false;
+    private boolean keepAliveRequested = false;
+    private String etag = null;
+    private String contentEncoding = null;
+    private String retryAfter = null;
+    private long remaining = 0;
+
+    private byte[] body = new byte[0];
+    private int bodyLength = 0;
+
+    /*
+     * @param bodyExpected boolean, false for the responses to a HEAD request which never have a body
+     */
+    HttpResponseParser(boolean bodyExpected) {
+        this.bodyExpected = bodyExpected;
+    }
+
+    /*
+     * Consumes the available bytes, stops at the end of the response
+     * @return boolean, true once the whole response has been read
+     */
+    boolean parse(ByteBuffer in) throws IOException {
+        while (state != State.DONE && in.hasRemaining()) {
+            switch (state) {
+                case STATUS_LINE:
+                    if (readLine(in)) parseStatusLine();
+                    break;
+                case HEADERS:
+                    if (readLine(in)) {
+                        if (lineLength == 0) endOfHeaders();
+                        else parseHeader();
+                    }
+                    break;
+                case BODY:
+                case CHUNK_DATA:
+                    int n = (int) Math.min(remaining, in.remaining());
+                    appendBody(in, n);
+                    remaining -= n;
+                    if (remaining == 0) state = state == State.BODY ? State.DONE : State.CHUNK_END;
+                    break;
+                case CHUNK_END:
+                    if (readLine(in)) state = State.CHUNK_SIZE;
+                    break;
+                case CHUNK_SIZE:
+                    if (readLine(in)) parseChunkSize();
+                    break;
+                case TRAILERS:
+                    if (readLine(in) && lineLength == 0) state = State.DONE;
+                    break;
+                case UNTIL_CLOSE:
+                    appendBody(in, in.remaining());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return state == State.DONE;
+    }
+
+    /*
+     * Called when the server closed the connection
+     * @return boolean, true if the response is complete
+     * @throws EOFException if the response was truncated
+     */
+    boolean endOfStream() throws EOFException {
+        if (state == State.UNTIL_CLOSE) state = State.DONE;
+        if (state != State.DONE) throw new EOFException("The server closed the connection before the end of the response");
+        return true;
+    }
+
+    /*
+     * Checks if a byte of the response was received
+     */
+    boolean isStarted() {
+        return state != State.STATUS_LINE || lineLength > 0;
+    }
+
+    /*
+     * Checks if the connection can be used for another request once the response is read
+     */
+    boolean isReusable() {
+        if (closeRequested || (contentLength < 0 && !chunked && bodyExpected && hasBody())) return false;
+        return http11 || keepAliveRequested;
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    String getRetryAfter() {
+        return retryAfter;
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    int getBodyLength() {
+        return bodyLength;
+    }
+
+    /*
+     * Reads up to the end of the current line, without the CRLF
+     * @return boolean, true if the line is complete
+     */
+    private boolean readLine(ByteBuffer in) throws IOException {
+        while (in.hasRemaining()) {
+            byte b = in.get();
+            if (b == '\n') {
+                if (lineLength > 0 && line[lineLength - 1] == '\r') lineLength--;
+                return true;
+            }
+            if (lineLength == line.length) {
+                if (lineLength >= MAX_LINE) throw new IOException("Response line too long");
+                line = Arrays.copyOf(line, lineLength * 2);
+            }
+            line[lineLength++] = b;
+        }
+        return false;
+    }
+
+    private String takeLine() {
+        String s = new String(line, 0, lineLength, ISO_8859_1);
+        lineLength = 0;
+        return s;
+    }
+
+    private void parseStatusLine() throws IOException {
+        String s = takeLine();
+        if (s.isEmpty()) return;
+        int first = s.indexOf(' ');
+        if (!s.startsWith("HTTP/1.") || first < 0 || s.length() < first + 4) throw new IOException("Invalid status line: " + s);
+        http11 = !s.startsWith("HTTP/1.0");
+        try {
+            status = Integer.parseInt(s.substring(first + 1, first + 4));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid status line: " + s);
+        }
+        contentLength = -1;
+        chunked = false;
+        closeRequested = false;
+        keepAliveRequested = false;
+        state = State.HEADERS;
+    }
+
+    private void parseHeader() {
+        String s = takeLine();
+        int colon = s.indexOf(':');
+        if (colon <= 0) return;
+        String name = s.substring(0, colon).trim();
+        String value = s.substring(colon + 1).trim();
+        if (name.equalsIgnoreCase("Content-Length")) {
+            try {
+                contentLength = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                contentLength = -1;
+            }
+        } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+            chunked = value.toLowerCase().contains("chunked");
+        } else if (name.equalsIgnoreCase("Connection")) {
+            String v = value.toLowerCase();
+            closeRequested = v.contains("close");
+            keepAliveRequested = v.contains("keep-alive");
+        } else if (name.equalsIgnoreCase("ETag")) {
+            etag = value;
+        } else if (name.equalsIgnoreCase("Content-Encoding")) {
+            contentEncoding = value;
+        } else if (name.equalsIgnoreCase("Retry-After")) {
+            retryAfter = value;
+        }
+    }
+
+    private void endOfHeaders() {
+        lineLength = 0;
+        if (status >= 100 && status < 200) {
+            /* interim response, the final one follows */
+            state = State.STATUS_LINE;
+            return;
+        }
+        if (!hasBody()) {
+            state = State.DONE;
+        } else if (chunked) {
+            state = State.CHUNK_SIZE;
+        } else if (contentLength >= 0) {
+            if (contentLength > Integer.MAX_VALUE - 8) contentLength = -1;
+            else ensureBody((int) contentLength);
+            remaining = contentLength;
+            state = contentLength <= 0 ? (contentLength == 0 ? State.DONE : State.UNTIL_CLOSE) : State.BODY;
+        } else {
+            state = State.UNTIL_CLOSE;
+        }
+    }
+
+    private boolean hasBody() {
+        return bodyExpected && status != 204 && status != 304;
+    }
+
+    private void parseChunkSize() throws IOException {
+        String s = takeLine();
+        int semi = s.indexOf(';');
+        if (semi >= 0) s = s.substring(0, semi);
+        long size;
+        try {
+            size = Long.parseLong(s.trim(), 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid chunk size: " + s);
+        }
+        if (size == 0) {
+            state = State.TRAILERS;
+        } else {
+            remaining = size;
+            state = State.CHUNK_DATA;
+        }
+    }
+
+    private void ensureBody(int capacity) {
+        if (capacity > body.length) body = Arrays.copyOf(body, Math.max(capacity, body.length * 2));
+    }
+
+    private void appendBody(ByteBuffer in, int n) {
+        ensureBody(bodyLength + n);
+        in.get(body, bodyLength, n);
+        bodyLength += n;
+    }
+}
@@ -0,0 +1,353 @@
+package com.checkout.httpconnector;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+
+/*
+ * Non-blocking HTTP/1.1 connection of NioTransport, optionally secured by an SSLEngine. It carries one exchange at a
+ * time and is kept open between exchanges when the server allows it. Only used by the thread of its event loop.
+ */
+class NioConnection {
+
+    private enum State { CONNECTING, HANDSHAKING, WRITING, READING, IDLE, CLOSED }
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final NioEventLoop loop;
+    final NioEventLoop.HostPool pool;
+    private final SocketChannel channel;
+    private final SSLEngine engine;
+    private SelectionKey key;
+    private State state = State.CONNECTING;
+
+    /* plain bytes received, in write mode */
+    private ByteBuffer appIn;
+    /* encrypted bytes received and not unwrapped yet, in write mode */
+    private ByteBuffer netIn;
+    /* encrypted bytes waiting to be written, in read mode */
+    private ByteBuffer netOut;
+    private ByteBuffer outgoing;
+
+    private NioExchange<?> exchange;
+    private HttpResponseParser parser;
+    private boolean reused = false;
+    long idleSince;
+
+    NioConnection(NioEventLoop loop, NioEventLoop.HostPool pool, SSLEngine engine) throws IOException {
+        this.loop = loop;
+        this.pool = pool;
+        this.engine = engine;
+        this.channel = SocketChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (engine == null) {
+            appIn = ByteBuffer.allocate(8192);
+        } else {
+            appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+            netIn = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            netOut.limit(0);
+        }
+    }
+
+    /*
+     * Opens the connection to the host of the exchange, which is sent once the connection is established
+     */
+    void connect(NioExchange<?> e) throws IOException {
+        attach(e);
+        e.connectStart = System.nanoTime();
+        boolean connected = channel.connect(new InetSocketAddress(e.host, e.port));
+        key = channel.register(loop.selector(), connected ? 0 : SelectionKey.OP_CONNECT, this);
+        if (connected) onConnected();
+    }
+
+    /*
+     * Sends an exchange on the open idle connection
+     */
+    void start(NioExchange<?> e) throws IOException {
+        attach(e);
+        reused = true;
+        e.connectStart = e.connected = System.nanoTime();
+        beginRequest();
+    }
+
+    NioExchange<?> getExchange() {
+        return exchange;
+    }
+
+    /*
+     * Checks if the failure of the current exchange may come from the server closing the idle connection at the same time
+     * it was reused, in which case the request can safely be sent again on a new connection
+     */
+    boolean isStale() {
+        return reused && (parser == null || !parser.isStarted());
+    }
+
+    boolean isOpen() {
+        return state != State.CLOSED && channel.isOpen();
+    }
+
+    long received() {
+        return parser == null ? 0 : parser.getBodyLength();
+    }
+
+    /*
+     * Called by the event loop when the channel is ready
+     */
+    void handle() throws IOException {
+        switch (state) {
+            case CONNECTING:
+                if (channel.finishConnect()) onConnected();
+                break;
+            case HANDSHAKING:
+                continueHandshake();
+                break;
+            case WRITING:
+                continueWrite();
+                break;
+            case READING:
+                continueRead();
+                break;
+            case IDLE:
+                /* an idle connection becomes readable when the server closes it */
+                throw new EOFException("Connection closed by the server");
+            default:
+                break;
+        }
+    }
+
+    void close() {
+        state = State.CLOSED;
+        exchange = null;
+        if (key != null) key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+    private void attach(NioExchange<?> e) {
+        exchange = e;
+        e.connection = this;
+        parser = null;
+    }
+
+    private void onConnected() throws IOException {
+        if (engine == null) {
+            exchange.connected = System.nanoTime();
+            beginRequest();
+        } else {
+            engine.beginHandshake();
+            state = State.HANDSHAKING;
+            continueHandshake();
+        }
+    }
+
+    private void continueHandshake() throws IOException {
+        if (handshake()) {
+            exchange.connected = System.nanoTime();
+            beginRequest();
+        } else {
+            interest(netOut.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+
+    private void beginRequest() throws IOException {
+        outgoing = exchange.request.duplicate();
+        parser = new HttpResponseParser(true);
+        state = State.WRITING;
+        continueWrite();
+    }
+
+    private void continueWrite() throws IOException {
+        if (!flushRequest()) {
+            interest(SelectionKey.OP_WRITE);
+            return;
+        }
+        state = State.READING;
+        interest(SelectionKey.OP_READ);
+        continueRead();
+    }
+
+    private void continueRead() throws IOException {
+        while (true) {
+            int n = fill();
+            appIn.flip();
+            boolean complete = parser.parse(appIn);
+            appIn.compact();
+            if (exchange.firstByte == 0 && parser.isStarted()) exchange.firstByte = System.nanoTime();
+            if (complete) {
+                finish(parser.isReusable() && appIn.position() == 0);
+                return;
+            }
+            if (n < 0) {
+                parser.endOfStream();
+                finish(false);
+                return;
+            }
+            if (n == 0) return;
+        }
+    }
+
+    private void finish(boolean reusable) {
+        NioExchange<?> e = exchange;
+        HttpResponseParser p = parser;
+        exchange = null;
+        e.connection = null;
+        if (reusable) {
+            state = State.IDLE;
+            interest(SelectionKey.OP_READ);
+        }
+        loop.released(this, reusable);
+        loop.complete(e, p);
+    }
+
+    private void interest(int ops) {
+        if (key.isValid()) key.interestOps(ops);
+    }
+
+    /*
+     * Reads the available bytes into appIn
+     * @return int containing the number of plain bytes added, -1 at the end of the stream
+     */
+    private int fill() throws IOException {
+        if (!appIn.hasRemaining()) appIn = grow(appIn, appIn.capacity() * 2);
+        if (engine == null) return channel.read(appIn);
+
+        int read = channel.read(netIn);
+        int produced = 0;
+        netIn.flip();
+        try {
+            while (netIn.hasRemaining()) {
+                SSLEngineResult r = engine.unwrap(netIn, appIn);
+                produced += r.bytesProduced();
+                if (r.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                    appIn = grow(appIn, appIn.capacity() + engine.getSession().getApplicationBufferSize());
+                } else if (r.getStatus() == SSLEngineResult.Status.CLOSED) {
+                    return produced > 0 ? produced : -1;
+                } else if (r.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+                    break;
+                } else if (r.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING
+                        && r.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.FINISHED) {
+                    /* post-handshake messages, such as a key update */
+                    netIn.compact();
+                    try {
+                        handshake();
+                    } finally {
+                        netIn.flip();
+                    }
+                } else if (r.bytesConsumed() == 0 && r.bytesProduced() == 0) {
+                    break;
+                }
+            }
+        } finally {
+            netIn.compact();
+        }
+        if (!netIn.hasRemaining()) netIn = grow(netIn, netIn.capacity() * 2);
+        return read < 0 && produced == 0 ? -1 : produced;
+    }
+
+    /*
+     * Writes as much of the request as the channel accepts
+     * @return boolean, true once the whole request is written
+     */
+    private boolean flushRequest() throws IOException {
+        if (engine == null) {
+            channel.write(outgoing);
+            return !outgoing.hasRemaining();
+        }
+        while (true) {
+            if (netOut.hasRemaining()) {
+                channel.write(netOut);
+                if (netOut.hasRemaining()) return false;
+            }
+            if (!outgoing.hasRemaining()) return true;
+            netOut.clear();
+            SSLEngineResult r = engine.wrap(outgoing, netOut);
+            netOut.flip();
+            if (r.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                netOut = ByteBuffer.allocate(netOut.capacity() + engine.getSession().getPacketBufferSize());
+                netOut.limit(0);
+            } else if (r.getStatus() == SSLEngineResult.Status.CLOSED) {
+                throw new SSLException("The TLS session was closed while sending the request");
+            }
+        }
+    }
+
+    /*
+     * Moves the TLS handshake forward as far as the channel allows
+     * @return boolean, true once the handshake is over
+     */
+    private boolean handshake() throws IOException {
+        while (true) {
+            if (netOut.hasRemaining()) {
+                channel.write(netOut);
+                if (netOut.hasRemaining()) return false;
+            }
+            SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+            switch (status) {
+                case FINISHED:
+                case NOT_HANDSHAKING:
+                    return true;
+                case NEED_TASK:
+                    Runnable task;
+                    while ((task = engine.getDelegatedTask()) != null) task.run();
+                    break;
+                case NEED_WRAP:
+                    netOut.clear();
+                    SSLEngineResult wrapped = engine.wrap(EMPTY, netOut);
+                    netOut.flip();
+                    if (wrapped.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                        netOut = ByteBuffer.allocate(netOut.capacity() + engine.getSession().getPacketBufferSize());
+                        netOut.limit(0);
+                    } else if (wrapped.getStatus() == SSLEngineResult.Status.CLOSED) {
+                        throw new SSLException("The TLS session was closed during the handshake");
+                    }
+                    break;
+                default:
+                    netIn.flip();
+                    SSLEngineResult unwrapped;
+                    try {
+                        unwrapped = engine.unwrap(netIn, appIn);
+                    } finally {
+                        netIn.compact();
+                    }
+                    if (unwrapped.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+                        if (!netIn.hasRemaining()) netIn = grow(netIn, netIn.capacity() * 2);
+                        int n = channel.read(netIn);
+                        if (n < 0) throw new EOFException("Connection closed by the server during the TLS handshake");
+                        if (n == 0) return false;
+                    } else if (unwrapped.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                        appIn = grow(appIn, appIn.capacity() + engine.getSession().getApplicationBufferSize());
+                    } else if (unwrapped.getStatus() == SSLEngineResult.Status.CLOSED) {
+                        throw new SSLException("The TLS session was closed during the handshake");
+                    }
+                    break;
+            }
+        }
+    }
+
+    /*
+     * Copies a buffer in write mode into a larger one
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer larger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+}
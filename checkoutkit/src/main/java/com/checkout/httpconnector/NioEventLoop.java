@@ -0,0 +1,296 @@
+package com.checkout.httpconnector;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Thread of NioTransport multiplexing the connections assigned to it with a Selector. Every connection and every pool
+ * is only touched by this thread, other threads hand it work through the task queue.
+ */
+class NioEventLoop implements Runnable {
+
+    /* Longest time the selector waits, so that the idle connections are evicted even without any activity */
+    private static final long SELECT_TIMEOUT = 1000;
+
+    private final NioTransport transport;
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<NioExchange<?>> submitted = new ConcurrentLinkedQueue<NioExchange<?>>();
+    private final ConcurrentLinkedQueue<NioExchange<?>> cancelled = new ConcurrentLinkedQueue<NioExchange<?>>();
+    private final Map<String, HostPool> pools = new HashMap<String, HostPool>();
+    private volatile boolean running = true;
+    private long lastEviction = System.nanoTime();
+
+    NioEventLoop(NioTransport transport, String name) throws IOException {
+        this.transport = transport;
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    Selector selector() {
+        return selector;
+    }
+
+    /*
+     * Queues an exchange, it is sent as soon as a connection to its host is available
+     */
+    void submit(NioExchange<?> exchange) {
+        submitted.add(exchange);
+        if (running) {
+            selector.wakeup();
+        } else {
+            failSubmitted();
+        }
+    }
+
+    /*
+     * Aborts a cancelled exchange
+     */
+    void cancel(NioExchange<?> exchange) {
+        if (!running) return;
+        cancelled.add(exchange);
+        selector.wakeup();
+    }
+
+    /*
+     * Stops the loop, the exchanges in flight fail
+     */
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select(SELECT_TIMEOUT);
+                NioExchange<?> exchange;
+                while ((exchange = cancelled.poll()) != null) abort(exchange);
+                while ((exchange = submitted.poll()) != null) dispatch(exchange, false);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (!key.isValid() || !connection.isOpen()) continue;
+                    try {
+                        connection.handle();
+                    } catch (IOException | RuntimeException e) {
+                        failed(connection, e);
+                    }
+                }
+
+                long now = System.nanoTime();
+                if (now - lastEviction > TimeUnit.MILLISECONDS.toNanos(SELECT_TIMEOUT)) {
+                    lastEviction = now;
+                    evictIdle(now);
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // the loop stops, everything pending fails below
+        } finally {
+            closeAll();
+        }
+    }
+
+    /*
+     * Sends an exchange on an idle connection, on a new one if the host limit allows it, or queues it
+     */
+    private void dispatch(NioExchange<?> exchange, boolean newConnection) {
+        if (exchange.isDone()) return;
+        HostPool pool = pools.get(exchange.origin);
+        if (pool == null) {
+            pool = new HostPool(exchange.origin);
+            pools.put(exchange.origin, pool);
+        }
+        if (!newConnection) {
+            NioConnection idle;
+            /* the most recently used connection is the least likely to have been closed by the server */
+            while ((idle = pool.idle.pollLast()) != null) {
+                if (idle.isOpen()) {
+                    try {
+                        idle.start(exchange);
+                    } catch (IOException | RuntimeException e) {
+                        failed(idle, e);
+                    }
+                    return;
+                }
+                pool.open--;
+            }
+        }
+        if (pool.open < transport.maxConnectionsPerLoop()) {
+            open(pool, exchange);
+        } else {
+            pool.pending.add(exchange);
+        }
+    }
+
+    private void open(HostPool pool, NioExchange<?> exchange) {
+        NioConnection connection;
+        try {
+            connection = new NioConnection(this, pool, exchange.secure ? transport.newEngine(exchange.host, exchange.port) : null);
+        } catch (IOException | RuntimeException e) {
+            exchange.fail(e, transport.getMetrics(), 0);
+            return;
+        }
+        pool.open++;
+        try {
+            connection.connect(exchange);
+        } catch (IOException | RuntimeException e) {
+            failed(connection, e);
+        }
+    }
+
+    /*
+     * Called by a connection once its exchange is over, before the exchange is completed
+     */
+    void released(NioConnection connection, boolean reusable) {
+        HostPool pool = connection.pool;
+        if (!reusable) {
+            connection.close();
+            pool.open--;
+            promote(pool);
+            return;
+        }
+        NioExchange<?> next;
+        while ((next = pool.pending.poll()) != null) {
+            if (next.isDone()) continue;
+            try {
+                connection.start(next);
+            } catch (IOException | RuntimeException e) {
+                failed(connection, e);
+            }
+            return;
+        }
+        connection.idleSince = System.nanoTime();
+        pool.idle.add(connection);
+    }
+
+    /*
+     * Completes an exchange with the response read by its connection
+     */
+    void complete(NioExchange<?> exchange, HttpResponseParser parser) {
+        exchange.complete(parser, transport.gson, transport.getMetrics());
+    }
+
+    /*
+     * Called when a connection fails, its exchange is sent again on a new connection if the failure comes from the
+     * reuse of a connection the server had closed, it fails otherwise
+     */
+    private void failed(NioConnection connection, Throwable cause) {
+        NioExchange<?> exchange = connection.getExchange();
+        boolean stale = connection.isStale();
+        long received = connection.received();
+        HostPool pool = connection.pool;
+        connection.close();
+        pool.idle.remove(connection);
+        pool.open--;
+        if (exchange != null) {
+            exchange.connection = null;
+            if (stale && !exchange.retried) {
+                exchange.retried = true;
+                dispatch(exchange, true);
+            } else {
+                exchange.fail(cause, transport.getMetrics(), received);
+            }
+        }
+        promote(pool);
+    }
+
+    /*
+     * Opens connections for the queued exchanges while the host limit allows it
+     */
+    private void promote(HostPool pool) {
+        while (pool.open < transport.maxConnectionsPerLoop() && !pool.pending.isEmpty()) {
+            NioExchange<?> next = pool.pending.poll();
+            if (!next.isDone()) open(pool, next);
+        }
+    }
+
+    private void abort(NioExchange<?> exchange) {
+        HostPool pool = pools.get(exchange.origin);
+        if (pool == null) return;
+        if (pool.pending.remove(exchange)) return;
+        NioConnection connection = exchange.connection;
+        if (connection != null && connection.getExchange() == exchange) {
+            exchange.connection = null;
+            connection.close();
+            pool.open--;
+            promote(pool);
+        }
+    }
+
+    private void evictIdle(long now) {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(transport.getIdleTimeout());
+        for (HostPool pool : pools.values()) {
+            Iterator<NioConnection> it = pool.idle.iterator();
+            while (it.hasNext()) {
+                NioConnection connection = it.next();
+                if (now - connection.idleSince > timeout || !connection.isOpen()) {
+                    it.remove();
+                    connection.close();
+                    pool.open--;
+                }
+            }
+        }
+    }
+
+    private void closeAll() {
+        running = false;
+        cancelled.clear();
+        failSubmitted();
+        IOException closed = new IOException("The transport is closed");
+        for (HostPool pool : pools.values()) {
+            for (NioExchange<?> e : pool.pending) e.fail(closed, null, 0);
+            pool.pending.clear();
+            pool.idle.clear();
+        }
+        for (SelectionKey key : selector.keys()) {
+            NioConnection connection = (NioConnection) key.attachment();
+            NioExchange<?> e = connection.getExchange();
+            connection.close();
+            if (e != null) e.fail(closed, null, 0);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+    /*
+     * Fails the exchanges submitted after the loop stopped
+     */
+    private void failSubmitted() {
+        NioExchange<?> exchange;
+        while ((exchange = submitted.poll()) != null) {
+            exchange.fail(new IOException("The transport is closed"), null, 0);
+        }
+    }
+
+    /*
+     * Connections to one origin, and the exchanges waiting for one of them
+     */
+    static class HostPool {
+        final String origin;
+        final ArrayDeque<NioConnection> idle = new ArrayDeque<NioConnection>();
+        final ArrayDeque<NioExchange<?>> pending = new ArrayDeque<NioExchange<?>>();
+        int open = 0;
+
+        HostPool(String origin) {
+            this.origin = origin;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.checkout.httpconnector;
+
+import com.checkout.CheckoutCallback;
+import com.checkout.metrics.CheckoutMetrics;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/*
+ * Request sent by NioTransport and the future of its response. It is completed by the event loop, never run.
+ */
+class NioExchange<T> extends FutureTask<Response<T>> {
+
+    private static final Callable<Object> NOT_RUNNABLE = new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+            throw new IllegalStateException("The exchange is completed by the event loop");
+        }
+    };
+
+    final String host;
+    final int port;
+    final boolean secure;
+    /* identifies the connections that can carry the request */
+    final String origin;
+    final ByteBuffer request;
+    final int payloadLength;
+    final String ifNoneMatch;
+    final String endpoint;
+    private final Class<T> returnType;
+    private final CheckoutCallback<T> callback;
+
+    /* event loop the exchange was submitted to */
+    volatile NioEventLoop loop;
+    /* fields below are only accessed by the event loop thread */
+    NioConnection connection;
+    boolean retried = false;
+    long connectStart;
+    long connected;
+    long firstByte;
+
+    @SuppressWarnings("unchecked")
+    NioExchange(String host, int port, boolean secure, ByteBuffer request, int payloadLength, String ifNoneMatch,
+                String endpoint, Class<T> returnType, CheckoutCallback<T> callback) {
+        super((Callable<Response<T>>) (Callable<?>) NOT_RUNNABLE);
+        this.host = host;
+        this.port = port;
+        this.secure = secure;
+        this.origin = (secure ? "https://" : "http://") + host + ":" + port;
+        this.request = request;
+        this.payloadLength = payloadLength;
+        this.ifNoneMatch = ifNoneMatch;
+        this.endpoint = endpoint;
+        this.returnType = returnType;
+        this.callback = callback;
+    }
+
+    /*
+     * Builds the response from what the parser read, the same way HttpConnector does, and completes the future
+     */
+    void complete(HttpResponseParser parser, Gson gson, CheckoutMetrics metrics) {
+        long done;
+        Response<T> response;
+        CountingInputStream decoded = null;
+        try {
+            int status = parser.getStatus();
+            decoded = new CountingInputStream(ContentEncoding.decode(new ByteArrayInputStream(parser.getBody(), 0, parser.getBodyLength()), parser.getContentEncoding()));
+            InputStreamReader body = new InputStreamReader(decoded, "UTF-8");
+            if (status == 200) {
+                response = new Response<T>(gson.<T>fromJson(new JsonReader(body), returnType));
+                response.etag = parser.getEtag();
+            } else if (status == 304 && ifNoneMatch != null) {
+                response = new Response<T>(null);
+                response.etag = ifNoneMatch;
+            } else {
+                response = new Response<T>(null);
+                response.hasError = true;
+                response.retryAfter = parser.getRetryAfter();
+                if (parser.getBodyLength() > 0) response.error = gson.fromJson(new JsonReader(body), ResponseError.class);
+            }
+            response.httpStatus = status;
+            done = System.nanoTime();
+        } catch (IOException | RuntimeException e) {
+            fail(e, metrics, parser.getBodyLength());
+            return;
+        }
+        if (metrics != null) {
+            metrics.endpoint(endpoint).recordResponse(connected - connectStart, firstByte - connected, done - firstByte,
+                    response.httpStatus, response.error == null ? null : response.error.errorCode, payloadLength, parser.getBodyLength(),
+                    payloadLength, decoded.getCount());
+        }
+        set(response);
+    }
+
+    /*
+     * Completes the future with the exception raised while sending the request
+     */
+    void fail(Throwable t, CheckoutMetrics metrics, long received) {
+        if (metrics != null && connectStart != 0) {
+            metrics.endpoint(endpoint).recordFailure(System.nanoTime() - connectStart, 0, received);
+        }
+        setException(t);
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            NioEventLoop l = loop;
+            if (l != null) l.cancel(this);
+        }
+        if (callback == null) return;
+        try {
+            notifyCallback();
+        } catch (RuntimeException e) {
+            // an exception thrown by the callback must not break the connection that completed the exchange
+        }
+    }
+
+    private void notifyCallback() {
+        Response<T> response;
+        try {
+            response = get();
+        } catch (CancellationException e) {
+            callback.onFailure(e);
+            return;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            callback.onFailure(cause instanceof Exception ? (Exception) cause : e);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            callback.onFailure(e);
+            return;
+        }
+        callback.onResponse(response);
+    }
+}
@@ -0,0 +1,223 @@
+package com.checkout.httpconnector;
+
+import com.checkout.CheckoutCallback;
+import com.checkout.exceptions.DeadlineExceededException;
+import com.checkout.metrics.CheckoutMetrics;
+import com.checkout.models.Json;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * Non-blocking transport multiplexing many concurrent requests over a few event loop threads, with java.nio channels
+ * and an SSLEngine for https. A request does not hold any thread while it waits for its response, which suits servers
+ * proxying many tokenizations at once. Meant for the JVM: hostname verification needs Java 7 or Android 7.
+ *
+ * Connections are kept alive and reused per host, each event loop opens at most its share of maxConnectionsPerHost
+ * connections to a host and queues the requests beyond. A request that fails because the server closed the idle
+ * connection it was sent on is sent again once on a new connection.
+ * The callbacks are invoked on the event loop threads and must not block.
+ */
+public class NioTransport implements AsyncTransport, Closeable {
+
+    /* Default number of event loop threads */
+    public static final int DEFAULT_THREADS = 2;
+    /* Default maximum number of connections opened to the same host */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 256;
+    /* Default time in milliseconds after which an idle connection is closed */
+    public static final long DEFAULT_IDLE_TIMEOUT = 60 * 1000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    final Gson gson;
+    private final SSLContext sslContext;
+    private final NioEventLoop[] loops;
+    private final int maxConnectionsPerLoop;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private volatile CheckoutMetrics metrics = null;
+
+    /**
+     * Default constructor, uses the default settings and the default SSLContext of the platform
+     * @throws IOException if the event loops cannot be created
+     */
+    public NioTransport() throws IOException {
+        this(Json.gson(), DEFAULT_THREADS, DEFAULT_MAX_CONNECTIONS_PER_HOST, null);
+    }
+
+    /**
+     * Secondary constructor
+     * @param gson Gson object used to parse the responses
+     * @param threads int containing the number of event loop threads
+     * @param maxConnectionsPerHost int containing the maximum number of connections opened to the same host, shared by the event loops
+     * @param sslContext SSLContext used for https, null for the default one of the platform
+     * @throws IOException if the event loops cannot be created
+     */
+    public NioTransport(Gson gson, int threads, int maxConnectionsPerHost, SSLContext sslContext) throws IOException {
+        if (threads < 1 || maxConnectionsPerHost < threads) throw new IllegalArgumentException("Invalid transport settings");
+        this.gson = gson;
+        try {
+            this.sslContext = sslContext == null ? SSLContext.getDefault() : sslContext;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("No TLS support on this platform", e);
+        }
+        this.maxConnectionsPerLoop = maxConnectionsPerHost / threads;
+        this.loops = new NioEventLoop[threads];
+        try {
+            for (int i = 0; i < threads; i++) {
+                loops[i] = new NioEventLoop(this, "checkoutkit-nio-" + (i + 1));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Setter for the metrics
+     * @param metrics CheckoutMetrics object recording the latency and the result of each request, null to record nothing
+     */
+    public void setMetrics(CheckoutMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Getter for the metrics
+     * @return current CheckoutMetrics object or null if nothing is recorded
+     */
+    public CheckoutMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Setter for the idle timeout
+     * @param idleTimeout long containing the time in milliseconds after which an idle connection is closed
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout < 0) throw new IllegalArgumentException("The idle timeout cannot be negative");
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Getter for the idle timeout
+     * @return long containing the time in milliseconds after which an idle connection is closed
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    @Override
+    public <T> Response<T> execute(Request request, Class<T> returnType) throws IOException, JsonSyntaxException {
+        Future<Response<T>> future = executeAsync(request, returnType, null);
+        try {
+            if (request.getDeadline() == Request.NO_DEADLINE) return future.get();
+            return future.get(request.remainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new DeadlineExceededException(request.getEndpoint());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public <T> Future<Response<T>> executeAsync(Request request, Class<T> returnType, CheckoutCallback<T> callback) {
+        NioExchange<T> exchange;
+        try {
+            exchange = newExchange(request, returnType, callback);
+        } catch (MalformedURLException e) {
+            exchange = new NioExchange<T>("", 0, false, null, 0, null, request.getEndpoint(), returnType, callback);
+            exchange.fail(e, null, 0);
+            return exchange;
+        }
+        NioEventLoop loop = loops[(next.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+        exchange.loop = loop;
+        loop.submit(exchange);
+        return exchange;
+    }
+
+    /**
+     * Closes every connection and stops the event loops, the requests in flight fail
+     */
+    @Override
+    public void close() {
+        for (NioEventLoop loop : loops) {
+            if (loop != null) loop.shutdown();
+        }
+    }
+
+    int maxConnectionsPerLoop() {
+        return maxConnectionsPerLoop;
+    }
+
+    /*
+     * Creates the client side TLS engine of a new connection, with hostname verification
+     */
+    SSLEngine newEngine(String host, int port) {
+        SSLEngine engine = sslContext.createSSLEngine(host, port);
+        engine.setUseClientMode(true);
+        SSLParameters parameters = engine.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        engine.setSSLParameters(parameters);
+        return engine;
+    }
+
+    /*
+     * Serializes the request with the same headers as HttpConnector
+     */
+    private <T> NioExchange<T> newExchange(Request request, Class<T> returnType, CheckoutCallback<T> callback) throws MalformedURLException {
+        URL url = new URL(request.getUrl());
+        boolean secure = "https".equalsIgnoreCase(url.getProtocol());
+        if (!secure && !"http".equalsIgnoreCase(url.getProtocol())) throw new MalformedURLException("Unsupported protocol: " + url.getProtocol());
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        String path = url.getFile().isEmpty() ? "/" : url.getFile();
+
+        byte[] payload = request.getPayload() == null ? null : request.getPayload().getBytes(UTF_8);
+        StringBuilder head = new StringBuilder(256);
+        head.append(request.getMethod().name()).append(' ').append(path).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(url.getHost());
+        if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) head.append(':').append(port);
+        head.append("\r\n");
+        head.append("Content-Type: application/json\r\n");
+        if (request.getKey() != null) head.append("Authorization: ").append(request.getKey()).append("\r\n");
+        head.append("Client-Id: MobileKit.Android\r\n");
+        head.append("Accept-Encoding: ").append(ContentEncoding.ACCEPTED).append("\r\n");
+        if (request.getIfNoneMatch() != null) head.append("If-None-Match: ").append(request.getIfNoneMatch()).append("\r\n");
+        if (payload != null) head.append("Content-Length: ").append(payload.length).append("\r\n");
+        head.append("\r\n");
+
+        byte[] headBytes = head.toString().getBytes(ISO_8859_1);
+        ByteBuffer bytes = ByteBuffer.allocate(headBytes.length + (payload == null ? 0 : payload.length));
+        bytes.put(headBytes);
+        if (payload != null) bytes.put(payload);
+        bytes.flip();
+
+        return new NioExchange<T>(url.getHost(), port, secure, bytes.asReadOnlyBuffer(), payload == null ? 0 : payload.length,
+                request.getIfNoneMatch(), request.getEndpoint() == null ? url.getPath() : request.getEndpoint(), returnType, callback);
+    }
+}
@@ -0,0 +1,123 @@
+package com.checkout.httpconnector;
+
+/**
+ * Class used to modelise a request sent to the server through a Transport
+ */
+public class Request {
+
+    /* Deadline of the requests that have none */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final HttpConnector.HttpMethods method;
+    private final String url;
+    private final String key;
+    private final String payload;
+    private final String ifNoneMatch;
+    private final String endpoint;
+    private final long deadline;
+
+    /**
+     * Default constructor
+     * @param method HttpMethods object containing the HTTP method
+     * @param url String containing the url the request is sent to
+     * @param key String containing the public key of the merchant
+     * @param payload String containing the JSON payload, null for a GET request
+     * @param ifNoneMatch String containing the ETag of the response held by the caller, null for a plain request
+     * @param endpoint String containing the name of the function called, used to record the metrics
+     */
+    public Request(HttpConnector.HttpMethods method, String url, String key, String payload, String ifNoneMatch, String endpoint) {
+        this(method, url, key, payload, ifNoneMatch, endpoint, NO_DEADLINE);
+    }
+
+    /**
+     * Secondary constructor
+     * @param method HttpMethods object containing the HTTP method
+     * @param url String containing the url the request is sent to
+     * @param key String containing the public key of the merchant
+     * @param payload String containing the JSON payload, null for a GET request
+     * @param ifNoneMatch String containing the ETag of the response held by the caller, null for a plain request
+     * @param endpoint String containing the name of the function called, used to record the metrics
+     * @param deadline long containing the System.nanoTime() value after which the request fails, NO_DEADLINE for none
+     */
+    public Request(HttpConnector.HttpMethods method, String url, String key, String payload, String ifNoneMatch, String endpoint, long deadline) {
+        this.method = method;
+        this.url = url;
+        this.key = key;
+        this.payload = payload;
+        this.ifNoneMatch = ifNoneMatch;
+        this.endpoint = endpoint;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Getter for the HTTP method
+     * @return HttpMethods object containing the HTTP method
+     */
+    public HttpConnector.HttpMethods getMethod() {
+        return method;
+    }
+
+    /**
+     * Getter for the url
+     * @return String containing the url the request is sent to
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Getter for the public key
+     * @return String containing the public key of the merchant
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Getter for the payload
+     * @return String containing the JSON payload, null for a GET request
+     */
+    public String getPayload() {
+        return payload;
+    }
+
+    /**
+     * Getter for the ETag sent in If-None-Match
+     * @return String containing the ETag of the response held by the caller, null for a plain request
+     */
+    public String getIfNoneMatch() {
+        return ifNoneMatch;
+    }
+
+    /**
+     * Getter for the endpoint
+     * @return String containing the name of the function called, null if unknown
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Getter for the deadline
+     * @return long containing the System.nanoTime() value after which the request fails, NO_DEADLINE if there is none
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Returns the time left before the deadline
+     * @return long containing the time left in nanoseconds, 0 if the deadline passed, Long.MAX_VALUE if there is none
+     */
+    public long remainingNanos() {
+        return remainingNanos(deadline);
+    }
+
+    /*
+     * Returns the time left before a deadline, 0 if it passed, Long.MAX_VALUE if it is NO_DEADLINE
+     */
+    static long remainingNanos(long deadline) {
+        if (deadline == NO_DEADLINE) return Long.MAX_VALUE;
+        return Math.max(0, deadline - System.nanoTime());
+    }
+}
@@ -9,6 +9,10 @@ package com.checkout.httpconnector;
         public int httpStatus;
         public ResponseError error;
         public T model;
+        /* Entity tag of the response, used to revalidate a cached response, null if the server did not send one */
+        public String etag;
+        /* Retry-After header of an error response, in seconds or as an HTTP date, null if the server did not send one */
+        public String retryAfter;
 
     /**
      * Default constructor
@@ -0,0 +1,188 @@
+package com.checkout.httpconnector;
+
+import com.checkout.exceptions.DeadlineExceededException;
+import com.checkout.metrics.CheckoutMetrics;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport answering in memory with canned payloads, used to test or load test an application without any socket.
+ * The payloads are stored as JSON and parsed for every request, as they would be when read from the network.
+ * When several payloads are stubbed for an endpoint they are returned in turn.
+ */
+public class StubTransport implements Transport {
+
+    private final Gson gson;
+    private final ConcurrentHashMap<String, Stubs> stubs = new ConcurrentHashMap<String, Stubs>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private volatile long minLatencyNanos = 0;
+    private volatile long maxLatencyNanos = 0;
+    private volatile CheckoutMetrics metrics = null;
+    private final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    /**
+     * Default constructor
+     * @param gson Gson object used to serialize the stubbed payloads and parse them back
+     */
+    public StubTransport(Gson gson) {
+        this.gson = gson;
+    }
+
+    /**
+     * Adds a successful response to the responses of an endpoint
+     * @param endpoint String containing the name of the endpoint (GETCARDPROVIDERS or CREATECARDTOKEN)
+     * @param model Object returned by the server, a CardTokenResponse or a CardProviderResponse
+     * @return this StubTransport, to chain the calls
+     */
+    public StubTransport stub(String endpoint, Object model) {
+        return stub(endpoint, 200, model);
+    }
+
+    /**
+     * Adds a response to the responses of an endpoint
+     * @param endpoint String containing the name of the endpoint (GETCARDPROVIDERS or CREATECARDTOKEN)
+     * @param status int containing the HTTP status of the response
+     * @param body Object returned by the server, a ResponseError if the status is not 200
+     * @return this StubTransport, to chain the calls
+     */
+    public StubTransport stub(String endpoint, int status, Object body) {
+        Stub stub = new Stub(status, body == null ? null : gson.toJson(body));
+        Stubs s = stubs.get(endpoint);
+        /* the Stubs of an endpoint are published with their first response, a request never sees them empty */
+        if (s == null && (s = stubs.putIfAbsent(endpoint, new Stubs(stub))) == null) return this;
+        s.add(stub);
+        return this;
+    }
+
+    /**
+     * Removes all the stubbed responses
+     */
+    public void reset() {
+        stubs.clear();
+        requestCount.set(0);
+    }
+
+    /**
+     * Sets the time every request waits before being answered, a random value between min and max
+     * @param min long containing the minimum latency
+     * @param max long containing the maximum latency
+     * @param unit TimeUnit of min and max
+     */
+    public void setLatency(long min, long max, TimeUnit unit) {
+        if (min < 0 || max < min) throw new IllegalArgumentException("Invalid latency");
+        this.minLatencyNanos = unit.toNanos(min);
+        this.maxLatencyNanos = unit.toNanos(max);
+    }
+
+    /**
+     * Setter for the metrics
+     * @param metrics CheckoutMetrics object recording the simulated requests, null to record nothing
+     */
+    public void setMetrics(CheckoutMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Getter for the number of requests answered since the creation or the last reset
+     * @return long containing the number of requests
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public <T> Response<T> execute(Request request, Class<T> returnType) throws IOException, JsonSyntaxException {
+        long start = System.nanoTime();
+        requestCount.incrementAndGet();
+        Stubs s = request.getEndpoint() == null ? null : stubs.get(request.getEndpoint());
+        if (s == null) throw new IOException("No response stubbed for " + request.getEndpoint());
+        Stub stub = s.next();
+        sleep(request);
+
+        long firstByte = System.nanoTime();
+        Response<T> response;
+        if (stub.status == 200) {
+            response = new Response<T>(stub.body == null ? null : gson.fromJson(stub.body, returnType));
+        } else {
+            response = new Response<T>(null);
+            response.hasError = true;
+            response.error = stub.body == null ? null : gson.fromJson(stub.body, ResponseError.class);
+        }
+        response.httpStatus = stub.status;
+
+        CheckoutMetrics m = metrics;
+        if (m != null) {
+            m.endpoint(request.getEndpoint()).recordResponse(0, firstByte - start, System.nanoTime() - firstByte, stub.status,
+                    response.error == null ? null : response.error.errorCode,
+                    request.getPayload() == null ? 0 : request.getPayload().length(), stub.body == null ? 0 : stub.body.length());
+        }
+        return response;
+    }
+
+    /*
+     * Waits for the configured latency, fails once the deadline of the request passes
+     */
+    private void sleep(Request request) throws InterruptedIOException {
+        long min = minLatencyNanos;
+        long max = maxLatencyNanos;
+        long latency = max == min ? min : min + (long) (random.get().nextDouble() * (max - min));
+        long remaining = request.remainingNanos();
+        try {
+            TimeUnit.NANOSECONDS.sleep(Math.min(latency, remaining));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while simulating the latency");
+        }
+        if (latency >= remaining) throw new DeadlineExceededException(request.getEndpoint());
+    }
+
+    /*
+     * Canned response
+     */
+    private static class Stub {
+        final int status;
+        final String body;
+
+        Stub(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /*
+     * Responses of one endpoint, returned in turn
+     */
+    private static class Stubs {
+        private volatile Stub[] responses;
+        private final AtomicInteger next = new AtomicInteger();
+
+        Stubs(Stub first) {
+            responses = new Stub[]{first};
+        }
+
+        synchronized void add(Stub stub) {
+            Stub[] r = Arrays.copyOf(responses, responses.length + 1);
+            r[r.length - 1] = stub;
+            responses = r;
+        }
+
+        Stub next() {
+            Stub[] r = responses;
+            return r[(next.getAndIncrement() & Integer.MAX_VALUE) % r.length];
+        }
+    }
+}
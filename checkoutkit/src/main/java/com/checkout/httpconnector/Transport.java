@@ -0,0 +1,23 @@
+package com.checkout.httpconnector;
+
+import com.google.gson.JsonSyntaxException;
+
+import java.io.IOException;
+
+/**
+ * Interface of the layer sending the requests of CheckoutKit to Checkout's server. HttpConnector is the default
+ * implementation, StubTransport answers in memory. Implementations must be thread safe.
+ */
+public interface Transport {
+
+    /**
+     * Sends a request and waits for its response
+     * @param request Request object describing what to send
+     * @param returnType T instance returned by the server
+     * @param <T>
+     * @return Response<T>, Response object containing a T instance or the error returned by the server
+     * @throws IOException If there is a problem with the communication with the server
+     * @throws JsonSyntaxException If the JSON is not correct, it cannot be parsed
+     */
+    <T> Response<T> execute(Request request, Class<T> returnType) throws IOException, JsonSyntaxException;
+}
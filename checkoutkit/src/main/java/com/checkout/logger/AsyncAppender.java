@@ -0,0 +1,167 @@
+package com.checkout.logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appender queuing the entries in a fixed size ring buffer, a background thread hands them to the delegate appender.
+ * Logging only costs a slot claim and three array writes to the calling thread. When the buffer is full the entries
+ * are dropped rather than slowing down the caller, getDropped returns how many were lost.
+ */
+public class AsyncAppender implements LogAppender {
+
+    /* Default number of entries the buffer can hold */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /* Time in nanoseconds flush waits between two checks of the background thread's progress */
+    private static final long FLUSH_PARK_NANOS = 100000L;
+
+    private final LogAppender delegate;
+    private final int mask;
+    private final long[] times;
+    private final Log.Level[] levels;
+    private final String[] messages;
+    /* sequence number of the entry stored in each slot once it is fully written, -1 when the slot is free */
+    private final AtomicLongArray published;
+
+    /* next sequence number claimed by a producer */
+    private final AtomicLong tail = new AtomicLong();
+    /* next sequence number read by the background thread */
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread drainer;
+    private volatile boolean running = true;
+    /* set by the background thread before it parks on an empty buffer, the producers then wake it up */
+    private volatile boolean idle = false;
+
+    /**
+     * Default constructor, uses the default capacity
+     * @param delegate LogAppender writing the entries
+     */
+    public AsyncAppender(LogAppender delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Secondary constructor
+     * @param delegate LogAppender writing the entries
+     * @param capacity int containing the number of entries the buffer can hold, rounded up to a power of two
+     */
+    public AsyncAppender(LogAppender delegate, int capacity) {
+        if (delegate == null) throw new IllegalArgumentException("The delegate appender cannot be null");
+        if (capacity < 1 || capacity > (1 << 30)) throw new IllegalArgumentException("Invalid capacity");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        this.delegate = delegate;
+        this.mask = size - 1;
+        this.times = new long[size];
+        this.levels = new Log.Level[size];
+        this.messages = new String[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) published.set(i, -1);
+
+        drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, "checkoutkit-log");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @Override
+    public void append(long timeMillis, Log.Level level, String message) {
+        if (!running) {
+            dropped.incrementAndGet();
+            return;
+        }
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head.get() > mask) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+
+        int slot = (int) seq & mask;
+        times[slot] = timeMillis;
+        levels[slot] = level;
+        messages[slot] = message;
+        /* the volatile write publishes the three plain writes above to the background thread */
+        published.set(slot, seq);
+        if (idle) LockSupport.unpark(drainer);
+    }
+
+    /**
+     * Waits until all the entries appended so far have been written by the delegate
+     */
+    @Override
+    public void flush() {
+        long target = tail.get();
+        while (head.get() < target && drainer.isAlive()) {
+            LockSupport.unpark(drainer);
+            LockSupport.parkNanos(FLUSH_PARK_NANOS);
+        }
+        delegate.flush();
+    }
+
+    /**
+     * Writes the pending entries and stops the background thread, the entries appended afterwards are dropped
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.flush();
+    }
+
+    /**
+     * Getter for the number of entries lost because the buffer was full or the appender closed
+     * @return long containing the number of entries dropped
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /*
+     * Loop of the background thread, writes the entries in the order of their sequence numbers
+     */
+    private void drainLoop() {
+        while (true) {
+            long seq = head.get();
+            int slot = (int) seq & mask;
+            if (published.get(slot) == seq) {
+                long time = times[slot];
+                Log.Level level = levels[slot];
+                String message = messages[slot];
+                messages[slot] = null;
+                levels[slot] = null;
+                published.set(slot, -1);
+                head.lazySet(seq + 1);
+                try {
+                    delegate.append(time, level, message);
+                } catch (RuntimeException e) {
+                    // a failing appender must not stop the logging thread
+                }
+            } else if (seq == tail.get()) {
+                /* empty, unless a producer claimed a slot and has not published it yet */
+                if (!running) return;
+                /* sleeps until a producer publishes an entry, the check after setting idle makes sure that a
+                   producer claiming a slot meanwhile sees idle set and unparks this thread */
+                idle = true;
+                if (seq == tail.get() && running) LockSupport.park(this);
+                idle = false;
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.checkout.logger;
+
+import java.io.PrintStream;
+
+/**
+ * Appender printing the entries in the console, as the date (yyyy/MM/dd HH:mm:ss) on one line followed by the level and
+ * the message on the next one
+ */
+public class ConsoleAppender implements LogAppender {
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator", "\n");
+
+    private final PrintStream out;
+    private final TimestampFormatter formatter = new TimestampFormatter();
+    private final StringBuilder buffer = new StringBuilder(256);
+
+    /**
+     * Default constructor, prints in System.out
+     */
+    public ConsoleAppender() {
+        this(System.out);
+    }
+
+    /**
+     * Secondary constructor
+     * @param out PrintStream where the entries are printed
+     */
+    public ConsoleAppender(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void append(long timeMillis, Log.Level level, String message) {
+        String entry;
+        /* the entry is printed with a single call so that the lines of concurrent entries are not interleaved */
+        synchronized (buffer) {
+            buffer.setLength(0);
+            buffer.append(formatter.format(timeMillis)).append(LINE_SEPARATOR)
+                    .append(level.getLabel()).append(": ").append(message);
+            entry = buffer.toString();
+        }
+        out.println(entry);
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+    }
+}
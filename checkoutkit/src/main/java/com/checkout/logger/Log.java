@@ -1,14 +1,39 @@
 package com.checkout.logger;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-
 /**
- * Class used to log activity in the console
+ * Class used to log activity, the entries are handed to a LogAppender (by default printed in the console from a
+ * background thread so that logging does not slow down the requests)
  */
 public class Log {
 
-    private static Log log = null;
+    /**
+     * Severity of a log entry, entries below the level of the Log are discarded before any string is built
+     */
+    public enum Level {
+        INFO("INFO"),
+        WARN("WARNING"),
+        ERROR("ERROR"),
+        OFF("OFF");
+
+        private final String label;
+
+        Level(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Getter for the label printed before the message
+         * @return String containing the label of the level
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Log log = new Log();
+
+    private volatile Level level = Level.INFO;
+    private volatile LogAppender appender = null;
 
     /*
      * Default empty constructor
@@ -17,52 +42,108 @@ public class Log {
     }
 
     /**
-     * Static method returning the log instance (or creating the log if it is the first call), part of the singleton pattern
+     * Static method returning the log instance, part of the singleton pattern
      * @return unique Log instance
      */
     public static Log getLog() {
-        if (log == null) {
-            log = new Log();
-        }
         return log;
     }
 
+    /**
+     * Getter for the minimum level logged
+     * @return Level below which the entries are discarded
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Changes the minimum level logged
+     * @param level Level below which the entries are discarded, OFF disables logging
+     */
+    public void setLevel(Level level) {
+        if (level == null) throw new IllegalArgumentException("The level cannot be null");
+        this.level = level;
+    }
+
+    /**
+     * Checks if an entry of the given level would be logged, callers building expensive messages check it first
+     * @param level Level of the entry
+     * @return boolean, true if the entry would be logged
+     */
+    public boolean isLoggable(Level level) {
+        return level != Level.OFF && level.compareTo(this.level) >= 0;
+    }
+
+    /**
+     * Getter for the appender, creates the default asynchronous console appender on the first call
+     * @return LogAppender receiving the entries
+     */
+    public LogAppender getAppender() {
+        LogAppender a = appender;
+        if (a == null) {
+            synchronized (this) {
+                a = appender;
+                if (a == null) {
+                    a = new AsyncAppender(new ConsoleAppender());
+                    appender = a;
+                }
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Changes the appender receiving the entries, the previous one is flushed first
+     * @param appender LogAppender receiving the entries from now on
+     */
+    public void setAppender(LogAppender appender) {
+        if (appender == null) throw new IllegalArgumentException("The appender cannot be null");
+        LogAppender previous;
+        synchronized (this) {
+            previous = this.appender;
+            this.appender = appender;
+        }
+        if (previous != null && previous != appender) previous.flush();
+    }
+
     /*
-     * Private method used to print the current date in the console
+     * Hands an entry to the appender if its level is logged
      */
-    private void printDate() {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
-        Date date = new Date();
-        System.out.println(dateFormat.format(date));
+    private void log(Level level, String message) {
+        if (!isLoggable(level)) return;
+        getAppender().append(System.currentTimeMillis(), level, message);
     }
 
     /**
-     * Prints an information message in the console and when it occurred
+     * Logs an information message and when it occurred
      * @param message String containing the message to log
      */
     public void info(String message) {
-        printDate();
-        String toPrint = "INFO: " + message;
-        System.out.println(toPrint);
+        log(Level.INFO, message);
     }
 
     /**
-     * Prints a warning message in the console and when it occurred
+     * Logs a warning message and when it occurred
      * @param message String containing the message to log
      */
     public void warn(String message) {
-        printDate();
-        String toPrint = "WARNING: " + message;
-        System.out.println(toPrint);
+        log(Level.WARN, message);
     }
 
     /**
-     * Prints an error message in the console and when it occurred
+     * Logs an error message and when it occurred
      * @param message String containing the message to log
      */
     public void error(String message) {
-        printDate();
-        String toPrint = "ERROR: " + message;
-        System.out.println(toPrint);
+        log(Level.ERROR, message);
+    }
+
+    /**
+     * Waits until all the entries logged so far have been written
+     */
+    public void flush() {
+        LogAppender a = appender;
+        if (a != null) a.flush();
     }
 }
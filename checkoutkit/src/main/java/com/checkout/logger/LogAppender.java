@@ -0,0 +1,20 @@
+package com.checkout.logger;
+
+/**
+ * Interface of the destinations of the log entries
+ */
+public interface LogAppender {
+
+    /**
+     * Writes a log entry, implementations must be thread safe
+     * @param timeMillis long containing the time of the entry, as returned by System.currentTimeMillis()
+     * @param level Level of the entry
+     * @param message String containing the message logged
+     */
+    void append(long timeMillis, Log.Level level, String message);
+
+    /**
+     * Waits until all the entries appended so far have been written
+     */
+    void flush();
+}
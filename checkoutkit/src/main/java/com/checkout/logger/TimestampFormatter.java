@@ -0,0 +1,49 @@
+package com.checkout.logger;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Thread safe formatter of the log timestamps (yyyy/MM/dd HH:mm:ss). The pattern has a resolution of one second, the
+ * text of the last second formatted is cached so that most entries do not format anything.
+ */
+public class TimestampFormatter {
+
+    private static final String PATTERN = "yyyy/MM/dd HH:mm:ss";
+
+    private final ThreadLocal<SimpleDateFormat> format = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(PATTERN);
+        }
+    };
+
+    private volatile Cached last = new Cached(Long.MIN_VALUE, null);
+
+    /**
+     * Formats a timestamp
+     * @param timeMillis long containing the time, as returned by System.currentTimeMillis()
+     * @return String containing the formatted date
+     */
+    public String format(long timeMillis) {
+        long second = timeMillis / 1000;
+        Cached c = last;
+        if (c.second == second) return c.text;
+        String text = format.get().format(new Date(timeMillis));
+        last = new Cached(second, text);
+        return text;
+    }
+
+    /*
+     * Second and its formatted text, immutable so that it can be published through a volatile field
+     */
+    private static class Cached {
+        final long second;
+        final String text;
+
+        Cached(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
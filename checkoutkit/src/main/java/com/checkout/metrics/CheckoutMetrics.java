@@ -0,0 +1,139 @@
+package com.checkout.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the metrics of the requests sent by CheckoutKit, one EndpointMetrics per endpoint.
+ * Recording is lock-free, snapshots can be read at any time or pushed to the listeners with publish.
+ */
+public class CheckoutMetrics {
+
+    /**
+     * Interface used to export the metrics
+     */
+    public interface Listener {
+
+        /**
+         * Called by publish, on the thread calling it
+         * @param snapshot Snapshot object containing the metrics of all the endpoints
+         */
+        void onSnapshot(Snapshot snapshot);
+    }
+
+    private final ConcurrentHashMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<String, EndpointMetrics>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * Returns the metrics of an endpoint, creating them on the first call
+     * @param name String containing the name of the endpoint
+     * @return EndpointMetrics object of the endpoint
+     */
+    public EndpointMetrics endpoint(String name) {
+        EndpointMetrics m = endpoints.get(name);
+        if (m == null) {
+            EndpointMetrics created = new EndpointMetrics(name);
+            m = endpoints.putIfAbsent(name, created);
+            if (m == null) m = created;
+        }
+        return m;
+    }
+
+    /**
+     * Copies the current state of the metrics
+     * @return Snapshot object containing the metrics of all the endpoints
+     */
+    public Snapshot snapshot() {
+        Map<String, EndpointMetrics.Snapshot> copy = new TreeMap<String, EndpointMetrics.Snapshot>();
+        for (EndpointMetrics m : endpoints.values()) {
+            copy.put(m.getName(), m.snapshot());
+        }
+        return new Snapshot(System.currentTimeMillis(), Collections.unmodifiableMap(copy));
+    }
+
+    /**
+     * Removes all the metrics recorded so far
+     */
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * Adds a listener notified by publish
+     * @param listener Listener object
+     */
+    public void addListener(Listener listener) {
+        if (listener == null) throw new IllegalArgumentException("The listener cannot be null");
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener
+     * @param listener Listener object added before
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Takes a snapshot and hands it to every listener, typically called periodically by the application
+     * @return Snapshot object given to the listeners
+     */
+    public Snapshot publish() {
+        Snapshot snapshot = snapshot();
+        List<RuntimeException> errors = new ArrayList<RuntimeException>();
+        for (Listener l : listeners) {
+            try {
+                l.onSnapshot(snapshot);
+            } catch (RuntimeException e) {
+                errors.add(e);
+            }
+        }
+        if (!errors.isEmpty()) throw errors.get(0);
+        return snapshot;
+    }
+
+    /**
+     * Immutable copy of the metrics of all the endpoints
+     */
+    public static class Snapshot {
+
+        private final long timestamp;
+        private final Map<String, EndpointMetrics.Snapshot> endpoints;
+
+        Snapshot(long timestamp, Map<String, EndpointMetrics.Snapshot> endpoints) {
+            this.timestamp = timestamp;
+            this.endpoints = endpoints;
+        }
+
+        /**
+         * Getter for the time of the snapshot
+         * @return long containing the time the snapshot was taken, as returned by System.currentTimeMillis()
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Getter for the metrics of every endpoint
+         * @return Map of the endpoint names to their metrics
+         */
+        public Map<String, EndpointMetrics.Snapshot> getEndpoints() {
+            return endpoints;
+        }
+
+        /**
+         * Getter for the metrics of one endpoint
+         * @param name String containing the name of the endpoint
+         * @return EndpointMetrics.Snapshot of the endpoint or null if no request was recorded
+         */
+        public EndpointMetrics.Snapshot getEndpoint(String name) {
+            return endpoints.get(name);
+        }
+    }
+}
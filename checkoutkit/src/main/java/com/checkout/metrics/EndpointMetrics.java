@@ -0,0 +1,267 @@
+package com.checkout.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics of the requests sent to one endpoint: latency of each phase, responses by HTTP status and error code,
+ * failures and bytes transferred
+ */
+public class EndpointMetrics {
+
+    /* Statuses outside of [0, MAX_STATUS) are counted under MAX_STATUS */
+    private static final int MAX_STATUS = 600;
+
+    private final String name;
+    private final LatencyHistogram connect = new LatencyHistogram();
+    private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+    private final LatencyHistogram body = new LatencyHistogram();
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final AtomicLongArray statuses = new AtomicLongArray(MAX_STATUS + 1);
+    private final ConcurrentHashMap<String, AtomicLong> errorCodes = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesSentUncompressed = new AtomicLong();
+    private final AtomicLong bytesReceivedUncompressed = new AtomicLong();
+
+    EndpointMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Getter for the name of the endpoint
+     * @return String containing the name of the endpoint
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records a request that received a response
+     * @param connectNanos long containing the time spent opening the connection, in nanoseconds
+     * @param ttfbNanos long containing the time between the connection and the first byte of the response, sending the payload included
+     * @param bodyNanos long containing the time spent reading and parsing the body of the response
+     * @param status int containing the HTTP status of the response
+     * @param errorCode String containing the error code returned by the server, null if there is none
+     * @param sent long containing the number of bytes of the payload
+     * @param received long containing the number of bytes of the body of the response
+     */
+    public void recordResponse(long connectNanos, long ttfbNanos, long bodyNanos, int status, String errorCode, long sent, long received) {
+        recordResponse(connectNanos, ttfbNanos, bodyNanos, status, errorCode, sent, received, sent, received);
+    }
+
+    /**
+     * Records a request that received a response, with compressed bodies
+     * @param connectNanos long containing the time spent opening the connection, in nanoseconds
+     * @param ttfbNanos long containing the time between the connection and the first byte of the response, sending the payload included
+     * @param bodyNanos long containing the time spent reading and parsing the body of the response
+     * @param status int containing the HTTP status of the response
+     * @param errorCode String containing the error code returned by the server, null if there is none
+     * @param sent long containing the number of bytes of the payload, as sent
+     * @param received long containing the number of bytes of the body of the response, as received
+     * @param sentUncompressed long containing the number of bytes of the payload before its compression
+     * @param receivedUncompressed long containing the number of bytes of the body of the response once decoded
+     */
+    public void recordResponse(long connectNanos, long ttfbNanos, long bodyNanos, int status, String errorCode, long sent, long received,
+                               long sentUncompressed, long receivedUncompressed) {
+        connect.record(connectNanos);
+        timeToFirstByte.record(ttfbNanos);
+        body.record(bodyNanos);
+        total.record(connectNanos + ttfbNanos + bodyNanos);
+        statuses.incrementAndGet(status >= 0 && status < MAX_STATUS ? status : MAX_STATUS);
+        if (errorCode != null) {
+            AtomicLong counter = errorCodes.get(errorCode);
+            if (counter == null) {
+                AtomicLong created = new AtomicLong();
+                counter = errorCodes.putIfAbsent(errorCode, created);
+                if (counter == null) counter = created;
+            }
+            counter.incrementAndGet();
+        }
+        bytesSent.addAndGet(sent);
+        bytesReceived.addAndGet(received);
+        bytesSentUncompressed.addAndGet(sentUncompressed);
+        bytesReceivedUncompressed.addAndGet(receivedUncompressed);
+    }
+
+    /**
+     * Records a request that failed before a response could be read
+     * @param elapsedNanos long containing the time spent before the failure, in nanoseconds
+     * @param sent long containing the number of bytes of the payload written
+     * @param received long containing the number of bytes of the response read
+     */
+    public void recordFailure(long elapsedNanos, long sent, long received) {
+        failures.incrementAndGet();
+        total.record(elapsedNanos);
+        bytesSent.addAndGet(sent);
+        bytesReceived.addAndGet(received);
+        bytesSentUncompressed.addAndGet(sent);
+        bytesReceivedUncompressed.addAndGet(received);
+    }
+
+    /**
+     * Copies the distribution of the total time of the requests only, cheaper than a full snapshot
+     * @return LatencyHistogram.Snapshot object, unaffected by the requests recorded afterwards
+     */
+    public LatencyHistogram.Snapshot totalSnapshot() {
+        return total.snapshot();
+    }
+
+    /**
+     * Copies the current state of the metrics
+     * @return Snapshot object, unaffected by the requests recorded afterwards
+     */
+    public Snapshot snapshot() {
+        Map<Integer, Long> statusCounts = new TreeMap<Integer, Long>();
+        for (int i = 0; i <= MAX_STATUS; i++) {
+            long c = statuses.get(i);
+            if (c != 0) statusCounts.put(i == MAX_STATUS ? -1 : i, c);
+        }
+        Map<String, Long> errorCounts = new HashMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> e : errorCodes.entrySet()) {
+            errorCounts.put(e.getKey(), e.getValue().get());
+        }
+        return new Snapshot(name, connect.snapshot(), timeToFirstByte.snapshot(), body.snapshot(), total.snapshot(),
+                Collections.unmodifiableMap(statusCounts), Collections.unmodifiableMap(errorCounts),
+                failures.get(), bytesSent.get(), bytesReceived.get(), bytesSentUncompressed.get(), bytesReceivedUncompressed.get());
+    }
+
+    /**
+     * Immutable copy of the metrics of an endpoint
+     */
+    public static class Snapshot {
+
+        private final String name;
+        private final LatencyHistogram.Snapshot connect;
+        private final LatencyHistogram.Snapshot timeToFirstByte;
+        private final LatencyHistogram.Snapshot body;
+        private final LatencyHistogram.Snapshot total;
+        private final Map<Integer, Long> statusCounts;
+        private final Map<String, Long> errorCodeCounts;
+        private final long failures;
+        private final long bytesSent;
+        private final long bytesReceived;
+        private final long bytesSentUncompressed;
+        private final long bytesReceivedUncompressed;
+
+        Snapshot(String name, LatencyHistogram.Snapshot connect, LatencyHistogram.Snapshot timeToFirstByte,
+                 LatencyHistogram.Snapshot body, LatencyHistogram.Snapshot total, Map<Integer, Long> statusCounts,
+                 Map<String, Long> errorCodeCounts, long failures, long bytesSent, long bytesReceived,
+                 long bytesSentUncompressed, long bytesReceivedUncompressed) {
+            this.name = name;
+            this.connect = connect;
+            this.timeToFirstByte = timeToFirstByte;
+            this.body = body;
+            this.total = total;
+            this.statusCounts = statusCounts;
+            this.errorCodeCounts = errorCodeCounts;
+            this.failures = failures;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+            this.bytesSentUncompressed = bytesSentUncompressed;
+            this.bytesReceivedUncompressed = bytesReceivedUncompressed;
+        }
+
+        /**
+         * Getter for the name of the endpoint
+         * @return String containing the name of the endpoint
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Getter for the connection latency
+         * @return LatencyHistogram.Snapshot of the time spent opening the connections
+         */
+        public LatencyHistogram.Snapshot getConnect() {
+            return connect;
+        }
+
+        /**
+         * Getter for the time to first byte
+         * @return LatencyHistogram.Snapshot of the time between the connection and the first byte of the response
+         */
+        public LatencyHistogram.Snapshot getTimeToFirstByte() {
+            return timeToFirstByte;
+        }
+
+        /**
+         * Getter for the body read latency
+         * @return LatencyHistogram.Snapshot of the time spent reading and parsing the responses
+         */
+        public LatencyHistogram.Snapshot getBody() {
+            return body;
+        }
+
+        /**
+         * Getter for the total latency
+         * @return LatencyHistogram.Snapshot of the duration of the requests, failed ones included
+         */
+        public LatencyHistogram.Snapshot getTotal() {
+            return total;
+        }
+
+        /**
+         * Getter for the number of responses by HTTP status
+         * @return Map of the HTTP statuses to the number of responses, -1 groups the statuses out of range
+         */
+        public Map<Integer, Long> getStatusCounts() {
+            return statusCounts;
+        }
+
+        /**
+         * Getter for the number of responses by error code
+         * @return Map of the error codes returned by the server to the number of responses
+         */
+        public Map<String, Long> getErrorCodeCounts() {
+            return errorCodeCounts;
+        }
+
+        /**
+         * Getter for the number of requests that did not receive a response
+         * @return long containing the number of failures
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * Getter for the number of bytes sent
+         * @return long containing the number of bytes of the payloads, as sent on the network
+         */
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        /**
+         * Getter for the number of bytes received
+         * @return long containing the number of bytes of the responses, as received from the network
+         */
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        /**
+         * Getter for the number of bytes sent before compression, compared with getBytesSent to measure the savings
+         * @return long containing the number of bytes of the payloads before their compression
+         */
+        public long getBytesSentUncompressed() {
+            return bytesSentUncompressed;
+        }
+
+        /**
+         * Getter for the number of bytes received once decoded, compared with getBytesReceived to measure the savings
+         * @return long containing the number of bytes of the responses once decoded
+         */
+        public long getBytesReceivedUncompressed() {
+            return bytesReceivedUncompressed;
+        }
+    }
+}
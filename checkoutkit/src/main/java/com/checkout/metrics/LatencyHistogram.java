@@ -0,0 +1,133 @@
+package com.checkout.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations, with a resolution of one microsecond. Each power of two is split in four buckets,
+ * so the percentiles are exact to within 25%. Recording only increments atomic counters and never allocates.
+ */
+public class LatencyHistogram {
+
+    /* Number of buckets per power of two, as a number of bits */
+    private static final int SUB_BITS = 2;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration
+     * @param nanos long containing the duration in nanoseconds, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long micros = nanos <= 0 ? 0 : nanos / 1000;
+        buckets.incrementAndGet(bucketOf(micros));
+        sum.addAndGet(micros);
+        long current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Copies the current state of the histogram
+     * @return Snapshot object, unaffected by the values recorded afterwards
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, sum.get(), max.get());
+    }
+
+    /*
+     * Index of the bucket containing a value in microseconds
+     */
+    static int bucketOf(long micros) {
+        if (micros < SUB_COUNT) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return SUB_COUNT + (exponent - SUB_BITS) * SUB_COUNT + sub;
+    }
+
+    /*
+     * Highest value in microseconds contained in a bucket
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int exponent = (bucket - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+        long sub = (bucket - SUB_COUNT) % SUB_COUNT;
+        long lower = (SUB_COUNT + sub) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Immutable copy of a histogram
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Getter for the number of values recorded
+         * @return long containing the number of values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Getter for the mean
+         * @param unit TimeUnit of the result
+         * @return double containing the mean of the values, 0 if there is none
+         */
+        public double getMean(TimeUnit unit) {
+            return count == 0 ? 0 : (double) sum / count * TimeUnit.MICROSECONDS.toNanos(1) / unit.toNanos(1);
+        }
+
+        /**
+         * Getter for the maximum
+         * @param unit TimeUnit of the result
+         * @return long containing the highest value recorded
+         */
+        public long getMax(TimeUnit unit) {
+            return unit.convert(max, TimeUnit.MICROSECONDS);
+        }
+
+        /**
+         * Getter for a percentile
+         * @param percentile double between 0 and 100
+         * @param unit TimeUnit of the result
+         * @return long containing the value below which the given percentage of the values fall, 0 if there is none
+         */
+        public long getPercentile(double percentile, TimeUnit unit) {
+            if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("The percentile must be between 0 and 100");
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            if (rank < 1) rank = 1;
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return unit.convert(Math.min(upperBoundOf(i), max), TimeUnit.MICROSECONDS);
+            }
+            return unit.convert(max, TimeUnit.MICROSECONDS);
+        }
+    }
+}
@@ -4,6 +4,11 @@ import com.checkout.CardValidator;
 import com.checkout.CardValidator.Cards;
 import com.checkout.exceptions.CardException;
 import com.checkout.exceptions.CardException.CardExceptionType;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 
 /**
  * Class containing the card's details before sending them to createCardToken
@@ -17,6 +22,12 @@ public class Card {
     private String cvv;
     private CustDetails billingDetails;
 
+    /*
+     * Constructor used by the JSON adapter, the fields are set as they are read
+     */
+    private Card() {
+    }
+
     /**
      * Default constructor
      * @param cardNumber String containing the card's number
@@ -41,10 +52,8 @@ public class Card {
      * @throws CardException if any of the parameter is not valid
      */
     public Card(String cardNumber, String name, String expMonth, String expYear, String cvv, CustDetails billingDetails) throws CardException {
-        if (!CardValidator.validateCardNumber(cardNumber)) throw new CardException(CardExceptionType.INVALID_NUMBER);
-        if (!CardValidator.validateExpiryDate(expMonth, expYear)) throw new CardException(CardExceptionType.INVALID_EXPIRY_DATE);
-        Cards card = CardValidator.getCardType(cardNumber);
-        if (!CardValidator.validateCVV(cvv, card)) throw new CardException(CardExceptionType.INVALID_CVV);
+        CardExceptionType error = check(cardNumber, expMonth, expYear, cvv);
+        if (error != null) throw CardException.forType(error);
 
         this.number = CardValidator.sanitizeEntry(cardNumber, true);
         this.name = name;
@@ -54,13 +63,52 @@ public class Card {
         this.billingDetails = billingDetails;
     }
 
+    /**
+     * Creates a card without throwing any exception, invalid details cost no allocation
+     * @param cardNumber String containing the card's number
+     * @param name String containing the card's owner name
+     * @param expMonth String containing the expiry month
+     * @param expYear String containing the expiry year
+     * @param cvv String containing the CVV
+     * @param billingDetails CustDetails object containing the customer details, can be null
+     * @return Result object containing the card or the first detail that is not valid
+     */
+    public static Result create(String cardNumber, String name, String expMonth, String expYear, String cvv, CustDetails billingDetails) {
+        CardExceptionType error = check(cardNumber, expMonth, expYear, cvv);
+        if (error != null) return Result.REJECTED[error.ordinal()];
+        Card card = new Card();
+        card.number = CardValidator.sanitizeEntry(cardNumber, true);
+        card.name = name;
+        card.expiryMonth = expMonth;
+        card.expiryYear = expYear;
+        card.cvv = cvv;
+        card.billingDetails = billingDetails;
+        return new Result(card, null);
+    }
+
+    /*
+     * Validates the card's details in the order of the constructor
+     * @return CardExceptionType of the first detail that is not valid, null if they are all valid
+     */
+    private static CardExceptionType check(String cardNumber, String expMonth, String expYear, String cvv) {
+        if (!CardValidator.validateCardNumber(cardNumber)) return CardExceptionType.INVALID_NUMBER;
+        if (expMonth == null || expYear == null || (expYear.length() != 4 && expYear.length() != 2)) return CardExceptionType.INVALID_EXPIRY_DATE;
+        /* parsed without the NumberFormatException and the stack trace printed by validateExpiryDate(String, String) */
+        if (!CardValidator.validateExpiryDate(CardValidator.parseExpiryField(expMonth), CardValidator.parseExpiryField(expYear))) {
+            return CardExceptionType.INVALID_EXPIRY_DATE;
+        }
+        Cards card = CardValidator.getCardType(cardNumber);
+        if (!CardValidator.validateCVV(cvv, card)) return CardExceptionType.INVALID_CVV;
+        return null;
+    }
+
     /**
      * Setter for the card number
      * @param number String containing the new card number
      * @throws CardException if the card number is not valid
      */
     public void setNumber(String number) throws CardException {
-        if (!CardValidator.validateCardNumber(number)) throw new CardException(CardExceptionType.INVALID_NUMBER);
+        if (!CardValidator.validateCardNumber(number)) throw CardException.forType(CardExceptionType.INVALID_NUMBER);
         else this.number = CardValidator.sanitizeEntry(number, true);
     }
 
@@ -79,7 +127,7 @@ public class Card {
      * @throws CardException if the expiry date is not valid
      */
     public void setExpiryDate(String expiryMonth, String expiryYear) throws CardException {
-        if (!CardValidator.validateExpiryDate(expiryMonth, expiryYear)) throw new CardException(CardExceptionType.INVALID_EXPIRY_DATE);
+        if (!CardValidator.validateExpiryDate(expiryMonth, expiryYear)) throw CardException.forType(CardExceptionType.INVALID_EXPIRY_DATE);
         else {
             this.expiryMonth = expiryMonth;
             this.expiryYear = expiryYear;
@@ -95,9 +143,9 @@ public class Card {
         if (this.number != null) {
             Cards card = CardValidator.getCardType(this.number);
             if (!CardValidator.validateCVV(cvv, card))
-                throw new CardException(CardExceptionType.INVALID_CVV);
+                throw CardException.forType(CardExceptionType.INVALID_CVV);
             else this.cvv = cvv;
-        } else throw new CardException(CardExceptionType.INVALID_NUMBER);
+        } else throw CardException.forType(CardExceptionType.INVALID_NUMBER);
     }
 
     /**
@@ -107,4 +155,86 @@ public class Card {
     public void setBillingDetails(CustDetails billingDetails) {
         this.billingDetails = billingDetails;
     }
+
+    /**
+     * Class containing the result of Card.create, either the card or the reason why it was rejected
+     */
+    public static class Result {
+
+        /* Results of the rejected cards, one per type, they do not depend on the input */
+        private static final Result[] REJECTED = new Result[CardExceptionType.values().length];
+
+        static {
+            for (CardExceptionType t : CardExceptionType.values()) REJECTED[t.ordinal()] = new Result(null, t);
+        }
+
+        private final Card card;
+        private final CardExceptionType error;
+
+        private Result(Card card, CardExceptionType error) {
+            this.card = card;
+            this.error = error;
+        }
+
+        /**
+         * Checks if the card was created
+         * @return boolean, true if all the details are valid
+         */
+        public boolean isValid() {
+            return card != null;
+        }
+
+        /**
+         * Getter for the card
+         * @return Card object or null if a detail is not valid
+         */
+        public Card getCard() {
+            return card;
+        }
+
+        /**
+         * Getter for the reason why the card was rejected
+         * @return CardExceptionType of the first detail that is not valid or null if the card was created
+         */
+        public CardExceptionType getError() {
+            return error;
+        }
+    }
+
+    /*
+     * Maps a Card to and from JSON without reflection, see ModelAdapterFactory
+     */
+    static final class Adapter extends TypeAdapter<Card> {
+        @Override
+        public void write(JsonWriter out, Card card) throws IOException {
+            out.beginObject();
+            out.name("number").value(card.number);
+            out.name("name").value(card.name);
+            out.name("expiryMonth").value(card.expiryMonth);
+            out.name("expiryYear").value(card.expiryYear);
+            out.name("cvv").value(card.cvv);
+            out.name("billingDetails");
+            ModelAdapterFactory.CUST_DETAILS.write(out, card.billingDetails);
+            out.endObject();
+        }
+
+        @Override
+        public Card read(JsonReader in) throws IOException {
+            Card card = new Card();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "number": card.number = ModelAdapterFactory.readString(in); break;
+                    case "name": card.name = ModelAdapterFactory.readString(in); break;
+                    case "expiryMonth": card.expiryMonth = ModelAdapterFactory.readString(in); break;
+                    case "expiryYear": card.expiryYear = ModelAdapterFactory.readString(in); break;
+                    case "cvv": card.cvv = ModelAdapterFactory.readString(in); break;
+                    case "billingDetails": card.billingDetails = ModelAdapterFactory.CUST_DETAILS.read(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return card;
+        }
+    }
 }
@@ -1,5 +1,11 @@
 package com.checkout.models;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
 /**
  * Class used to represent a card provider
  */
@@ -8,6 +14,12 @@ public class CardProvider {
     private String name;
     private boolean cvvRequired;
 
+    /*
+     * Constructor used by the JSON adapter, the fields are set as they are read
+     */
+    private CardProvider() {
+    }
+
     /**
      * Default constructor
      * @param id String containing the id of the card provider
@@ -37,4 +49,34 @@ public class CardProvider {
         return !(name != null ? !name.equals(that.name) : that.name != null);
 
     }
+
+    /*
+     * Maps a CardProvider to and from JSON without reflection, see ModelAdapterFactory
+     */
+    static final class Adapter extends TypeAdapter<CardProvider> {
+        @Override
+        public void write(JsonWriter out, CardProvider provider) throws IOException {
+            out.beginObject();
+            out.name("id").value(provider.id);
+            out.name("name").value(provider.name);
+            out.name("cvvRequired").value(provider.cvvRequired);
+            out.endObject();
+        }
+
+        @Override
+        public CardProvider read(JsonReader in) throws IOException {
+            CardProvider provider = new CardProvider();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": provider.id = ModelAdapterFactory.readString(in); break;
+                    case "name": provider.name = ModelAdapterFactory.readString(in); break;
+                    case "cvvRequired": provider.cvvRequired = ModelAdapterFactory.readBoolean(in, provider.cvvRequired); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return provider;
+        }
+    }
 }
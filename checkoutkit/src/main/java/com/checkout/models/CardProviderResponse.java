@@ -1,5 +1,10 @@
 package com.checkout.models;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -11,6 +16,12 @@ public class CardProviderResponse {
     private int count;
     private List<CardProvider> data;
 
+    /*
+     * Constructor used by the JSON adapter, the fields are set as they are read
+     */
+    private CardProviderResponse() {
+    }
+
     /**
      * Default constructor
      * @param object String containing type of the JSON data
@@ -31,4 +42,34 @@ public class CardProviderResponse {
         return data;
     }
 
+    /*
+     * Maps a CardProviderResponse to and from JSON without reflection, see ModelAdapterFactory
+     */
+    static final class Adapter extends TypeAdapter<CardProviderResponse> {
+        @Override
+        public void write(JsonWriter out, CardProviderResponse response) throws IOException {
+            out.beginObject();
+            out.name("object").value(response.object);
+            out.name("count").value(response.count);
+            out.name("data");
+            ModelAdapterFactory.writeList(out, response.data, ModelAdapterFactory.CARD_PROVIDER);
+            out.endObject();
+        }
+
+        @Override
+        public CardProviderResponse read(JsonReader in) throws IOException {
+            CardProviderResponse response = new CardProviderResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "object": response.object = ModelAdapterFactory.readString(in); break;
+                    case "count": response.count = ModelAdapterFactory.readInt(in, response.count); break;
+                    case "data": response.data = ModelAdapterFactory.readList(in, ModelAdapterFactory.CARD_PROVIDER); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return response;
+        }
+    }
 }
@@ -1,6 +1,10 @@
 package com.checkout.models;
 
-import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 
 /**
  * Class instantiated when the createCardToken method of CheckoutKit is called, it contains all the information returned by Checkout
@@ -17,6 +21,12 @@ public class CardToken {
     private String fingerprint;
     private String name;
 
+    /*
+     * Constructor used by the JSON adapter, the fields are set as they are read
+     */
+    private CardToken() {
+    }
+
     /**
      * Default constructor for a CardToken
      * @param expiryMonth String containing the expiring month of the card
@@ -108,8 +118,7 @@ public class CardToken {
      * @return String containing the Json representation
      */
     public String getJson() {
-        Gson gson = new Gson();
-        return gson.toJson(this);
+        return Json.toJson(this);
     }
 
     /**
@@ -140,4 +149,45 @@ public class CardToken {
         if (name != null ? !name.equals(cardToken1.name) : cardToken1.name != null) return false;
         return true;
     }
+
+    /*
+     * Maps a CardToken to and from JSON without reflection, see ModelAdapterFactory
+     */
+    static final class Adapter extends TypeAdapter<CardToken> {
+        @Override
+        public void write(JsonWriter out, CardToken token) throws IOException {
+            out.beginObject();
+            out.name("expiryMonth").value(token.expiryMonth);
+            out.name("expiryYear").value(token.expiryYear);
+            out.name("billDetails");
+            ModelAdapterFactory.CUST_DETAILS.write(out, token.billDetails);
+            out.name("id").value(token.id);
+            out.name("last4").value(token.last4);
+            out.name("paymentMethod").value(token.paymentMethod);
+            out.name("fingerprint").value(token.fingerprint);
+            out.name("name").value(token.name);
+            out.endObject();
+        }
+
+        @Override
+        public CardToken read(JsonReader in) throws IOException {
+            CardToken token = new CardToken();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "expiryMonth": token.expiryMonth = ModelAdapterFactory.readString(in); break;
+                    case "expiryYear": token.expiryYear = ModelAdapterFactory.readString(in); break;
+                    case "billDetails": token.billDetails = ModelAdapterFactory.CUST_DETAILS.read(in); break;
+                    case "id": token.id = ModelAdapterFactory.readString(in); break;
+                    case "last4": token.last4 = ModelAdapterFactory.readString(in); break;
+                    case "paymentMethod": token.paymentMethod = ModelAdapterFactory.readString(in); break;
+                    case "fingerprint": token.fingerprint = ModelAdapterFactory.readString(in); break;
+                    case "name": token.name = ModelAdapterFactory.readString(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return token;
+        }
+    }
 }
@@ -1,6 +1,10 @@
 package com.checkout.models;
 
-import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
 
 /**
  * Class used for receiving REST messages, it has the same format as the expected response. We extract the useful information based on this.
@@ -12,6 +16,12 @@ public class CardTokenResponse {
     private boolean used;
     private CardToken card;
 
+    /*
+     * Constructor used by the JSON adapter, the fields are set as they are read
+     */
+    private CardTokenResponse() {
+    }
+
     /**
      * Default constructor
      * @param id String containing the card token of the card
@@ -34,8 +44,7 @@ public class CardTokenResponse {
      * @return CTResponse instance
      */
     public static CardTokenResponse fromJson(String json) {
-        Gson gson = new Gson();
-        return gson.fromJson(json, CardTokenResponse.class);
+        return Json.fromJson(json, CardTokenResponse.class);
     }
 
     /**
@@ -59,7 +68,41 @@ public class CardTokenResponse {
      * @return String containing a JSON representation for this instance
      */
     public String getJson() {
-        Gson gson = new Gson();
-        return gson.toJson(this);
+        return Json.toJson(this);
+    }
+
+    /*
+     * Maps a CardTokenResponse to and from JSON without reflection, see ModelAdapterFactory
+     */
+    static final class Adapter extends TypeAdapter<CardTokenResponse> {
+        @Override
+        public void write(JsonWriter out, CardTokenResponse response) throws IOException {
+            out.beginObject();
+            out.name("id").value(response.id);
+            out.name("liveMode").value(response.liveMode);
+            out.name("created").value(response.created);
+            out.name("used").value(response.used);
+            out.name("card");
+            ModelAdapterFactory.CARD_TOKEN.write(out, response.card);
+            out.endObject();
+        }
+
+        @Override
+        public CardTokenResponse read(JsonReader in) throws IOException {
+            CardTokenResponse response = new CardTokenResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": response.id = ModelAdapterFactory.readString(in); break;
+                    case "liveMode": response.liveMode = ModelAdapterFactory.readBoolean(in, response.liveMode); break;
+                    case "created": response.created = ModelAdapterFactory.readString(in); break;
+                    case "used": response.used = ModelAdapterFactory.readBoolean(in, response.used); break;
+                    case "card": response.card = ModelAdapterFactory.CARD_TOKEN.read(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return response;
+        }
     }
 }
@@ -1,5 +1,12 @@
 package com.checkout.models;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
 /**
  * Class used to represent customer's details
  */
@@ -13,6 +20,12 @@ public class CustDetails {
     private String state;
     private Phone phone;
 
+    /*
+     * Constructor used by the JSON adapter, the fields are set as they are read
+     */
+    private CustDetails() {
+    }
+
     /**
      * Default constructor
      * @param address1 String containing the first line of the customer's address
@@ -165,4 +178,78 @@ public class CustDetails {
 
         }
     }
-}
\ No newline at end of file
+
+    /*
+     * Maps a CustDetails to and from JSON without reflection, see ModelAdapterFactory
+     */
+    static final class Adapter extends TypeAdapter<CustDetails> {
+        @Override
+        public void write(JsonWriter out, CustDetails details) throws IOException {
+            out.beginObject();
+            out.name("address1").value(details.address1);
+            out.name("address2").value(details.address2);
+            out.name("postCode").value(details.postCode);
+            out.name("country").value(details.country);
+            out.name("city").value(details.city);
+            out.name("state").value(details.state);
+            out.name("phone");
+            writePhone(out, details.phone);
+            out.endObject();
+        }
+
+        @Override
+        public CustDetails read(JsonReader in) throws IOException {
+            CustDetails details = new CustDetails();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "address1": details.address1 = ModelAdapterFactory.readString(in); break;
+                    case "address2": details.address2 = ModelAdapterFactory.readString(in); break;
+                    case "postCode": details.postCode = ModelAdapterFactory.readString(in); break;
+                    case "country": details.country = ModelAdapterFactory.readString(in); break;
+                    case "city": details.city = ModelAdapterFactory.readString(in); break;
+                    case "state": details.state = ModelAdapterFactory.readString(in); break;
+                    case "phone": details.phone = readPhone(in, details); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return details;
+        }
+
+        /*
+         * Writes the phone of the customer, an object with the country code and the number
+         */
+        private static void writePhone(JsonWriter out, Phone phone) throws IOException {
+            if (phone == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("countryCode").value(phone.countryCode);
+            out.name("number").value(phone.number);
+            out.endObject();
+        }
+
+        /*
+         * Reads the phone of the customer, Phone being an inner class it is created from its CustDetails
+         */
+        private static Phone readPhone(JsonReader in, CustDetails details) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Phone phone = details.new Phone(null, null);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "countryCode": phone.countryCode = ModelAdapterFactory.readString(in); break;
+                    case "number": phone.number = ModelAdapterFactory.readString(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return phone;
+        }
+    }
+}
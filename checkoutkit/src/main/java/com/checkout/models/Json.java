@@ -0,0 +1,79 @@
+package com.checkout.models;
+
+import com.checkout.httpconnector.ResponseError;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.util.Collections;
+
+/**
+ * Serializer shared by the models, CheckoutKit and its transports. It holds a single Gson instance, configured with the
+ * adapters of ModelAdapterFactory: Gson is thread-safe and caches the adapters it creates, so sharing one instance keeps
+ * the per-call cost of the JSON mapping flat instead of rebuilding the cache on every call.
+ */
+public final class Json {
+
+    private static final Gson GSON = new GsonBuilder().registerTypeAdapterFactory(new ModelAdapterFactory()).create();
+    private static volatile boolean warm = false;
+
+    private Json() {
+    }
+
+    /**
+     * Getter for the shared Gson instance
+     * @return Gson object mapping the models without reflection
+     */
+    public static Gson gson() {
+        return GSON;
+    }
+
+    /**
+     * Returns the JSON representation of an object
+     * @param src Object to be serialized
+     * @return String containing the JSON representation
+     */
+    public static String toJson(Object src) {
+        return GSON.toJson(src);
+    }
+
+    /**
+     * Creates an object from its JSON representation
+     * @param json String containing the JSON representation
+     * @param type Class of the object to be created
+     * @return object of the given type, null if json is null or empty
+     */
+    public static <T> T fromJson(String json, Class<T> type) {
+        return GSON.fromJson(json, type);
+    }
+
+    /**
+     * Creates the adapters of all the models and maps a sample of them once, so that the classes used by the JSON mapping
+     * are loaded before the first request. Only the first call does anything.
+     */
+    public static void warmUp() {
+        if (warm) return;
+        GSON.getAdapter(Card.class);
+        GSON.getAdapter(CustDetails.class);
+        GSON.getAdapter(CardToken.class);
+        GSON.getAdapter(CardTokenResponse.class);
+        GSON.getAdapter(CardProvider.class);
+        GSON.getAdapter(CardProviderResponse.class);
+        GSON.getAdapter(ResponseError.class);
+
+        CustDetails details = new CustDetails("", "", "", "", "", "", "", "");
+        CardToken token = new CardToken("", "", details, "", "", "", "", "");
+        GSON.fromJson(GSON.toJson(new CardTokenResponse("", false, "", false, token)), CardTokenResponse.class);
+        CardProvider provider = new CardProvider("", "", false);
+        GSON.fromJson(GSON.toJson(new CardProviderResponse("", 1, Collections.singletonList(provider))), CardProviderResponse.class);
+        GSON.fromJson(GSON.toJson(new ResponseError("", "", "", Collections.singletonList(""))), ResponseError.class);
+        warm = true;
+    }
+
+    /**
+     * Checks if warmUp was called
+     * @return boolean, true if the JSON mapping is warmed up
+     */
+    public static boolean isWarm() {
+        return warm;
+    }
+}
@@ -0,0 +1,170 @@
+package com.checkout.models;
+
+import com.checkout.httpconnector.ResponseError;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TypeAdapterFactory mapping the models exchanged with the server without reflection. The adapters write the same JSON
+ * as the reflective mapping of Gson (fields in declaration order, null fields omitted) and read it the same way (unknown
+ * fields ignored, missing fields left to their default value), so they can be registered on any Gson instance:
+ *
+ *     new GsonBuilder().registerTypeAdapterFactory(new ModelAdapterFactory()).create()
+ *
+ * Only the exact model classes are mapped, subclasses keep the reflective mapping.
+ */
+public final class ModelAdapterFactory implements TypeAdapterFactory {
+
+    static final TypeAdapter<Card> CARD = new Card.Adapter().nullSafe();
+    static final TypeAdapter<CustDetails> CUST_DETAILS = new CustDetails.Adapter().nullSafe();
+    static final TypeAdapter<CardToken> CARD_TOKEN = new CardToken.Adapter().nullSafe();
+    static final TypeAdapter<CardTokenResponse> CARD_TOKEN_RESPONSE = new CardTokenResponse.Adapter().nullSafe();
+    static final TypeAdapter<CardProvider> CARD_PROVIDER = new CardProvider.Adapter().nullSafe();
+    static final TypeAdapter<CardProviderResponse> CARD_PROVIDER_RESPONSE = new CardProviderResponse.Adapter().nullSafe();
+    static final TypeAdapter<ResponseError> RESPONSE_ERROR = new ResponseErrorAdapter().nullSafe();
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> raw = type.getRawType();
+        if (raw == Card.class) return (TypeAdapter<T>) CARD;
+        if (raw == CustDetails.class) return (TypeAdapter<T>) CUST_DETAILS;
+        if (raw == CardToken.class) return (TypeAdapter<T>) CARD_TOKEN;
+        if (raw == CardTokenResponse.class) return (TypeAdapter<T>) CARD_TOKEN_RESPONSE;
+        if (raw == CardProvider.class) return (TypeAdapter<T>) CARD_PROVIDER;
+        if (raw == CardProviderResponse.class) return (TypeAdapter<T>) CARD_PROVIDER_RESPONSE;
+        if (raw == ResponseError.class) return (TypeAdapter<T>) RESPONSE_ERROR;
+        return null;
+    }
+
+    /*
+     * Reads a String field, numbers and booleans are read as their text like Gson does
+     */
+    static String readString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) return Boolean.toString(in.nextBoolean());
+        return in.nextString();
+    }
+
+    /*
+     * Reads a boolean field, a null value leaves the field to its current value like Gson does
+     */
+    static boolean readBoolean(JsonReader in, boolean current) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return current;
+        }
+        if (token == JsonToken.STRING) return Boolean.parseBoolean(in.nextString());
+        return in.nextBoolean();
+    }
+
+    /*
+     * Reads an int field, a null value leaves the field to its current value like Gson does
+     */
+    static int readInt(JsonReader in, int current) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return current;
+        }
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /*
+     * Writes a list with the given adapter for its elements
+     */
+    static <E> void writeList(JsonWriter out, List<E> list, TypeAdapter<E> adapter) throws IOException {
+        if (list == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray();
+        for (E e : list) {
+            adapter.write(out, e);
+        }
+        out.endArray();
+    }
+
+    /*
+     * Reads a list with the given adapter for its elements, into an ArrayList like Gson does
+     */
+    static <E> List<E> readList(JsonReader in, TypeAdapter<E> adapter) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<E> list = new ArrayList<E>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(adapter.read(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    /*
+     * Adapter of the String elements of a list
+     */
+    private static final TypeAdapter<String> STRING = new TypeAdapter<String>() {
+        @Override
+        public void write(JsonWriter out, String value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public String read(JsonReader in) throws IOException {
+            return readString(in);
+        }
+    };
+
+    /*
+     * ResponseError belongs to the httpconnector package, its fields are public so its adapter lives here
+     */
+    private static final class ResponseErrorAdapter extends TypeAdapter<ResponseError> {
+        @Override
+        public void write(JsonWriter out, ResponseError error) throws IOException {
+            out.beginObject();
+            out.name("errorCode").value(error.errorCode);
+            out.name("message").value(error.message);
+            out.name("eventId").value(error.eventId);
+            out.name("errors");
+            writeList(out, error.errors, STRING);
+            out.endObject();
+        }
+
+        @Override
+        public ResponseError read(JsonReader in) throws IOException {
+            ResponseError error = new ResponseError(null, null, null, null);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "errorCode": error.errorCode = readString(in); break;
+                    case "message": error.message = readString(in); break;
+                    case "eventId": error.eventId = readString(in); break;
+                    case "errors": error.errors = readList(in, STRING); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return error;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.checkout.resilience;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class capping the number of calls in flight at the same time. A call arriving when the cap is reached is rejected
+ * immediately rather than queued, so that a degraded server does not hold more and more threads of the application.
+ */
+public class Bulkhead {
+
+    /* Default maximum number of calls in flight */
+    public static final int DEFAULT_MAX_CONCURRENT_CALLS = 64;
+
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final Semaphore permits;
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile ResilienceListener listener = null;
+
+    /**
+     * Default constructor
+     * @param name String containing the name of the bulkhead, reported to the listener
+     */
+    public Bulkhead(String name) {
+        this(name, DEFAULT_MAX_CONCURRENT_CALLS);
+    }
+
+    /**
+     * Secondary constructor
+     * @param name String containing the name of the bulkhead, reported to the listener
+     * @param maxConcurrentCalls int containing the maximum number of calls in flight
+     */
+    public Bulkhead(String name, int maxConcurrentCalls) {
+        if (maxConcurrentCalls < 1) throw new IllegalArgumentException("maxConcurrentCalls must be positive");
+        this.name = name;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.permits = new Semaphore(maxConcurrentCalls);
+    }
+
+    /**
+     * Setter for the listener
+     * @param listener ResilienceListener object notified when a call is rejected, null for none
+     */
+    public void setListener(ResilienceListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Getter for the name
+     * @return String containing the name of the bulkhead
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for the maximum number of calls in flight
+     * @return int containing the maximum number of calls in flight
+     */
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    /**
+     * Getter for the number of calls in flight
+     * @return int containing the number of calls that acquired a permit and did not release it yet
+     */
+    public int getInFlight() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+
+    /**
+     * Getter for the number of calls rejected
+     * @return long containing the number of calls rejected since the creation of the bulkhead
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Acquires a permit without waiting
+     * @return boolean, true if the call can proceed, it must then call release once it is over
+     */
+    public boolean tryAcquire() {
+        if (permits.tryAcquire()) return true;
+        rejected.incrementAndGet();
+        ResilienceListener l = listener;
+        if (l != null) l.onBulkheadFull(this);
+        return false;
+    }
+
+    /**
+     * Gives back the permit of a call that is over
+     */
+    public void release() {
+        permits.release();
+    }
+}
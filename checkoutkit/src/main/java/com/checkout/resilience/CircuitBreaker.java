@@ -0,0 +1,245 @@
+package com.checkout.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker guarding one endpoint. It records the outcome of the last calls in a sliding window:
+ * - CLOSED: calls go through. When the rate of failed or slow calls of the window reaches its threshold, the circuit opens,
+ * - OPEN: calls are rejected without reaching the server. After the open duration the circuit becomes half-open,
+ * - HALF_OPEN: a few probe calls go through, the others are rejected. Once the probes are over the circuit closes if
+ *   their failure and slow call rates are below the thresholds and opens again otherwise.
+ * A call fails when it raises an exception or gets a 429 or 5xx response, it is slow when it lasts longer than the slow
+ * call duration.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Enum containing the states of a circuit breaker
+     */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /* Default number of calls in the sliding window */
+    public static final int DEFAULT_WINDOW_SIZE = 50;
+    /* Default number of calls recorded before the rates are evaluated */
+    public static final int DEFAULT_MINIMUM_CALLS = 10;
+    /* Default failure rate opening the circuit, in percent */
+    public static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    /* Default slow call rate opening the circuit, in percent */
+    public static final int DEFAULT_SLOW_CALL_RATE_THRESHOLD = 80;
+    /* Default duration above which a call is slow, in milliseconds */
+    public static final long DEFAULT_SLOW_CALL_DURATION = 5000;
+    /* Default time during which an open circuit rejects the calls, in milliseconds */
+    public static final long DEFAULT_OPEN_DURATION = 30000;
+    /* Default number of probe calls of a half-open circuit */
+    public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+    private final String name;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallDurationNanos;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private volatile ResilienceListener listener = null;
+
+    /* Everything below is guarded by this */
+    private State state = State.CLOSED;
+    private final byte[] window;
+    private int position = 0;
+    private int recorded = 0;
+    private int failures = 0;
+    private int slowCalls = 0;
+    private long openedAt = 0;
+    private int probesLeft = 0;
+    private long rejected = 0;
+
+    /* Bits of the entries of the window */
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    /**
+     * Default constructor, uses the default settings
+     * @param name String containing the name of the endpoint guarded, reported to the listener
+     */
+    public CircuitBreaker(String name) {
+        this(name, DEFAULT_WINDOW_SIZE, DEFAULT_MINIMUM_CALLS, DEFAULT_FAILURE_RATE_THRESHOLD, DEFAULT_SLOW_CALL_RATE_THRESHOLD,
+                DEFAULT_SLOW_CALL_DURATION, DEFAULT_OPEN_DURATION, DEFAULT_HALF_OPEN_CALLS);
+    }
+
+    /**
+     * Secondary constructor
+     * @param name String containing the name of the endpoint guarded, reported to the listener
+     * @param windowSize int containing the number of calls in the sliding window
+     * @param minimumCalls int containing the number of calls recorded before the rates are evaluated
+     * @param failureRateThreshold int containing the failure rate opening the circuit, in percent
+     * @param slowCallRateThreshold int containing the slow call rate opening the circuit, in percent
+     * @param slowCallDuration long containing the duration above which a call is slow, in milliseconds
+     * @param openDuration long containing the time during which an open circuit rejects the calls, in milliseconds
+     * @param halfOpenCalls int containing the number of probe calls of a half-open circuit
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold, int slowCallRateThreshold,
+                          long slowCallDuration, long openDuration, int halfOpenCalls) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize || failureRateThreshold < 1 || failureRateThreshold > 100
+                || slowCallRateThreshold < 1 || slowCallRateThreshold > 100 || slowCallDuration < 0 || openDuration < 0 || halfOpenCalls < 1 || halfOpenCalls > windowSize) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+        }
+        this.name = name;
+        this.window = new byte[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationNanos = TimeUnit.MILLISECONDS.toNanos(slowCallDuration);
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDuration);
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * Setter for the listener
+     * @param listener ResilienceListener object notified of the changes of state, null for none
+     */
+    public void setListener(ResilienceListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Getter for the name
+     * @return String containing the name of the endpoint guarded
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for the state
+     * @return State object containing the current state, an open circuit whose open duration is over is still OPEN
+     *         until the next call
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Getter for the number of calls rejected
+     * @return long containing the number of calls rejected since the creation of the circuit breaker
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Checks if a response counts as a failure
+     * @param httpStatus int containing the HTTP status of the response
+     * @return boolean, true for 429 and the 5xx statuses
+     */
+    public static boolean isFailure(int httpStatus) {
+        return httpStatus == 429 || httpStatus >= 500;
+    }
+
+    /**
+     * Asks for the permission to send a call
+     * @return boolean, true if the call can proceed, its outcome must then be given to onSuccess, onFailure or onCancelled
+     */
+    public boolean tryAcquire() {
+        boolean allowed;
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+                transition(State.HALF_OPEN);
+                allowed = probe();
+            } else {
+                allowed = state == State.CLOSED || (state == State.HALF_OPEN && probe());
+                if (!allowed) rejected++;
+                return allowed;
+            }
+        }
+        fireStateChange(State.OPEN, State.HALF_OPEN);
+        return allowed;
+    }
+
+    /**
+     * Records a call that completed
+     * @param durationNanos long containing the duration of the call, in nanoseconds
+     */
+    public void onSuccess(long durationNanos) {
+        record(false, durationNanos);
+    }
+
+    /**
+     * Records a call that failed
+     * @param durationNanos long containing the duration of the call, in nanoseconds
+     */
+    public void onFailure(long durationNanos) {
+        record(true, durationNanos);
+    }
+
+    /**
+     * Records a call cancelled before its outcome was known, it counts neither as a success nor as a failure. The permit
+     * it took from a half-open circuit is given back to the next call.
+     */
+    public synchronized void onCancelled() {
+        if (state == State.HALF_OPEN && probesLeft + recorded < halfOpenCalls) probesLeft++;
+    }
+
+    /*
+     * Takes one of the permits of a half-open circuit, guarded by this
+     */
+    private boolean probe() {
+        if (probesLeft == 0) return false;
+        probesLeft--;
+        return true;
+    }
+
+    private void record(boolean failed, long durationNanos) {
+        State from, to;
+        synchronized (this) {
+            if (state == State.OPEN) return; // call started before the circuit opened
+            byte outcome = (byte) ((failed ? FAILED : 0) | (durationNanos >= slowCallDurationNanos ? SLOW : 0));
+            if (recorded == window.length) {
+                byte evicted = window[position];
+                if ((evicted & FAILED) != 0) failures--;
+                if ((evicted & SLOW) != 0) slowCalls--;
+            } else {
+                recorded++;
+            }
+            window[position] = outcome;
+            position = (position + 1) % window.length;
+            if ((outcome & FAILED) != 0) failures++;
+            if ((outcome & SLOW) != 0) slowCalls++;
+
+            from = state;
+            if (state == State.HALF_OPEN) {
+                if (recorded < halfOpenCalls) return;
+                to = overThreshold() ? State.OPEN : State.CLOSED;
+            } else {
+                if (recorded < minimumCalls || !overThreshold()) return;
+                to = State.OPEN;
+            }
+            transition(to);
+        }
+        fireStateChange(from, to);
+    }
+
+    private boolean overThreshold() {
+        return failures * 100 >= failureRateThreshold * recorded || slowCalls * 100 >= slowCallRateThreshold * recorded;
+    }
+
+    /*
+     * Changes the state and clears the window, guarded by this
+     */
+    private void transition(State to) {
+        state = to;
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+        if (to == State.OPEN) openedAt = System.nanoTime();
+        probesLeft = to == State.HALF_OPEN ? halfOpenCalls : 0;
+    }
+
+    /*
+     * Notifies the listener, outside of the lock so that it can call the getters
+     */
+    private void fireStateChange(State from, State to) {
+        ResilienceListener l = listener;
+        if (l != null) l.onStateChange(this, from, to);
+    }
+}
@@ -0,0 +1,99 @@
+package com.checkout.resilience;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Class holding the circuit breakers, one per endpoint, and the bulkheads, one per environment, used by CheckoutKit.
+ * They are created on first use by newCircuitBreaker and newBulkhead, which can be overridden to change their settings.
+ * The listeners added here are notified of the events of all of them.
+ */
+public class Resilience {
+
+    private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+    private final ConcurrentHashMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<String, Bulkhead>();
+    private final CopyOnWriteArrayList<ResilienceListener> listeners = new CopyOnWriteArrayList<ResilienceListener>();
+
+    /* Forwards the events of the circuit breakers and bulkheads to the listeners */
+    private final ResilienceListener dispatcher = new ResilienceListener() {
+        @Override
+        public void onStateChange(CircuitBreaker breaker, CircuitBreaker.State from, CircuitBreaker.State to) {
+            for (ResilienceListener l : listeners) {
+                l.onStateChange(breaker, from, to);
+            }
+        }
+
+        @Override
+        public void onBulkheadFull(Bulkhead bulkhead) {
+            for (ResilienceListener l : listeners) {
+                l.onBulkheadFull(bulkhead);
+            }
+        }
+    };
+
+    /**
+     * Adds a listener
+     * @param listener ResilienceListener object notified of the events of all the circuit breakers and bulkheads
+     */
+    public void addListener(ResilienceListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Removes a listener
+     * @param listener ResilienceListener object previously added
+     */
+    public void removeListener(ResilienceListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the circuit breaker of an endpoint, creates it on the first call
+     * @param endpoint String containing the name of the endpoint (GETCARDPROVIDERS, CREATECARDTOKEN)
+     * @return CircuitBreaker object guarding the endpoint
+     */
+    public CircuitBreaker getCircuitBreaker(String endpoint) {
+        CircuitBreaker b = breakers.get(endpoint);
+        if (b == null) {
+            CircuitBreaker created = newCircuitBreaker(endpoint);
+            created.setListener(dispatcher);
+            b = breakers.putIfAbsent(endpoint, created);
+            if (b == null) b = created;
+        }
+        return b;
+    }
+
+    /**
+     * Returns the bulkhead of an environment, creates it on the first call
+     * @param environment String containing the name of the environment (SANDBOX, LIVE)
+     * @return Bulkhead object capping the calls in flight to the environment
+     */
+    public Bulkhead getBulkhead(String environment) {
+        Bulkhead b = bulkheads.get(environment);
+        if (b == null) {
+            Bulkhead created = newBulkhead(environment);
+            created.setListener(dispatcher);
+            b = bulkheads.putIfAbsent(environment, created);
+            if (b == null) b = created;
+        }
+        return b;
+    }
+
+    /**
+     * Creates the circuit breaker of an endpoint, with the default settings unless overridden
+     * @param endpoint String containing the name of the endpoint
+     * @return CircuitBreaker object
+     */
+    protected CircuitBreaker newCircuitBreaker(String endpoint) {
+        return new CircuitBreaker(endpoint);
+    }
+
+    /**
+     * Creates the bulkhead of an environment, with the default settings unless overridden
+     * @param environment String containing the name of the environment
+     * @return Bulkhead object
+     */
+    protected Bulkhead newBulkhead(String environment) {
+        return new Bulkhead(environment);
+    }
+}
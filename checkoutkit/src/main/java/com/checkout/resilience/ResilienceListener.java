@@ -0,0 +1,22 @@
+package com.checkout.resilience;
+
+/**
+ * Interface used to be notified of the changes of state of the circuit breakers and of the calls shed by the bulkheads.
+ * The methods are called on the thread whose call caused the event, they must return quickly.
+ */
+public interface ResilienceListener {
+
+    /**
+     * Called when a circuit breaker changes state
+     * @param breaker CircuitBreaker object whose state changed
+     * @param from State object containing the previous state
+     * @param to State object containing the new state
+     */
+    void onStateChange(CircuitBreaker breaker, CircuitBreaker.State from, CircuitBreaker.State to);
+
+    /**
+     * Called when a call is rejected because the bulkhead already has as many calls in flight as it allows
+     * @param bulkhead Bulkhead object that rejected the call
+     */
+    void onBulkheadFull(Bulkhead bulkhead);
+}
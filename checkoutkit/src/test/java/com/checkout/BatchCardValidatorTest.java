@@ -0,0 +1,72 @@
+package com.checkout;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BatchCardValidatorTest {
+
+    private String[] numbers = {"4242424242424242", "4242-1111-1111-1111", "1234asd", "", "378282246310005", "5555 5555 5555 4444", "4242424242424242", "4242424242424242"};
+    private String[] months = {"06", "06", "06", "06", "12", "6", "0", "06"};
+    private String[] years = {"2099", "2099", "2099", "2099", "99", "2099", "2099", "1999"};
+    private String[] cvvs = {"100", "100", "100", "100", "1234", "12", "100", "100"};
+    private byte[] expected = {BatchCardValidator.RECORD_VALID, BatchCardValidator.RECORD_INVALID_LUHN, BatchCardValidator.RECORD_UNKNOWN_TYPE,
+            BatchCardValidator.RECORD_EMPTY_NUMBER, BatchCardValidator.RECORD_VALID, BatchCardValidator.RECORD_INVALID_CVV,
+            BatchCardValidator.RECORD_INVALID_EXPIRY_DATE, BatchCardValidator.RECORD_INVALID_EXPIRY_DATE};
+
+    @Test
+    public void validateArraysTest() {
+        BatchCardValidator.Result result = new BatchCardValidator().validate(numbers, months, years, cvvs);
+        assertEquals(numbers.length, result.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(numbers[i], expected[i], result.getCode(i));
+        }
+        assertEquals(2, result.count(BatchCardValidator.RECORD_VALID));
+        /* the codes returned are a copy, changing them leaves the result untouched */
+        byte[] codes = result.getCodes();
+        assertArrayEquals(expected, codes);
+        codes[0] = BatchCardValidator.RECORD_EMPTY_NUMBER;
+        assertEquals(BatchCardValidator.RECORD_VALID, result.getCode(0));
+        assertArrayEquals(expected, result.getCodes());
+    }
+
+    @Test
+    public void validateIteratorTest() {
+        List<String[]> records = new ArrayList<>();
+        for (int n = 0; n < 1000; n++) {
+            for (int i = 0; i < numbers.length; i++) {
+                records.add(new String[]{numbers[i], months[i], years[i], cvvs[i]});
+            }
+        }
+        BatchCardValidator.Result result = new BatchCardValidator().validate(records.iterator(), 3000);
+        assertEquals(records.size(), result.size());
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals(expected[i % expected.length], result.getCode(i));
+        }
+    }
+
+    @Test
+    public void consistentWithCardValidatorTest() {
+        int size = 20000;
+        String[] n = new String[size];
+        String[] m = new String[size];
+        String[] y = new String[size];
+        String[] c = new String[size];
+        for (int i = 0; i < size; i++) {
+            n[i] = (i % 3 == 0 ? "4" : "5") + String.format("%015d", i * 7919L);
+            m[i] = String.valueOf(i % 14);
+            y[i] = i % 5 == 0 ? "15" : "2099";
+            c[i] = i % 7 == 0 ? "1234" : "123";
+        }
+        BatchCardValidator.Result result = new BatchCardValidator().validate(n, m, y, c);
+        for (int i = 0; i < size; i++) {
+            boolean valid = CardValidator.validateCardNumber(n[i]) && CardValidator.validateExpiryDate(m[i], y[i])
+                    && CardValidator.validateCVV(c[i], CardValidator.getCardType(n[i]));
+            assertEquals(n[i], valid, result.getCode(i) == BatchCardValidator.RECORD_VALID);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.checkout;
+
+import com.checkout.CardValidator.Cards;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CardNumberFormatterTest {
+
+    private final CardNumberFormatter formatter = new CardNumberFormatter();
+
+    private String format(String number, Cards card) {
+        StringBuilder sb = new StringBuilder();
+        int written = formatter.format(number, card, sb);
+        assertEquals(sb.length(), written);
+        return sb.toString();
+    }
+
+    @Test
+    public void formatTest() throws Exception {
+        assertEquals("4242 4242 4242 4242", format("4242424242424242", Cards.VISA));
+        assertEquals("4242 4242 4242 4242", format("4242-4242 42424242", Cards.VISA));
+        assertEquals("3782 822463 10005", format("378282246310005", Cards.AMEX));
+        assertEquals("3056 930902 5904", format("30569309025904", Cards.DINERSCLUB));
+        assertEquals("4242 4", format("42424", null));
+        assertEquals("4242", format("4242", Cards.VISA));
+        assertEquals("", format("", Cards.VISA));
+        StringBuilder dashes = new StringBuilder("number: ");
+        assertEquals(17, new CardNumberFormatter('-').format("378282246310005", Cards.AMEX, dashes));
+        assertEquals("number: 3782-822463-10005", dashes.toString());
+    }
+
+    @Test
+    public void sameAsRegexTest() throws Exception {
+        /* the groups captured by the format of each card type, joined with the separator */
+        String number = "37828224631000512345";
+        Field field = Cards.class.getDeclaredField("format");
+        field.setAccessible(true);
+        for (Cards card : Cards.values()) {
+            Pattern pattern = Pattern.compile((String) field.get(card));
+            for (int length = 1; length <= 14; length++) {
+                String digits = number.substring(0, length);
+                Matcher m = pattern.matcher(digits);
+                if (!m.matches()) continue;
+                StringBuilder expected = new StringBuilder();
+                for (int g = 1; g <= m.groupCount(); g++) {
+                    if (m.group(g) == null) continue;
+                    if (expected.length() > 0) expected.append(' ');
+                    expected.append(m.group(g));
+                }
+                assertEquals(card + " " + digits, expected.toString(), format(digits, card));
+            }
+        }
+    }
+
+    @Test
+    public void charArrayTest() throws Exception {
+        char[] out = new char[32];
+        int written = formatter.format("xx378282246310005", Cards.AMEX, out, 2);
+        assertEquals(CardNumberFormatter.formattedPosition(Cards.AMEX, 15), written);
+        assertEquals("3782 822463 10005", new String(out, 2, written));
+    }
+
+    @Test
+    public void inputTest() throws Exception {
+        CardNumberInput input = new CardNumberInput();
+        StringBuilder sb = new StringBuilder();
+        for (char c : "378282246310005".toCharArray()) {
+            input.append(c);
+            sb.setLength(0);
+            formatter.format(input, sb);
+            assertEquals(format(input.getNumber(), input.getCardType()), sb.toString());
+            assertEquals(CardNumberFormatter.formattedPosition(input.getCardType(), input.length()), sb.length());
+        }
+        assertEquals("3782 822463 10005", sb.toString());
+    }
+
+    @Test
+    public void cursorTest() throws Exception {
+        assertEquals(0, CardNumberFormatter.formattedPosition(Cards.VISA, 0));
+        assertEquals(4, CardNumberFormatter.formattedPosition(Cards.VISA, 4));
+        assertEquals(6, CardNumberFormatter.formattedPosition(Cards.VISA, 5));
+        assertEquals(11, CardNumberFormatter.formattedPosition(Cards.AMEX, 10));
+        assertEquals(13, CardNumberFormatter.formattedPosition(Cards.AMEX, 11));
+        assertEquals(3, CardNumberFormatter.digitPosition("42 42", 4));
+        assertEquals(4, CardNumberFormatter.digitPosition("42 42", 10));
+
+        StringBuilder out = new StringBuilder();
+        /* a digit typed after the fourth one, the cursor moves past the new separator */
+        int cursor = formatter.reformat("42424", 5, Cards.VISA, out);
+        assertEquals("4242 4", out.toString());
+        assertEquals(6, cursor);
+        /* a digit inserted in the first group, the cursor stays after it */
+        out.setLength(0);
+        cursor = formatter.reformat("424242 4", 2, Cards.VISA, out);
+        assertEquals("4242 424", out.toString());
+        assertEquals(2, cursor);
+        /* the separator deleted, the cursor stays after the same digit */
+        out.setLength(0);
+        cursor = formatter.reformat("42424", 4, Cards.VISA, out);
+        assertEquals(4, cursor);
+    }
+
+    @Test
+    public void groupEndTest() throws Exception {
+        assertTrue(CardNumberFormatter.isGroupEnd(Cards.AMEX, 4));
+        assertTrue(CardNumberFormatter.isGroupEnd(Cards.AMEX, 10));
+        assertFalse(CardNumberFormatter.isGroupEnd(Cards.AMEX, 8));
+        assertTrue(CardNumberFormatter.isGroupEnd(null, 8));
+        assertFalse(CardNumberFormatter.isGroupEnd(null, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void digitSeparatorTest() throws Exception {
+        new CardNumberFormatter('1');
+    }
+}
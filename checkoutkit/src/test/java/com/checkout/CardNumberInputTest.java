@@ -0,0 +1,157 @@
+package com.checkout;
+
+import com.checkout.CardValidator.Cards;
+
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CardNumberInputTest {
+
+    private static final String[] NUMBERS = {"4242424242424242", "4222222222222", "378282246310005", "5555555555554444",
+            "30569309025904", "6011111111111117", "3530111333300000", "6304000000000000", "6200000000000005",
+            "5018000000000009", "1234567890123", "9999"};
+
+    private void assertSameAsValidator(CardNumberInput input) {
+        String number = input.getNumber();
+        assertEquals(number, CardValidator.checkCardNumber(number, 0, number.length()), input.getStatus());
+        assertEquals(number, CardValidator.validateCardNumber(number), input.isValid());
+        Cards type = CardValidator.getCardType(number);
+        if (type != null) assertEquals(number, type, input.getCardType());
+    }
+
+    @Test
+    public void appendTest() throws Exception {
+        CardNumberInput input = new CardNumberInput();
+        for (String number : NUMBERS) {
+            input.clear();
+            assertEquals(CardValidator.CARD_EMPTY, input.getStatus());
+            assertNull(input.getCardType());
+            for (int i = 0; i < number.length(); i++) {
+                assertTrue(input.append(number.charAt(i)));
+                assertEquals(i + 1, input.length());
+                assertSameAsValidator(input);
+            }
+        }
+    }
+
+    @Test
+    public void deleteTest() throws Exception {
+        Random random = new Random(42);
+        CardNumberInput input = new CardNumberInput();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            if (expected.length() > 0 && random.nextInt(3) == 0) {
+                assertTrue(input.deleteLast());
+                expected.setLength(expected.length() - 1);
+            } else {
+                String seed = NUMBERS[random.nextInt(NUMBERS.length)];
+                char c = expected.length() < seed.length() && random.nextBoolean()
+                        ? seed.charAt(expected.length()) : (char) ('0' + random.nextInt(10));
+                assertEquals(expected.length() < CardNumberInput.MAX_DIGITS, input.append(c));
+                if (expected.length() < CardNumberInput.MAX_DIGITS) expected.append(c);
+            }
+            assertEquals(expected.toString(), input.getNumber());
+            assertSameAsValidator(input);
+        }
+        input.clear();
+        assertFalse(input.deleteLast());
+        assertFalse(input.append('-'));
+        input.setNumber("4242 4242-4242 4242");
+        assertEquals("4242424242424242", input.getNumber());
+        assertTrue(input.isValid());
+    }
+
+    @Test
+    public void candidatesTest() throws Exception {
+        CardNumberInput input = new CardNumberInput();
+        assertEquals(EnumSet.allOf(Cards.class), input.getCandidates());
+        for (String number : NUMBERS) {
+            Cards type = CardValidator.getCardType(number);
+            if (type == null) continue;
+            input.clear();
+            for (int i = 0; i < number.length(); i++) {
+                input.append(number.charAt(i));
+                assertTrue(number, input.isCandidate(type));
+                assertTrue(number, input.hasCandidates());
+            }
+        }
+        input.setNumber("34");
+        assertEquals(EnumSet.of(Cards.DINERSCLUB, Cards.AMEX), input.getCandidates());
+        assertEquals(Cards.AMEX, input.getCardType());
+        input.setNumber("3");
+        assertEquals(EnumSet.of(Cards.DINERSCLUB, Cards.JCB, Cards.AMEX), input.getCandidates());
+        input.setNumber("9");
+        assertFalse(input.hasCandidates());
+        assertNull(input.getCardType());
+        assertEquals(0, input.getCandidateMask());
+        input.setNumber("42424242424242424");
+        assertFalse(input.hasCandidates());
+    }
+
+    @Test
+    public void completeTest() throws Exception {
+        CardNumberInput input = new CardNumberInput();
+        input.setNumber("4222222222222");
+        assertTrue(input.isValid());
+        assertFalse(input.isComplete());
+        input.setNumber("4242424242424242");
+        assertTrue(input.isComplete());
+        input.setNumber("378282246310005");
+        assertTrue(input.isComplete());
+        input.deleteLast();
+        assertFalse(input.isComplete());
+    }
+
+    @Test
+    public void completeLengthsTest() throws Exception {
+        /* each number has an exact length accepted by its card type, complete when no candidate accepts more digits */
+        String[] complete = {"4242424242424242", "378282246310005", "5555555555554444", "30569309025904",
+                "6011111111111117", "3530111333300000"};
+        CardNumberInput input = new CardNumberInput();
+        for (String number : complete) {
+            input.setNumber(number);
+            assertTrue(number, input.isValid());
+            assertTrue(number, input.isComplete());
+        }
+        /* valid, but the card type accepts longer numbers */
+        String[] incomplete = {"4222222222222", "5018000000000009", "6200000000000005", "6304000000000000"};
+        for (String number : incomplete) {
+            input.setNumber(number);
+            assertTrue(number, input.isValid());
+            assertFalse(number, input.isComplete());
+        }
+        /* the 2131 and 1800 JCB numbers match the pattern with 15 digits but Cards.JCB only accepts 16 */
+        for (String number : new String[]{"213100000000001", "180000000000002"}) {
+            input.setNumber(number);
+            assertEquals(number, Cards.JCB, input.getCardType());
+            assertEquals(number, CardValidator.CARD_INVALID_LENGTH, input.getStatus());
+            assertFalse(number, input.isComplete());
+        }
+    }
+
+    @Test
+    public void groupsTest() throws Exception {
+        CardNumberInput input = new CardNumberInput();
+        assertArrayEquals(new int[]{4}, input.getGroups());
+        input.setNumber("37");
+        assertArrayEquals(new int[]{4, 6, 5}, input.getGroups());
+        assertTrue(input.isGroupEnd(4));
+        assertFalse(input.isGroupEnd(8));
+        assertTrue(input.isGroupEnd(10));
+        assertTrue(input.isGroupEnd(15));
+        input.setNumber("42");
+        assertArrayEquals(new int[]{4}, input.getGroups());
+        assertTrue(input.isGroupEnd(4));
+        assertTrue(input.isGroupEnd(12));
+        assertFalse(input.isGroupEnd(13));
+        assertFalse(input.isGroupEnd(0));
+    }
+}
@@ -0,0 +1,176 @@
+package com.checkout;
+
+import com.checkout.exceptions.CheckoutException;
+import com.checkout.httpconnector.Response;
+import com.checkout.httpconnector.ResponseError;
+import com.checkout.models.CardProviderResponse;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CardProviderCacheTest {
+
+    private Executor direct = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /*
+     * Loader counting its calls, answering 304 when it is given the ETag it sent before
+     */
+    private class CountingLoader implements CardProviderCache.Loader {
+        final AtomicInteger calls = new AtomicInteger();
+        final List<String> etags = new ArrayList<>();
+        volatile int status = 200;
+
+        @Override
+        public Response<CardProviderResponse> load(String etag) throws CheckoutException, IOException {
+            calls.incrementAndGet();
+            synchronized (etags) {
+                etags.add(etag);
+            }
+            if ("\"v1\"".equals(etag)) {
+                Response<CardProviderResponse> r = new Response<>(null);
+                r.httpStatus = 304;
+                return r;
+            }
+            if (status != 200) {
+                Response<CardProviderResponse> r = new Response<>(null);
+                r.hasError = true;
+                r.httpStatus = status;
+                r.error = new ResponseError(String.valueOf(status), "error", null, null);
+                return r;
+            }
+            Response<CardProviderResponse> r = new Response<>(new CardProviderResponse("list", CheckoutKitTest.cp.size(), CheckoutKitTest.cp));
+            r.httpStatus = 200;
+            r.etag = "\"v1\"";
+            return r;
+        }
+    }
+
+    @Test
+    public void freshResponseTest() throws Exception {
+        CardProviderCache cache = new CardProviderCache(60000, 60000, null);
+        CountingLoader loader = new CountingLoader();
+        Response<CardProviderResponse> first = cache.get(loader, direct);
+        Response<CardProviderResponse> second = cache.get(loader, direct);
+        assertEquals(CheckoutKitTest.cp, first.model.getData());
+        assertSame(first, second);
+        assertEquals(1, loader.calls.get());
+    }
+
+    @Test
+    public void staleResponseRevalidatedTest() throws Exception {
+        CardProviderCache cache = new CardProviderCache(0, 60000, null);
+        CountingLoader loader = new CountingLoader();
+        Response<CardProviderResponse> first = cache.get(loader, direct);
+        Response<CardProviderResponse> second = cache.get(loader, direct);
+        assertSame(first, second);
+        assertEquals(2, loader.calls.get());
+        assertNull(loader.etags.get(0));
+        assertEquals("\"v1\"", loader.etags.get(1));
+    }
+
+    @Test
+    public void ownersTest() throws Exception {
+        CardProviderCache cache = new CardProviderCache(0, 60000, null);
+        CountingLoader loader = new CountingLoader();
+        cache.get("pk_a", loader, direct);
+        /* another key never gets the stale response of the first one, nor revalidates its ETag */
+        loader.status = 401;
+        assertEquals(true, cache.get("pk_b", loader, direct).hasError);
+        assertEquals(2, loader.calls.get());
+        assertNull(loader.etags.get(1));
+        loader.status = 200;
+        assertEquals(false, cache.get("pk_b", loader, direct).hasError);
+        assertEquals(3, loader.calls.get());
+        assertNull(loader.etags.get(2));
+        cache.get("pk_a", loader, direct);
+        assertNull(loader.etags.get(3));
+    }
+
+    @Test
+    public void errorsNotCachedTest() throws Exception {
+        CardProviderCache cache = new CardProviderCache(60000, 60000, null);
+        CountingLoader loader = new CountingLoader();
+        loader.status = 401;
+        assertEquals(true, cache.get(loader, direct).hasError);
+        assertNull(cache.peek());
+        loader.status = 200;
+        assertEquals(false, cache.get(loader, direct).hasError);
+        assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void concurrentCallersCoalescedTest() throws Exception {
+        final CardProviderCache cache = new CardProviderCache(60000, 60000, null);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingLoader counting = new CountingLoader();
+        final CardProviderCache.Loader slow = new CardProviderCache.Loader() {
+            @Override
+            public Response<CardProviderResponse> load(String etag) throws CheckoutException, IOException {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return counting.load(etag);
+            }
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Response<CardProviderResponse>>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(pool.submit(new Callable<Response<CardProviderResponse>>() {
+                @Override
+                public Response<CardProviderResponse> call() throws Exception {
+                    return cache.get(slow, direct);
+                }
+            }));
+        }
+        Thread.sleep(200);
+        release.countDown();
+        for (Future<Response<CardProviderResponse>> f : futures) {
+            assertEquals(CheckoutKitTest.cp, f.get(5, TimeUnit.SECONDS).model.getData());
+        }
+        pool.shutdown();
+        assertEquals(1, counting.calls.get());
+    }
+
+    @Test
+    public void persistedResponseTest() throws Exception {
+        File file = File.createTempFile("providers", ".json");
+        file.delete();
+        try {
+            CardProviderCache cache = new CardProviderCache(60000, 60000, file);
+            cache.get(new CountingLoader(), direct);
+            assertTrue(file.isFile());
+
+            CardProviderCache restarted = new CardProviderCache(60000, 60000, file);
+            assertEquals(CheckoutKitTest.cp, restarted.peek().model.getData());
+            CountingLoader loader = new CountingLoader();
+            assertEquals(CheckoutKitTest.cp, restarted.get(loader, direct).model.getData());
+            assertEquals("\"v1\"", loader.etags.get(0));
+        } finally {
+            file.delete();
+        }
+    }
+}
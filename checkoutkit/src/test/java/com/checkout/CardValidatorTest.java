@@ -4,8 +4,12 @@ import com.checkout.CardValidator.Cards;
 
 import org.junit.Test;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Calendar;
+import java.util.regex.Pattern;
 
 import static org.junit.Assert.assertEquals;
 
@@ -44,6 +48,35 @@ public class CardValidatorTest {
         assertEquals(false, CardValidator.validateCardNumber("1234asd"));
     }
 
+    @Test
+    public void checkCardNumberTest() {
+        assertEquals(CardValidator.CARD_VALID, CardValidator.checkCardNumber("4242 4242 4242 4242", 0, 19));
+        assertEquals(CardValidator.CARD_VALID, CardValidator.checkCardNumber("378282246310005", 0, 15));
+        assertEquals(CardValidator.CARD_VALID, CardValidator.checkCardNumber("4222222222222", 0, 13));
+        assertEquals(CardValidator.CARD_VALID, CardValidator.checkCardNumber("xx4242-4242-4242-4242xx".toCharArray(), 2, 19));
+        assertEquals(CardValidator.CARD_INVALID_LUHN, CardValidator.checkCardNumber("4242-1111-1111-1111", 0, 19));
+        assertEquals(CardValidator.CARD_INVALID_LENGTH, CardValidator.checkCardNumber("3012345678903", 0, 12));
+        assertEquals(CardValidator.CARD_UNKNOWN_TYPE, CardValidator.checkCardNumber("1234asd", 0, 7));
+        assertEquals(CardValidator.CARD_EMPTY, CardValidator.checkCardNumber("", 0, 0));
+        assertEquals(CardValidator.CARD_EMPTY, CardValidator.checkCardNumber("- -".toCharArray(), 0, 3));
+    }
+
+    @Test
+    public void parseExpiryFieldTest() {
+        /* same values as Integer.parseInt, -1 where it throws */
+        String[] values = {"06", "2099", "+7", "-3", "\u0660\u0665", "2147483647", "-2147483648", "2147483648", "ab", "1a",
+                "", "+", "-", "99999999999"};
+        for (String value : values) {
+            int expected;
+            try {
+                expected = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                expected = -1;
+            }
+            assertEquals(value, expected, CardValidator.parseExpiryField(value));
+        }
+    }
+
     @Test
     public void getCardTypeTest() {
         assertEquals(Cards.VISA, CardValidator.getCardType("4242-4242-4242-4242"));
@@ -56,6 +89,47 @@ public class CardValidatorTest {
         assertEquals(Cards.JCB, CardValidator.getCardType("3530111333300000"));
         assertEquals(Cards.DISCOVER, CardValidator.getCardType("6011111111111117"));
         assertEquals(null, CardValidator.getCardType("1234"));
+        assertEquals(Cards.MAESTRO, CardValidator.getCardType("6759649826438453"));
+        assertEquals(Cards.DINERSCLUB, CardValidator.getCardType("301234567890"));
+        assertEquals(Cards.JCB, CardValidator.getCardType("180012345678901"));
+        assertEquals(null, CardValidator.getCardType(""));
+    }
+
+    @Test
+    public void getCardTypeMatchesPatternsTest() throws Exception {
+        Cards[] cards = Cards.values();
+        Pattern[] patterns = new Pattern[cards.length];
+        Field field = Cards.class.getDeclaredField("pattern");
+        field.setAccessible(true);
+        for (int i = 0; i < cards.length; i++) {
+            patterns[i] = Pattern.compile((String) field.get(cards[i]));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int prefixLength = 1; prefixLength <= 4; prefixLength++) {
+            int max = (int) Math.pow(10, prefixLength);
+            for (int prefix = 0; prefix < max; prefix++) {
+                for (int length = prefixLength; length <= 21; length++) {
+                    for (char fill = '0'; fill <= '9'; fill += 9) {
+                        sb.setLength(0);
+                        String p = String.valueOf(prefix);
+                        for (int i = p.length(); i < prefixLength; i++) sb.append('0');
+                        sb.append(p);
+                        while (sb.length() < length) sb.append(fill);
+                        String num = sb.toString();
+
+                        Cards expected = null;
+                        for (int i = 0; i < cards.length; i++) {
+                            if (patterns[i].matcher(num).matches()) {
+                                expected = cards[i];
+                                break;
+                            }
+                        }
+                        assertEquals(num, expected, CardValidator.getCardType(num));
+                    }
+                }
+            }
+        }
     }
 
     @Test
@@ -93,6 +167,27 @@ public class CardValidatorTest {
         assertEquals(false, CardValidator.validateCVV("", Cards.MAESTRO));
     }
 
+    @Test
+    public void initializationOrderTest() throws Exception {
+        /* each class loaded first in its own class loader, so no other class of the library is initialized before it */
+        URL classes = CardValidator.class.getProtectionDomain().getCodeSource().getLocation();
+        String[] first = {"com.checkout.CardValidator$Cards", "com.checkout.CardTypeTrie", "com.checkout.CardNumberInput",
+                "com.checkout.CardNumberFormatter", "com.checkout.CardValidator"};
+        for (String name : first) {
+            URLClassLoader loader = new URLClassLoader(new URL[]{classes}, null);
+            try {
+                Class.forName(name, true, loader);
+                Class<?> cards = Class.forName("com.checkout.CardValidator$Cards", true, loader);
+                assertEquals(name, "VISA", cards.getField("VISA").get(null).toString());
+                Object input = Class.forName("com.checkout.CardNumberInput", true, loader).newInstance();
+                input.getClass().getMethod("setNumber", CharSequence.class).invoke(input, "4242424242424242");
+                assertEquals(name, true, input.getClass().getMethod("isValid").invoke(input));
+            } finally {
+                loader.close();
+            }
+        }
+    }
+
     /*
      * Method used to test a private function of CardValidator that returns a boolean
      */
@@ -2,31 +2,56 @@ package com.checkout;
 
 import com.checkout.exceptions.CardException;
 import com.checkout.exceptions.CheckoutException;
+import com.checkout.httpconnector.ConnectionPool;
+import com.checkout.httpconnector.HttpConnector;
+import com.checkout.httpconnector.NioTransport;
+import com.checkout.httpconnector.Request;
 import com.checkout.httpconnector.Response;
 import com.checkout.httpconnector.ResponseError;
+import com.checkout.httpconnector.StubTransport;
+import com.checkout.httpconnector.Transport;
+import com.checkout.metrics.CheckoutMetrics;
+import com.checkout.metrics.EndpointMetrics;
 import com.checkout.models.Card;
 import com.checkout.models.CardProvider;
 import com.checkout.models.CardProviderResponse;
 import com.checkout.models.CardToken;
 import com.checkout.models.CardTokenResponse;
 import com.checkout.models.CustDetails;
+import com.checkout.resilience.Bulkhead;
+import com.checkout.resilience.CircuitBreaker;
+import com.checkout.resilience.Resilience;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 
 import org.junit.Rule;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -131,6 +156,60 @@ public class CheckoutKitTest {
         }
     }
 
+    @Test
+    public void getCardProvidersCachedTest() {
+        init();
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("ETag", "\"v1\"")
+                        .withBody(gson.toJson(new CardProviderResponse("list", cp.size(), cp)))));
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .withHeader("If-None-Match", equalTo("\"v1\""))
+                .willReturn(aResponse()
+                        .withStatus(304)));
+        try {
+            ck.setCardProviderCache(new CardProviderCache(0, 0, null));
+            Response<CardProviderResponse> first = ck.getCardProviders();
+            assertEquals("\"v1\"", first.etag);
+            Response<CardProviderResponse> second = ck.getCardProviders();
+            assertEquals(second.hasError, false);
+            assertEquals(cp, second.model.getData());
+            verify(1, getRequestedFor(urlEqualTo("/providers/cards")).withHeader("If-None-Match", equalTo("\"v1\"")));
+        } catch (CheckoutException|IOException e) {
+            fail(e.getMessage());
+        } finally {
+            ck.setCardProviderCache(null);
+        }
+    }
+
+    @Test
+    public void getCardProvidersCacheSwitchKeyTest() throws Exception {
+        init();
+        String otherKey = "pk_test_6ff46046-30af-41d9-bf58-929022d200c4";
+        List<CardProvider> otherProviders = Arrays.asList(new CardProvider("cp_9", "AMEX", true));
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .withHeader("Authorization", equalTo("pk_test_6ff46046-30af-41d9-bf58-929022d2cd14"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody(gson.toJson(new CardProviderResponse("list", cp.size(), cp)))));
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .withHeader("Authorization", equalTo(otherKey))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody(gson.toJson(new CardProviderResponse("list", otherProviders.size(), otherProviders)))));
+        ck.setCardProviderCache(new CardProviderCache(60000, 60000, null));
+        try {
+            assertEquals(cp, ck.getCardProviders().model.getData());
+            ck.setPublicKey(otherKey);
+            assertEquals(otherProviders, ck.getCardProviders().model.getData());
+            assertEquals(otherProviders, ck.getCardProviders().model.getData());
+            verify(2, getRequestedFor(urlEqualTo("/providers/cards")));
+        } finally {
+            ck.setCardProviderCache(null);
+        }
+    }
+
     @Test
     public void getCardProvidersWrongPKTest() {
         CheckoutKit.destroy();
@@ -180,6 +259,725 @@ public class CheckoutKitTest {
         // "cvvCheck":null,"avsCheck":null,"responseCode":null}}
     }
 
+    @Test
+    public void createCardTokenMultilineResponseTest() {
+        init();
+        Gson prettyGson = new GsonBuilder().setPrettyPrinting().create();
+        stubFor(post(urlEqualTo("/tokens/card"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(prettyGson.toJson(new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, testCardToken)))));
+        try {
+            Response<CardTokenResponse> resp = ck.createCardToken(testCard);
+            assertEquals(resp.hasError, false);
+            assertEquals("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", resp.model.getCardToken());
+            assertEquals(testCardToken, resp.model.getCard());
+        } catch (CheckoutException|IOException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void metricsTest() {
+        init();
+        String body = gson.toJson(new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, testCardToken));
+        stubFor(post(urlEqualTo("/tokens/card"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(body)));
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .willReturn(aResponse()
+                        .withStatus(401)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(gson.toJson(new ResponseError("70000", "Your API key is invalid.", null, null)))));
+        try {
+            ck.setMetrics(new CheckoutMetrics());
+            ck.createCardToken(testCard);
+            ck.createCardToken(testCard);
+            ck.getCardProviders();
+        } catch (CheckoutException|IOException e) {
+            fail(e.getMessage());
+        }
+
+        CheckoutMetrics.Snapshot snapshot = ck.getMetrics().snapshot();
+        EndpointMetrics.Snapshot tokens = snapshot.getEndpoint("CREATECARDTOKEN");
+        assertEquals(2, tokens.getTotal().getCount());
+        assertEquals(Long.valueOf(2), tokens.getStatusCounts().get(200));
+        assertEquals(2 * gson.toJson(testCard).length(), tokens.getBytesSent());
+        assertEquals(2 * body.length(), tokens.getBytesReceived());
+        assertEquals(0, tokens.getFailures());
+
+        EndpointMetrics.Snapshot providers = snapshot.getEndpoint("GETCARDPROVIDERS");
+        assertEquals(1, providers.getTotal().getCount());
+        assertEquals(Long.valueOf(1), providers.getStatusCounts().get(401));
+        assertEquals(Long.valueOf(1), providers.getErrorCodeCounts().get("70000"));
+    }
+
+    @Test
+    public void stubTransportTest() {
+        init();
+        StubTransport transport = new StubTransport(gson)
+                .stub("CREATECARDTOKEN", new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, testCardToken))
+                .stub("CREATECARDTOKEN", 401, new ResponseError("70000", "Your API key is invalid.", null, null))
+                .stub("GETCARDPROVIDERS", new CardProviderResponse("list", cp.size(), cp));
+        ck.setTransport(transport);
+        try {
+            Response<CardTokenResponse> resp = ck.createCardToken(testCard);
+            assertEquals(false, resp.hasError);
+            assertEquals(testCardToken, resp.model.getCard());
+
+            resp = ck.createCardToken(testCard);
+            assertEquals(true, resp.hasError);
+            assertEquals(401, resp.httpStatus);
+            assertEquals("70000", resp.error.errorCode);
+
+            assertEquals(cp, ck.getCardProviders().model.getData());
+            assertEquals(3, transport.getRequestCount());
+        } catch (CheckoutException|IOException e) {
+            fail(e.getMessage());
+        } finally {
+            ck.setTransport(null);
+        }
+    }
+
+    /*
+     * The first token request gets a 503, the following ones a token
+     */
+    private void stubUnavailableOnce(String retryAfter) {
+        stubFor(post(urlEqualTo("/tokens/card"))
+                .inScenario("retry")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse()
+                        .withStatus(503)
+                        .withHeader("Retry-After", retryAfter)
+                        .withBody(gson.toJson(new ResponseError("503", "Service unavailable", null, null))))
+                .willSetStateTo("available"));
+        stubFor(post(urlEqualTo("/tokens/card"))
+                .inScenario("retry")
+                .whenScenarioStateIs("available")
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(gson.toJson(new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, testCardToken)))));
+    }
+
+    @Test
+    public void createCardTokenRetryTest() throws Exception {
+        init();
+        stubUnavailableOnce("0");
+        Response<CardTokenResponse> resp = ck.createCardToken(testCard);
+        assertEquals(503, resp.httpStatus);
+        assertEquals("0", resp.retryAfter);
+
+        wireMockRule.resetScenarios();
+        ck.setRetryPolicy(new RetryPolicy(3, 10, 100));
+        resp = ck.createCardToken(testCard);
+        assertEquals(false, resp.hasError);
+        assertEquals(testCardToken, resp.model.getCard());
+        verify(3, postRequestedFor(urlEqualTo("/tokens/card")));
+    }
+
+    @Test
+    public void createCardTokenRetryAfterTooLongTest() throws Exception {
+        init();
+        stubUnavailableOnce("3600");
+        ck.setRetryPolicy(new RetryPolicy(3, 10, 100));
+        Response<CardTokenResponse> resp = ck.createCardToken(testCard);
+        assertEquals(503, resp.httpStatus);
+        verify(1, postRequestedFor(urlEqualTo("/tokens/card")));
+    }
+
+    @Test
+    public void createCardTokenNioRetryTest() throws Exception {
+        init();
+        stubUnavailableOnce("0");
+        NioTransport transport = new NioTransport();
+        ck.setTransport(transport);
+        ck.setRetryPolicy(new RetryPolicy(3, 10, 100));
+        try {
+            Response<CardTokenResponse> resp = ck.createCardTokenAsync(testCard, null).get(5, TimeUnit.SECONDS);
+            assertEquals(false, resp.hasError);
+            assertEquals(testCardToken, resp.model.getCard());
+            verify(2, postRequestedFor(urlEqualTo("/tokens/card")));
+        } finally {
+            ck.setTransport(null);
+            transport.close();
+        }
+    }
+
+    @Test
+    public void getCardProvidersHedgedTest() throws Exception {
+        init();
+        String body = gson.toJson(new CardProviderResponse("list", cp.size(), cp));
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .inScenario("hedging")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(3000)
+                        .withBody(body))
+                .willSetStateTo("fast"));
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .inScenario("hedging")
+                .whenScenarioStateIs("fast")
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody(body)));
+        ck.setHedging(true);
+        long start = System.nanoTime();
+        assertEquals(cp, ck.getCardProviders().model.getData());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        verify(2, getRequestedFor(urlEqualTo("/providers/cards")));
+    }
+
+    @Test
+    public void getCardProvidersHedgedResilienceTest() throws Exception {
+        init();
+        String body = gson.toJson(new CardProviderResponse("list", cp.size(), cp));
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .inScenario("hedging")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(1500)
+                        .withBody(body))
+                .willSetStateTo("fast"));
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .inScenario("hedging")
+                .whenScenarioStateIs("fast")
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody(body)));
+        final AtomicInteger acquired = new AtomicInteger();
+        final AtomicInteger recorded = new AtomicInteger();
+        ck.setResilience(new Resilience() {
+            @Override
+            protected Bulkhead newBulkhead(String environment) {
+                return new Bulkhead(environment, 1);
+            }
+
+            @Override
+            protected CircuitBreaker newCircuitBreaker(String endpoint) {
+                return new CircuitBreaker(endpoint) {
+                    @Override
+                    public boolean tryAcquire() {
+                        acquired.incrementAndGet();
+                        return super.tryAcquire();
+                    }
+
+                    @Override
+                    public void onSuccess(long durationNanos) {
+                        recorded.incrementAndGet();
+                        super.onSuccess(durationNanos);
+                    }
+
+                    @Override
+                    public void onFailure(long durationNanos) {
+                        recorded.incrementAndGet();
+                        super.onFailure(durationNanos);
+                    }
+                };
+            }
+        });
+        ck.setHedging(true);
+        /* both copies go through a bulkhead of a single permit, which is given back once the first one answered */
+        long start = System.nanoTime();
+        assertEquals(cp, ck.getCardProviders().model.getData());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(0, ck.getResilience().getBulkhead("SANDBOX").getInFlight());
+        verify(2, getRequestedFor(urlEqualTo("/providers/cards")));
+        /* the cancelled copy is not recorded by the circuit breaker, even once it is over */
+        Thread.sleep(1500);
+        assertEquals(1, acquired.get());
+        assertEquals(1, recorded.get());
+    }
+
+    @Test
+    public void getCardProvidersHedgedAsyncTest() throws Exception {
+        init();
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(400)
+                        .withBody(gson.toJson(new CardProviderResponse("list", cp.size(), cp)))));
+        ck.setHedging(true);
+        /* more calls than threads in the executor, each one sending two attempts */
+        List<Future<Response<CardProviderResponse>>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(ck.getCardProvidersAsync(null));
+        }
+        for (Future<Response<CardProviderResponse>> future : futures) {
+            assertEquals(cp, future.get(5, TimeUnit.SECONDS).model.getData());
+        }
+    }
+
+    @Test
+    public void createCardTokenDeadlineTest() {
+        init();
+        stubFor(post(urlEqualTo("/tokens/card"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(3000)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(gson.toJson(new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, testCardToken)))));
+        long start = System.nanoTime();
+        try {
+            ck.createCardToken(testCard, 300);
+            fail("Expected a CheckoutException to be thrown");
+        } catch (CheckoutException e) {
+            assertEquals(CheckoutException.CKExceptionType.DEADLINE_EXCEEDED, e.getType());
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    public void createCardTokenDeadlineStopsRetriesTest() throws Exception {
+        init();
+        stubUnavailableOnce("2");
+        ck.setRetryPolicy(new RetryPolicy(3, 10, 5000));
+        long start = System.nanoTime();
+        Response<CardTokenResponse> resp = ck.createCardToken(testCard, 500);
+        assertEquals(503, resp.httpStatus);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+        verify(1, postRequestedFor(urlEqualTo("/tokens/card")));
+    }
+
+    @Test
+    public void createCardTokenAsyncDeadlineStopsRetriesTest() throws Exception {
+        init();
+        stubUnavailableOnce("2");
+        NioTransport transport = new NioTransport();
+        ck.setTransport(transport);
+        ck.setRetryPolicy(new RetryPolicy(3, 10, 5000));
+        try {
+            /* the retry would start after the deadline, the call completes with the last response instead of timing out */
+            Response<CardTokenResponse> resp = ck.createCardTokenAsync(testCard, 500, null).get(2, TimeUnit.SECONDS);
+            assertEquals(503, resp.httpStatus);
+            verify(1, postRequestedFor(urlEqualTo("/tokens/card")));
+        } finally {
+            ck.setTransport(null);
+            transport.close();
+        }
+    }
+
+    @Test
+    public void getCardProvidersStubDeadlineTest() throws Exception {
+        init();
+        StubTransport transport = new StubTransport(gson).stub("GETCARDPROVIDERS", new CardProviderResponse("list", cp.size(), cp));
+        transport.setLatency(1, 1, TimeUnit.SECONDS);
+        ck.setTransport(transport);
+        try {
+            ck.getCardProviders(100);
+            fail("Expected a CheckoutException to be thrown");
+        } catch (CheckoutException e) {
+            assertEquals(CheckoutException.CKExceptionType.DEADLINE_EXCEEDED, e.getType());
+        } finally {
+            ck.setTransport(null);
+        }
+    }
+
+    @Test
+    public void circuitBreakerTest() throws Exception {
+        init();
+        StubTransport transport = new StubTransport(gson).stub("CREATECARDTOKEN", 503, new ResponseError("503", "Service unavailable", null, null));
+        ck.setTransport(transport);
+        ck.setResilience(new Resilience() {
+            @Override
+            protected CircuitBreaker newCircuitBreaker(String endpoint) {
+                return new CircuitBreaker(endpoint, 10, 3, 50, 100, 5000, 60000, 1);
+            }
+        });
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(503, ck.createCardToken(testCard).httpStatus);
+            }
+            try {
+                ck.createCardToken(testCard);
+                fail("Expected a CheckoutException to be thrown");
+            } catch (CheckoutException e) {
+                assertEquals(CheckoutException.CKExceptionType.CIRCUIT_OPEN, e.getType());
+            }
+            assertEquals(3, transport.getRequestCount());
+            assertEquals(CircuitBreaker.State.OPEN, ck.getResilience().getCircuitBreaker("CREATECARDTOKEN").getState());
+            assertEquals(CircuitBreaker.State.CLOSED, ck.getResilience().getCircuitBreaker("GETCARDPROVIDERS").getState());
+        } finally {
+            ck.setTransport(null);
+        }
+    }
+
+    @Test
+    public void bulkheadTest() throws Exception {
+        init();
+        StubTransport transport = new StubTransport(gson).stub("CREATECARDTOKEN", new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, testCardToken));
+        transport.setLatency(500, 500, TimeUnit.MILLISECONDS);
+        ck.setTransport(transport);
+        ck.setResilience(new Resilience() {
+            @Override
+            protected Bulkhead newBulkhead(String environment) {
+                return new Bulkhead(environment, 1);
+            }
+        });
+        try {
+            Future<Response<CardTokenResponse>> first = ck.createCardTokenAsync(testCard, null);
+            Thread.sleep(100);
+            try {
+                ck.createCardToken(testCard);
+                fail("Expected a CheckoutException to be thrown");
+            } catch (CheckoutException e) {
+                assertEquals(CheckoutException.CKExceptionType.BULKHEAD_FULL, e.getType());
+            }
+            assertEquals(testCardToken, first.get(5, TimeUnit.SECONDS).model.getCard());
+            assertEquals(testCardToken, ck.createCardToken(testCard).model.getCard());
+            assertEquals(0, ck.getResilience().getBulkhead("SANDBOX").getInFlight());
+        } finally {
+            ck.setTransport(null);
+        }
+    }
+
+    @Test
+    public void builderTest() throws Exception {
+        initCard();
+        CheckoutMetrics metrics = new CheckoutMetrics();
+        CheckoutKit.Builder builder = new CheckoutKit.Builder().environment(CheckoutKit.Environment.LIVE).debug(false).metrics(metrics);
+        try {
+            builder.publicKey("pk_test_6ff46046-30af-419-bf58-929022d2cd").build();
+            fail("Expected a CheckoutException to be thrown");
+        } catch (CheckoutException e) {
+            assertEquals(CheckoutException.CKExceptionType.INVALID_PUBLIC_KEY, e.getType());
+        }
+        CheckoutKit first = builder.publicKey("pk_test_6ff46046-30af-41d9-bf58-929022d2cd14").build();
+        CheckoutKit second = builder.publicKey("pk_test_6ff46046-30af-41d9-bf58-929022d200c4").build();
+        assertTrue(first.isImmutable());
+        assertEquals("pk_test_6ff46046-30af-41d9-bf58-929022d2cd14", first.getPublicKey());
+        assertEquals("pk_test_6ff46046-30af-41d9-bf58-929022d200c4", second.getPublicKey());
+        assertEquals(CheckoutKit.Environment.LIVE, first.getEnvironment());
+        assertEquals(false, first.getDebugMode());
+        assertTrue(first.getMetrics() == metrics && second.getMetrics() == metrics);
+        try {
+            first.setPublicKey("pk_test_6ff46046-30af-41d9-bf58-929022d200c4");
+            fail("Expected an IllegalStateException to be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("pk_test_6ff46046-30af-41d9-bf58-929022d2cd14", first.getPublicKey());
+        }
+        try {
+            first.setEnvironment(CheckoutKit.Environment.SANDBOX);
+            fail("Expected an IllegalStateException to be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals(CheckoutKit.Environment.LIVE, first.getEnvironment());
+        }
+        /* the connector handed out by getTransport cannot change the settings either */
+        HttpConnector connector = (HttpConnector) first.getTransport();
+        assertTrue(connector.isFrozen());
+        try {
+            connector.setDebug(true);
+            fail("Expected an IllegalStateException to be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals(false, first.getDebugMode());
+        }
+        try {
+            connector.setMetrics(null);
+            fail("Expected an IllegalStateException to be thrown");
+        } catch (IllegalStateException e) {
+            assertTrue(first.getMetrics() == metrics);
+        }
+        try {
+            connector.setConnectionPool(new ConnectionPool());
+            fail("Expected an IllegalStateException to be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals(null, connector.getConnectionPool());
+        }
+        try {
+            connector.setLogger(null);
+            fail("Expected an IllegalStateException to be thrown");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            connector.setReadTimeout(1);
+            fail("Expected an IllegalStateException to be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals(HttpConnector.DEFAULT_READ_TIMEOUT, connector.getReadTimeout());
+        }
+    }
+
+    @Test
+    public void registryTest() throws Exception {
+        initCard();
+        final String[] keys = {"pk_test_6ff46046-30af-41d9-bf58-929022d2cd14", "pk_test_6ff46046-30af-41d9-bf58-929022d200c4",
+                "pk_test_6ff46046-30af-41d9-bf58-929022d20001", "pk_test_6ff46046-30af-41d9-bf58-929022d20002"};
+        for (String key : keys) {
+            stubFor(post(urlEqualTo("/tokens/card"))
+                    .withHeader("Authorization", equalTo(key))
+                    .willReturn(aResponse()
+                            .withStatus(200)
+                            .withBody(gson.toJson(new CardTokenResponse("card_tok_" + key, false, "2015-08-03T14:56:14Z", false, testCardToken)))));
+        }
+        final CheckoutKitRegistry registry = new CheckoutKitRegistry(new CheckoutKit.Builder().debug(false));
+        for (String key : keys) {
+            CheckoutKit merchant = registry.get(key);
+            assertTrue(merchant == registry.get(key));
+            merchant.baseUrlOverride = "http://localhost:8080/";
+        }
+        assertEquals(keys.length, registry.size());
+        assertTrue(registry.get(keys[0]).getMetrics() == registry.get(keys[1]).getMetrics());
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            Thread th = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 10; i++) {
+                            String key = keys[(thread + i) % keys.length];
+                            assertEquals("card_tok_" + key, registry.get(key).createCardToken(testCard).model.getCardToken());
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            });
+            th.start();
+            threads.add(th);
+        }
+        start.countDown();
+        for (Thread th : threads) th.join(10000);
+        if (error.get() != null) throw new AssertionError(error.get());
+        assertEquals(80, registry.get(keys[0]).getMetrics().snapshot().getEndpoint("CREATECARDTOKEN").getTotal().getCount());
+        try {
+            registry.get("pk_invalid");
+            fail("Expected a CheckoutException to be thrown");
+        } catch (CheckoutException e) {
+            assertEquals(CheckoutException.CKExceptionType.INVALID_PUBLIC_KEY, e.getType());
+        }
+    }
+
+    @Test
+    public void createCardTokenPooledConnectionTest() {
+        init();
+        stubFor(post(urlEqualTo("/tokens/card"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(gson.toJson(new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, testCardToken)))));
+        ConnectionPool pool = new ConnectionPool(2, 60000, 3);
+        try {
+            ck.setConnectionPool(pool);
+            ck.warmUp();
+            for (int i = 0; i < 5; i++) {
+                Response<CardTokenResponse> resp = ck.createCardToken(testCard);
+                assertEquals(resp.hasError, false);
+                assertEquals(testCardToken, resp.model.getCard());
+            }
+            assertEquals(0, pool.getActiveRequests("localhost:8080"));
+        } catch (CheckoutException|IOException e) {
+            fail(e.getMessage());
+        } finally {
+            ck.setConnectionPool(null);
+        }
+    }
+
+    @Test
+    public void createCardTokenAsyncTest() throws Exception {
+        init();
+        stubFor(post(urlEqualTo("/tokens/card"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(gson.toJson(new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, testCardToken)))));
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Response<CardTokenResponse>> received = new AtomicReference<>();
+        Future<Response<CardTokenResponse>> future = ck.createCardTokenAsync(testCard, new CheckoutCallback<CardTokenResponse>() {
+            @Override
+            public void onResponse(Response<CardTokenResponse> response) {
+                received.set(response);
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                latch.countDown();
+            }
+        });
+        assertEquals(testCardToken, future.get(5, TimeUnit.SECONDS).model.getCard());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(testCardToken, received.get().model.getCard());
+    }
+
+    @Test
+    public void circuitBreakerCancelledTest() throws Exception {
+        init();
+        stubFor(post(urlEqualTo("/tokens/card"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(2000)
+                        .withBody(gson.toJson(new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, testCardToken)))));
+        NioTransport transport = new NioTransport();
+        ck.setTransport(transport);
+        ck.setResilience(new Resilience() {
+            @Override
+            protected CircuitBreaker newCircuitBreaker(String endpoint) {
+                return new CircuitBreaker(endpoint, 10, 1, 50, 100, 5000, 60000, 1);
+            }
+        });
+        try {
+            /* cancelled calls are neither successes nor failures, a single failure would open the circuit */
+            for (int i = 0; i < 3; i++) {
+                Future<Response<CardTokenResponse>> future = ck.createCardTokenAsync(testCard, null);
+                Thread.sleep(100);
+                assertTrue(future.cancel(true));
+            }
+            Future<Response<CardTokenResponse>> timedOut = ck.createCardTokenAsync(testCard, 100, null);
+            try {
+                timedOut.get(5, TimeUnit.SECONDS);
+                fail("Expected the call to be cancelled");
+            } catch (CancellationException e) {
+                // expected
+            }
+            assertEquals(CircuitBreaker.State.CLOSED, ck.getResilience().getCircuitBreaker("CREATECARDTOKEN").getState());
+        } finally {
+            ck.setTransport(null);
+            transport.close();
+        }
+    }
+
+    @Test
+    public void createCardTokenNioTest() throws Exception {
+        init();
+        stubFor(post(urlEqualTo("/tokens/card"))
+                .withHeader("AUTHORIZATION", equalTo("pk_test_6ff46046-30af-41d9-bf58-929022d2cd14"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(gson.toJson(new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, testCardToken)))));
+        NioTransport transport = new NioTransport();
+        ck.setTransport(transport);
+        try {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final AtomicReference<Response<CardTokenResponse>> result = new AtomicReference<>();
+            ck.createCardTokenAsync(testCard, new CheckoutCallback<CardTokenResponse>() {
+                @Override
+                public void onResponse(Response<CardTokenResponse> response) {
+                    result.set(response);
+                    latch.countDown();
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    latch.countDown();
+                }
+            });
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(testCardToken, result.get().model.getCard());
+            assertEquals(testCardToken, ck.createCardToken(testCard).model.getCard());
+        } finally {
+            ck.setTransport(null);
+            transport.close();
+        }
+    }
+
+    @Test
+    public void createCardTokenAsyncTimeoutTest() throws Exception {
+        init();
+        stubFor(post(urlEqualTo("/tokens/card"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(2000)
+                        .withBody(gson.toJson(new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, testCardToken)))));
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        Future<Response<CardTokenResponse>> future = ck.createCardTokenAsync(testCard, 100, new CheckoutCallback<CardTokenResponse>() {
+            @Override
+            public void onResponse(Response<CardTokenResponse> response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                failure.set(e);
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(failure.get() instanceof TimeoutException);
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void batchTokenizeTest() throws Exception {
+        init();
+        final CardTokenResponse token = new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, testCardToken);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final CountDownLatch full = new CountDownLatch(4);
+        final CountDownLatch release = new CountDownLatch(1);
+        /* transport holding every request until release is opened, so the requests pile up to the limit */
+        ck.setTransport(new Transport() {
+            @Override
+            public <T> Response<T> execute(Request request, Class<T> returnType) throws IOException {
+                int n = inFlight.incrementAndGet();
+                synchronized (maxInFlight) {
+                    maxInFlight.set(Math.max(maxInFlight.get(), n));
+                }
+                full.countDown();
+                try {
+                    if (!release.await(5, TimeUnit.SECONDS)) throw new IOException("Not released");
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                Response<T> response = new Response<T>(returnType.cast(token));
+                response.httpStatus = 200;
+                return response;
+            }
+        });
+        try {
+            final List<Card> cards = new ArrayList<>();
+            for (int i = 0; i < 40; i++) cards.add(testCard);
+            final BatchTokenizer tokenizer = new BatchTokenizer(ck, 4);
+            final AtomicReference<List<BatchTokenizer.Outcome>> results = new AtomicReference<>();
+            Thread batch = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        results.set(tokenizer.tokenize(cards.iterator()));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            batch.start();
+            assertTrue(full.await(5, TimeUnit.SECONDS));
+            /* give a fifth request the time to be sent if the limit did not hold */
+            Thread.sleep(200);
+            assertEquals(4, inFlight.get());
+            assertEquals(4, tokenizer.getInFlight());
+            release.countDown();
+            batch.join(5000);
+
+            assertEquals(40, results.get().size());
+            for (BatchTokenizer.Outcome outcome : results.get()) {
+                assertTrue(outcome.isSuccess());
+                assertEquals(testCardToken, outcome.getResponse().model.getCard());
+            }
+            assertEquals(40, tokenizer.getSucceeded());
+            assertEquals(0, tokenizer.getFailed());
+            assertEquals(4, maxInFlight.get());
+            assertTrue(tokenizer.getThroughput() > 0);
+        } finally {
+            release.countDown();
+            ck.setTransport(null);
+        }
+    }
+
     @Test
     public void createCardTokenWrongPKTest() {
         CheckoutKit.destroy();
@@ -0,0 +1,73 @@
+package com.checkout;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PublicKeyValidatorTest {
+
+    private static final Pattern PATTERN = Pattern.compile(PublicKeyValidator.REGEX);
+    private static final String ALPHABET = "abcXYZ019_-. \n\u00e9";
+
+    private void assertSameAsRegex(String pk) {
+        assertEquals(pk, PATTERN.matcher(pk).matches(), PublicKeyValidator.matches(pk));
+    }
+
+    @Test
+    public void keysTest() throws Exception {
+        String[] keys = {
+                "pk_test_6ff46046-30af-41d9-bf58-929022d2cd14",
+                "pk_1ADBEB2D-2BEA-4F82-8ABC-EDE3A1201C8D",
+                "pk_test_abc-30af-41d9-bf58-929022d2cd14",
+                "pk_test_6ff46046-30af-419-bf58-929022d2cd",
+                "pk_6ff46046-30af-41d9-bf58-929022d2cd14_",
+                "pk_test_6ff46046-30af-41d9-bf58-929022d2cd14\n",
+                "pk_test_6ff4604630af-41d9-bf58-929022d2cd14-",
+                "pk_live_6ff46046-30af-41d9-bf58-929022d2cd14",
+                "sk_test_6ff46046-30af-41d9-bf58-929022d2cd14",
+                "pk_test_6ff46046-30af-41d9-bf58-929022d2cd1\u00e9",
+                "pk_________-____-____-____-____________",
+                "pk_", "pk_test_", ""};
+        for (String key : keys) {
+            assertSameAsRegex(key);
+        }
+    }
+
+    @Test
+    public void mutatedKeysTest() throws Exception {
+        Random random = new Random(42);
+        String[] seeds = {"pk_test_6ff46046-30af-41d9-bf58-929022d2cd14", "pk_1ADBEB2D-2BEA-4F82-8ABC-EDE3A1201C8D"};
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder sb = new StringBuilder(seeds[i % seeds.length]);
+            for (int m = random.nextInt(3); m >= 0; m--) {
+                int pos = random.nextInt(sb.length());
+                char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+                switch (random.nextInt(3)) {
+                    case 0: sb.setCharAt(pos, c); break;
+                    case 1: sb.insert(pos, c); break;
+                    default: sb.deleteCharAt(pos); break;
+                }
+            }
+            assertSameAsRegex(sb.toString());
+        }
+    }
+
+    @Test
+    public void cacheTest() throws Exception {
+        PublicKeyValidator.clearCache();
+        String key = "pk_test_6ff46046-30af-41d9-bf58-929022d2cd14";
+        assertTrue(PublicKeyValidator.isValid(key));
+        assertTrue(PublicKeyValidator.isValid(new String(key)));
+        assertFalse(PublicKeyValidator.isValid("pk_test_6ff46046-30af-419-bf58-929022d2cd"));
+        assertFalse(PublicKeyValidator.isValid(null));
+        for (int i = 0; i < PublicKeyValidator.CACHE_SIZE * 4; i++) {
+            assertTrue(PublicKeyValidator.isValid(String.format("pk_test_%08d-30af-41d9-bf58-929022d2cd14", i)));
+        }
+        assertTrue(PublicKeyValidator.isValid(key));
+    }
+}
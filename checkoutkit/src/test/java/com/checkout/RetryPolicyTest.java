@@ -0,0 +1,56 @@
+package com.checkout;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void retryableTest() {
+        RetryPolicy policy = new RetryPolicy();
+        assertTrue(policy.isRetryable(429));
+        assertTrue(policy.isRetryable(500));
+        assertTrue(policy.isRetryable(503));
+        assertFalse(policy.isRetryable(501));
+        assertFalse(policy.isRetryable(200));
+        assertFalse(policy.isRetryable(401));
+        assertTrue(policy.isRetryable(new ConnectException()));
+        assertTrue(policy.isRetryable(new SocketTimeoutException()));
+        assertFalse(policy.isRetryable(new InterruptedIOException()));
+        assertFalse(policy.isRetryable(new UnknownHostException()));
+        assertFalse(policy.isRetryable(new IOException()));
+    }
+
+    @Test
+    public void backoffTest() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000);
+        for (int i = 0; i < 1000; i++) {
+            long first = policy.delayBefore(2, null);
+            assertTrue(first >= 0 && first < 100);
+            long third = policy.delayBefore(4, null);
+            assertTrue(third >= 0 && third < 400);
+            long last = policy.delayBefore(10, null);
+            assertTrue(last >= 0 && last < 1000);
+        }
+    }
+
+    @Test
+    public void retryAfterTest() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 5000);
+        assertEquals(2000, policy.delayBefore(2, "2"));
+        assertEquals(-1, policy.delayBefore(2, "60"));
+        assertEquals(0, RetryPolicy.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT", 1445412480000L + 1000));
+        assertEquals(30000, RetryPolicy.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT", 1445412480000L - 30000));
+        assertEquals(-1, RetryPolicy.parseRetryAfter("soon", 0));
+        assertEquals(-1, RetryPolicy.parseRetryAfter(null, 0));
+    }
+}
@@ -0,0 +1,326 @@
+package com.checkout.httpconnector;
+
+import com.checkout.exceptions.DeadlineExceededException;
+import com.checkout.logger.Log;
+import com.checkout.logger.LogAppender;
+import com.checkout.metrics.CheckoutMetrics;
+import com.checkout.metrics.EndpointMetrics;
+import com.checkout.models.CardProvider;
+import com.checkout.models.CardProviderResponse;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.google.gson.Gson;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpConnectorTest {
+
+    private static final int KEYS = 8;
+    private static final int THREADS = 16;
+    private static final int REQUESTS_PER_THREAD = 25;
+
+    private Gson gson = new Gson();
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(8080);
+
+    /*
+     * Even keys get a successful response naming the key, odd keys get an error whose status and code depend on the key
+     */
+    private void stubKeys() {
+        for (int k = 0; k < KEYS; k++) {
+            String key = "key_" + k;
+            if (k % 2 == 0) {
+                List<CardProvider> data = Collections.singletonList(new CardProvider("cp_" + k, key, true));
+                stubFor(get(urlEqualTo("/providers/cards"))
+                        .withHeader("Authorization", equalTo(key))
+                        .willReturn(aResponse()
+                                .withStatus(200)
+                                .withFixedDelay(k * 3)
+                                .withBody(gson.toJson(new CardProviderResponse("list", 1, data)))));
+            } else {
+                stubFor(get(urlEqualTo("/providers/cards"))
+                        .withHeader("Authorization", equalTo(key))
+                        .willReturn(aResponse()
+                                .withStatus(400 + k)
+                                .withFixedDelay(k * 3)
+                                .withBody(gson.toJson(new ResponseError(key, "error " + k, null, null)))));
+            }
+        }
+    }
+
+    private void concurrentRequests(final HttpConnector connector) throws Exception {
+        stubKeys();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                        int k = (thread + i) % KEYS;
+                        Response<CardProviderResponse> resp = connector.getRequest("http://localhost:8080/providers/cards", "key_" + k, CardProviderResponse.class);
+                        if (k % 2 == 0) {
+                            assertEquals(false, resp.hasError);
+                            assertEquals(200, resp.httpStatus);
+                            assertEquals(Collections.singletonList(new CardProvider("cp_" + k, "key_" + k, true)), resp.model.getData());
+                        } else {
+                            assertEquals(true, resp.hasError);
+                            assertEquals(400 + k, resp.httpStatus);
+                            assertEquals("key_" + k, resp.error.errorCode);
+                            assertNull(resp.model);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<Void> f : futures) f.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentRequestsTest() throws Exception {
+        concurrentRequests(new HttpConnector(gson, false, Log.getLog()));
+    }
+
+    @Test
+    public void concurrentPooledRequestsTest() throws Exception {
+        HttpConnector connector = new HttpConnector(gson, false, Log.getLog());
+        ConnectionPool pool = new ConnectionPool(4, 60000, 10);
+        connector.setConnectionPool(pool);
+        concurrentRequests(connector);
+        assertEquals(0, pool.getActiveRequests("localhost:8080"));
+    }
+
+    @Test
+    public void connectionPoolTest() throws Exception {
+        String maxConnections = System.getProperty("http.maxConnections");
+        ConnectionPool pool = new ConnectionPool(2, 60000, 3);
+        assertEquals(maxConnections, System.getProperty("http.maxConnections"));
+
+        ConnectionPool.Slot a = pool.acquire("host:1");
+        ConnectionPool.Slot b = pool.acquire("host:1");
+        assertEquals(2, pool.getActiveRequests("host:1"));
+        assertFalse(pool.shouldRecycle(a));
+        assertFalse(pool.shouldRecycle(a));
+        assertFalse(pool.shouldRecycle(b));
+        assertTrue(pool.shouldRecycle(a));
+        pool.release(a, true);
+        pool.release(b, false);
+        assertEquals(0, pool.getActiveRequests("host:1"));
+        /* the most recently released slot is reused first, and keeps its count */
+        assertTrue(b == pool.acquire("host:1"));
+        assertEquals(1, b.getRequests());
+        assertTrue(a == pool.acquire("host:1"));
+        assertEquals(0, a.getRequests());
+    }
+
+    @Test
+    public void warmUpDeadlineTest() throws Exception {
+        HttpConnector connector = new HttpConnector(gson, false, Log.getLog());
+        ConnectionPool pool = new ConnectionPool(1, 60000, 3);
+        connector.setConnectionPool(pool);
+        connector.setConnectTimeout(200);
+        /* the only slot is busy, the warm-up gives up after the connect timeout */
+        ConnectionPool.Slot busy = pool.acquire("localhost:8080");
+        long start = System.nanoTime();
+        try {
+            connector.warmUp("http://localhost:8080/providers/cards");
+            fail("Expected a DeadlineExceededException to be thrown");
+        } catch (DeadlineExceededException e) {
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        } finally {
+            pool.release(busy, false);
+        }
+        assertEquals(0, pool.getActiveRequests("localhost:8080"));
+    }
+
+    @Test
+    public void recycleIntervalTest() throws Exception {
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody(gson.toJson(new CardProviderResponse("list", 0, null)))));
+        HttpConnector connector = new HttpConnector(gson, false, Log.getLog());
+        connector.setConnectionPool(new ConnectionPool(1, 60000, 3));
+        for (int i = 0; i < 7; i++) {
+            connector.getRequest("http://localhost:8080/providers/cards", "key", CardProviderResponse.class);
+        }
+        verify(2, getRequestedFor(urlEqualTo("/providers/cards")).withHeader("Connection", equalTo("close")));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecatedLoggerTest() throws Exception {
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody(gson.toJson(new CardProviderResponse("list", 0, null)))));
+        new HttpConnector(gson, false, Log.getLog());
+        assertTrue(HttpConnector.logger == Log.getLog());
+
+        final List<String> entries = Collections.synchronizedList(new ArrayList<String>());
+        LogAppender appender = Log.getLog().getAppender();
+        Log.getLog().setAppender(new LogAppender() {
+            @Override
+            public void append(long timeMillis, Log.Level level, String message) {
+                entries.add(message);
+            }
+
+            @Override
+            public void flush() {
+            }
+        });
+        try {
+            /* a connector created without a logger uses the one assigned to the static field */
+            HttpConnector connector = new HttpConnector(gson, true, null);
+            assertNull(HttpConnector.logger);
+            HttpConnector.logger = Log.getLog();
+            connector.getRequest("http://localhost:8080/providers/cards", "key", CardProviderResponse.class);
+            assertFalse(entries.isEmpty());
+        } finally {
+            Log.getLog().setAppender(appender);
+        }
+    }
+
+    @Test
+    public void readTimeoutTest() throws Exception {
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(2000)
+                        .withBody(gson.toJson(new CardProviderResponse("list", 0, null)))));
+        HttpConnector connector = new HttpConnector(gson, false, Log.getLog());
+        assertEquals(HttpConnector.DEFAULT_READ_TIMEOUT, connector.getReadTimeout());
+        connector.setReadTimeout(200);
+        try {
+            connector.getRequest("http://localhost:8080/providers/cards", "key_0", CardProviderResponse.class);
+            fail("Expected a SocketTimeoutException to be thrown");
+        } catch (SocketTimeoutException e) {
+            // expected
+        }
+    }
+
+    /*
+     * Compresses a body with zlib or, if raw is true, with raw deflate
+     */
+    static byte[] deflate(byte[] body, boolean raw) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw));
+        deflater.write(body);
+        deflater.close();
+        return out.toByteArray();
+    }
+
+    private List<CardProvider> providers() {
+        List<CardProvider> data = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            data.add(new CardProvider("cp_" + i, "PROVIDER_" + i, true));
+        }
+        return data;
+    }
+
+    @Test
+    public void gzipResponseTest() throws Exception {
+        List<CardProvider> data = providers();
+        byte[] body = gson.toJson(new CardProviderResponse("list", data.size(), data)).getBytes("UTF-8");
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .withHeader("Accept-Encoding", containing("gzip"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Encoding", "gzip")
+                        .withBody(ContentEncoding.gzip(body))));
+        HttpConnector connector = new HttpConnector(gson, false, Log.getLog());
+        connector.setMetrics(new CheckoutMetrics());
+        Response<CardProviderResponse> resp = connector.getRequest("http://localhost:8080/providers/cards", "key_0", CardProviderResponse.class, null, "GETCARDPROVIDERS");
+        assertEquals(data, resp.model.getData());
+
+        EndpointMetrics.Snapshot metrics = connector.getMetrics().snapshot().getEndpoint("GETCARDPROVIDERS");
+        assertEquals(body.length, metrics.getBytesReceivedUncompressed());
+        assertTrue(metrics.getBytesReceived() < body.length / 2);
+    }
+
+    @Test
+    public void deflateResponseTest() throws Exception {
+        List<CardProvider> data = providers();
+        byte[] body = gson.toJson(new CardProviderResponse("list", data.size(), data)).getBytes("UTF-8");
+        HttpConnector connector = new HttpConnector(gson, false, Log.getLog());
+        for (boolean raw : new boolean[]{false, true}) {
+            stubFor(get(urlEqualTo("/providers/cards"))
+                    .willReturn(aResponse()
+                            .withStatus(200)
+                            .withHeader("Content-Encoding", "deflate")
+                            .withBody(deflate(body, raw))));
+            assertEquals(data, connector.getRequest("http://localhost:8080/providers/cards", "key_0", CardProviderResponse.class).model.getData());
+        }
+    }
+
+    @Test
+    public void gzipErrorResponseTest() throws Exception {
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .willReturn(aResponse()
+                        .withStatus(401)
+                        .withHeader("Content-Encoding", "gzip")
+                        .withBody(ContentEncoding.gzip(gson.toJson(new ResponseError("70000", "Your API key is invalid.", null, null)).getBytes("UTF-8")))));
+        HttpConnector connector = new HttpConnector(gson, false, Log.getLog());
+        Response<CardProviderResponse> resp = connector.getRequest("http://localhost:8080/providers/cards", "key_0", CardProviderResponse.class);
+        assertEquals(401, resp.httpStatus);
+        assertEquals("70000", resp.error.errorCode);
+    }
+
+    @Test
+    public void gzipRequestTest() throws Exception {
+        List<CardProvider> data = providers();
+        stubFor(post(urlEqualTo("/tokens/card"))
+                .withHeader("Content-Encoding", equalTo("gzip"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody(gson.toJson(new CardProviderResponse("list", data.size(), data)))));
+        HttpConnector connector = new HttpConnector(gson, false, Log.getLog());
+        connector.setMetrics(new CheckoutMetrics());
+        connector.setRequestCompressionThreshold(256);
+        String payload = gson.toJson(data);
+        assertEquals(data, connector.postRequest("http://localhost:8080/tokens/card", "key_0", payload, CardProviderResponse.class, "BATCH").model.getData());
+
+        EndpointMetrics.Snapshot metrics = connector.getMetrics().snapshot().getEndpoint("BATCH");
+        assertEquals(payload.length(), metrics.getBytesSentUncompressed());
+        assertTrue(metrics.getBytesSent() < payload.length() / 2);
+    }
+}
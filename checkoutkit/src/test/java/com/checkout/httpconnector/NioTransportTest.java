@@ -0,0 +1,228 @@
+package com.checkout.httpconnector;
+
+import com.checkout.CheckoutCallback;
+import com.checkout.metrics.CheckoutMetrics;
+import com.checkout.models.CardProvider;
+import com.checkout.models.CardProviderResponse;
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NioTransportTest {
+
+    private Gson gson = new Gson();
+    private List<CardProvider> data = Collections.singletonList(new CardProvider("cp_1", "VISA", true));
+    private NioTransport transport;
+
+    @Rule
+    public WireMockRule wireMockRule = new WireMockRule(wireMockConfig().port(8080).httpsPort(8443));
+
+    @After
+    public void close() {
+        if (transport != null) transport.close();
+    }
+
+    private Request providersRequest(String base) {
+        return new Request(HttpConnector.HttpMethods.GET, base + "/providers/cards", "pk_test", null, null, "GETCARDPROVIDERS");
+    }
+
+    @Test
+    public void getRequestTest() throws Exception {
+        transport = new NioTransport();
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .withHeader("Authorization", equalTo("pk_test"))
+                .withHeader("Client-Id", equalTo("MobileKit.Android"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("ETag", "\"v1\"")
+                        .withBody(gson.toJson(new CardProviderResponse("list", 1, data)))));
+        Response<CardProviderResponse> resp = transport.execute(providersRequest("http://localhost:8080"), CardProviderResponse.class);
+        assertEquals(false, resp.hasError);
+        assertEquals(200, resp.httpStatus);
+        assertEquals("\"v1\"", resp.etag);
+        assertEquals(data, resp.model.getData());
+    }
+
+    @Test
+    public void gzipResponseTest() throws Exception {
+        transport = new NioTransport();
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .withHeader("Accept-Encoding", containing("gzip"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Encoding", "gzip")
+                        .withBody(ContentEncoding.gzip(gson.toJson(new CardProviderResponse("list", 1, data)).getBytes("UTF-8")))));
+        assertEquals(data, transport.execute(providersRequest("http://localhost:8080"), CardProviderResponse.class).model.getData());
+    }
+
+    @Test
+    public void postRequestTest() throws Exception {
+        transport = new NioTransport();
+        stubFor(post(urlEqualTo("/tokens/card"))
+                .withHeader("Content-Type", equalTo("application/json"))
+                .willReturn(aResponse()
+                        .withStatus(401)
+                        .withBody(gson.toJson(new ResponseError("70000", "Your API key is invalid.", null, null)))));
+        String payload = "{\"number\":\"4242424242424242\",\"name\":\"Zo\u00eb\"}";
+        Response<CardProviderResponse> resp = transport.execute(new Request(HttpConnector.HttpMethods.POST, "http://localhost:8080/tokens/card",
+                "pk_test", payload, null, "CREATECARDTOKEN"), CardProviderResponse.class);
+        assertEquals(true, resp.hasError);
+        assertEquals(401, resp.httpStatus);
+        assertEquals("70000", resp.error.errorCode);
+        assertNull(resp.model);
+        verify(postRequestedFor(urlEqualTo("/tokens/card")).withRequestBody(equalTo(payload)));
+    }
+
+    @Test
+    public void concurrentRequestsTest() throws Exception {
+        transport = new NioTransport(gson, 2, 16, null);
+        CheckoutMetrics metrics = new CheckoutMetrics();
+        transport.setMetrics(metrics);
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(10)
+                        .withBody(gson.toJson(new CardProviderResponse("list", 1, data)))));
+
+        final int requests = 300;
+        final CountDownLatch latch = new CountDownLatch(requests);
+        final AtomicInteger succeeded = new AtomicInteger();
+        for (int i = 0; i < requests; i++) {
+            transport.executeAsync(providersRequest("http://localhost:8080"), CardProviderResponse.class, new CheckoutCallback<CardProviderResponse>() {
+                @Override
+                public void onResponse(Response<CardProviderResponse> response) {
+                    if (!response.hasError && data.equals(response.model.getData())) succeeded.incrementAndGet();
+                    latch.countDown();
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertEquals(requests, succeeded.get());
+        assertEquals(Long.valueOf(requests), metrics.snapshot().getEndpoint("GETCARDPROVIDERS").getStatusCounts().get(200));
+        /* at most 16 connections were opened, so most requests reused one and did not pay for a connection */
+        assertTrue(metrics.snapshot().getEndpoint("GETCARDPROVIDERS").getConnect().getPercentile(50, TimeUnit.MICROSECONDS) < 1000);
+    }
+
+    @Test
+    public void cancelTest() throws Exception {
+        transport = new NioTransport();
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withFixedDelay(2000)
+                        .withBody(gson.toJson(new CardProviderResponse("list", 1, data)))));
+        Future<Response<CardProviderResponse>> future = transport.executeAsync(providersRequest("http://localhost:8080"), CardProviderResponse.class, null);
+        Thread.sleep(100);
+        assertTrue(future.cancel(true));
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void connectionRefusedTest() throws Exception {
+        transport = new NioTransport();
+        try {
+            transport.execute(providersRequest("http://localhost:1"), CardProviderResponse.class);
+            fail("The connection should be refused");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void httpsTest() throws Exception {
+        /* the certificate of WireMock is not issued for localhost, the test skips the hostname verification */
+        transport = new NioTransport(gson, 1, 4, trustAll()) {
+            @Override
+            SSLEngine newEngine(String host, int port) {
+                SSLEngine engine = trustAll.createSSLEngine(host, port);
+                engine.setUseClientMode(true);
+                return engine;
+            }
+
+            private final SSLContext trustAll = trustAll();
+        };
+        stubFor(get(urlEqualTo("/providers/cards"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody(gson.toJson(new CardProviderResponse("list", 1, data)))));
+        List<Future<Response<CardProviderResponse>>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(transport.executeAsync(providersRequest("https://localhost:8443"), CardProviderResponse.class, null));
+        }
+        for (Future<Response<CardProviderResponse>> f : futures) {
+            assertEquals(data, f.get(10, TimeUnit.SECONDS).model.getData());
+        }
+    }
+
+    @Test
+    public void hostnameVerificationTest() throws Exception {
+        transport = new NioTransport(gson, 1, 4, trustAll());
+        try {
+            transport.execute(providersRequest("https://localhost:8443"), CardProviderResponse.class);
+            fail("The certificate of WireMock is not issued for localhost");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static SSLContext trustAll() {
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, new TrustManager[]{new X509TrustManager() {
+                @Override
+                public void checkClientTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                @Override
+                public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                @Override
+                public X509Certificate[] getAcceptedIssuers() {
+                    return new X509Certificate[0];
+                }
+            }}, null);
+            return context;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.checkout.httpconnector;
+
+import com.checkout.models.CardProviderResponse;
+import com.checkout.models.Json;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StubTransportTest {
+
+    private final Request request = new Request(HttpConnector.HttpMethods.GET, "http://localhost/providers/cards", "key",
+            null, null, "GETCARDPROVIDERS");
+
+    @Test
+    public void stubTest() throws Exception {
+        StubTransport transport = new StubTransport(Json.gson())
+                .stub("GETCARDPROVIDERS", new CardProviderResponse("list", 0, null))
+                .stub("GETCARDPROVIDERS", 503, new ResponseError("503", "Service unavailable", null, null));
+        assertEquals(200, transport.execute(request, CardProviderResponse.class).httpStatus);
+        assertEquals(503, transport.execute(request, CardProviderResponse.class).httpStatus);
+        assertEquals(200, transport.execute(request, CardProviderResponse.class).httpStatus);
+        assertEquals(3, transport.getRequestCount());
+    }
+
+    @Test
+    public void concurrentStubTest() throws Exception {
+        final StubTransport transport = new StubTransport(Json.gson());
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> unexpected = new AtomicReference<>();
+        Thread[] readers = new Thread[2];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        try {
+                            transport.execute(request, CardProviderResponse.class);
+                        } catch (IOException e) {
+                            // no response stubbed yet
+                        } catch (Throwable t) {
+                            unexpected.compareAndSet(null, t);
+                        }
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        /* a request racing with the first stub of an endpoint finds either no stub or a response, never an empty list */
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+        while (System.nanoTime() < end) {
+            transport.reset();
+            transport.stub("GETCARDPROVIDERS", new CardProviderResponse("list", 0, null));
+        }
+        running.set(false);
+        for (Thread reader : readers) reader.join();
+        assertNull(unexpected.get());
+    }
+}
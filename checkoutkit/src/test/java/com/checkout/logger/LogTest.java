@@ -0,0 +1,181 @@
+package com.checkout.logger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogTest {
+
+    /*
+     * Appender keeping the entries in memory
+     */
+    private static class ListAppender implements LogAppender {
+        final List<String> entries = new ArrayList<>();
+
+        @Override
+        public synchronized void append(long timeMillis, Log.Level level, String message) {
+            entries.add(level.getLabel() + ": " + message);
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+
+    @After
+    public void reset() {
+        Log.getLog().setLevel(Log.Level.INFO);
+        Log.getLog().setAppender(new AsyncAppender(new ConsoleAppender()));
+    }
+
+    @Test
+    public void levelTest() {
+        Log log = Log.getLog();
+        ListAppender appender = new ListAppender();
+        log.setAppender(appender);
+        log.setLevel(Log.Level.WARN);
+        assertEquals(false, log.isLoggable(Log.Level.INFO));
+        assertEquals(true, log.isLoggable(Log.Level.ERROR));
+        log.info("info");
+        log.warn("warn");
+        log.error("error");
+        log.setLevel(Log.Level.OFF);
+        log.error("off");
+        assertEquals(false, log.isLoggable(Log.Level.OFF));
+        assertEquals(2, appender.entries.size());
+        assertEquals("WARNING: warn", appender.entries.get(0));
+        assertEquals("ERROR: error", appender.entries.get(1));
+    }
+
+    @Test
+    public void consoleAppenderTest() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConsoleAppender appender = new ConsoleAppender(new PrintStream(out, true));
+        long now = System.currentTimeMillis();
+        appender.append(now, Log.Level.INFO, "message");
+        String expected = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss").format(new Date(now)) + System.getProperty("line.separator")
+                + "INFO: message" + System.getProperty("line.separator");
+        assertEquals(expected, out.toString());
+    }
+
+    @Test
+    public void timestampFormatterTest() {
+        TimestampFormatter formatter = new TimestampFormatter();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+        long now = System.currentTimeMillis();
+        for (long t = now; t < now + 5000; t += 250) {
+            assertEquals(format.format(new Date(t)), formatter.format(t));
+        }
+    }
+
+    @Test
+    public void asyncAppenderTest() throws Exception {
+        final ListAppender list = new ListAppender();
+        final AsyncAppender appender = new AsyncAppender(list, 1 << 16);
+        final int threads = 4;
+        final int perThread = 5000;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            Thread p = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) {
+                        appender.append(System.currentTimeMillis(), Log.Level.INFO, thread + ":" + i);
+                    }
+                }
+            });
+            p.start();
+            producers.add(p);
+        }
+        start.countDown();
+        for (Thread p : producers) p.join();
+        appender.close();
+
+        assertEquals(0, appender.getDropped());
+        assertEquals(threads * perThread, list.entries.size());
+        /* the entries of each thread are written in the order they were logged */
+        int[] next = new int[threads];
+        for (String entry : list.entries) {
+            String[] parts = entry.substring("INFO: ".length()).split(":");
+            int thread = Integer.parseInt(parts[0]);
+            assertEquals(next[thread]++, Integer.parseInt(parts[1]));
+        }
+    }
+
+    @Test
+    public void asyncAppenderIdleTest() throws Exception {
+        final CountDownLatch first = new CountDownLatch(1);
+        final CountDownLatch second = new CountDownLatch(2);
+        final AtomicReference<Thread> drainer = new AtomicReference<>();
+        AsyncAppender appender = new AsyncAppender(new LogAppender() {
+            @Override
+            public void append(long timeMillis, Log.Level level, String message) {
+                drainer.set(Thread.currentThread());
+                first.countDown();
+                second.countDown();
+            }
+
+            @Override
+            public void flush() {
+            }
+        });
+        try {
+            appender.append(0, Log.Level.INFO, "first");
+            assertTrue(first.await(1, TimeUnit.SECONDS));
+            /* with nothing to write the background thread waits without a timeout, it is not woken up periodically */
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (drainer.get().getState() != Thread.State.WAITING && System.nanoTime() < deadline) Thread.sleep(10);
+            assertEquals(Thread.State.WAITING, drainer.get().getState());
+            /* an entry appended to the empty buffer wakes it up, without any flush */
+            appender.append(0, Log.Level.INFO, "second");
+            assertTrue(second.await(1, TimeUnit.SECONDS));
+        } finally {
+            appender.close();
+        }
+    }
+
+    @Test
+    public void asyncAppenderFullTest() {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        LogAppender slow = new LogAppender() {
+            @Override
+            public void append(long timeMillis, Log.Level level, String message) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+        };
+        AsyncAppender appender = new AsyncAppender(slow, 4);
+        for (int i = 0; i < 20; i++) {
+            appender.append(0, Log.Level.INFO, "entry " + i);
+        }
+        assertTrue(appender.getDropped() >= 20 - 4 - 1);
+        blocked.countDown();
+        appender.close();
+    }
+}
@@ -0,0 +1,56 @@
+package com.checkout.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBoundsTest() {
+        for (long v = 0; v < 1000000; v += 7) {
+            int bucket = LatencyHistogram.bucketOf(v);
+            assertTrue(v <= LatencyHistogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || v > LatencyHistogram.upperBoundOf(bucket - 1));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentileTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1000, snapshot.getMax(TimeUnit.MILLISECONDS));
+        assertEquals(500.5, snapshot.getMean(TimeUnit.MILLISECONDS), 0.001);
+        long p50 = snapshot.getPercentile(50, TimeUnit.MILLISECONDS);
+        long p99 = snapshot.getPercentile(99, TimeUnit.MILLISECONDS);
+        assertTrue(p50 >= 500 && p50 <= 625);
+        assertTrue(p99 >= 990 && p99 <= 1000);
+        assertEquals(0, new LatencyHistogram().snapshot().getPercentile(99, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void concurrentRecordTest() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) histogram.record(i * 1000L);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        assertEquals(40000, histogram.snapshot().getCount());
+        assertEquals(9999, histogram.snapshot().getMax(TimeUnit.MICROSECONDS));
+    }
+}
@@ -0,0 +1,84 @@
+package com.checkout.models;
+
+import com.checkout.exceptions.CardException;
+import com.checkout.exceptions.CardException.CardExceptionType;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CardTest {
+
+    private CustDetails billingDetails = new CustDetails("100 test street", "", "E1", "UK", "London", "", "44", "00000000");
+
+    @Test
+    public void createTest() throws Exception {
+        Card.Result valid = Card.create("4242 4242 4242 4242", "test", "06", "2099", "100", billingDetails);
+        assertTrue(valid.isValid());
+        assertNull(valid.getError());
+        assertEquals(Json.toJson(new Card("4242424242424242", "test", "06", "2099", "100", billingDetails)), Json.toJson(valid.getCard()));
+
+        Card.Result number = Card.create("4242424242424241", "test", "06", "2099", "100", null);
+        assertEquals(false, number.isValid());
+        assertNull(number.getCard());
+        assertEquals(CardExceptionType.INVALID_NUMBER, number.getError());
+        assertSame(number, Card.create("1234", "test", "06", "2099", "100", null));
+        assertEquals(CardExceptionType.INVALID_EXPIRY_DATE, Card.create("4242424242424242", "test", "06", "2010", "100", null).getError());
+        assertEquals(CardExceptionType.INVALID_CVV, Card.create("4242424242424242", "test", "06", "2099", "10", null).getError());
+    }
+
+    @Test
+    public void createNonNumericExpiryTest() throws Exception {
+        /* the details are checked without any exception, nothing is printed */
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream stderr = System.err;
+        System.setErr(new PrintStream(err));
+        try {
+            assertEquals(CardExceptionType.INVALID_EXPIRY_DATE, Card.create("4242424242424242", "test", "ab", "2099", "100", null).getError());
+            assertEquals(CardExceptionType.INVALID_EXPIRY_DATE, Card.create("4242424242424242", "test", "06", "20x9", "100", null).getError());
+            assertEquals(CardExceptionType.INVALID_EXPIRY_DATE, Card.create("4242424242424242", "test", null, "2099", "100", null).getError());
+            assertEquals(CardExceptionType.INVALID_EXPIRY_DATE, Card.create("4242424242424242", "test", "06", null, "100", null).getError());
+        } finally {
+            System.setErr(stderr);
+        }
+        assertEquals(0, err.size());
+    }
+
+    @Test
+    public void stacklessTest() throws Exception {
+        CardException first = null;
+        try {
+            CardException.setStackless(true);
+            try {
+                new Card("4242424242424241", "test", "06", "2099", "100");
+                fail("Expected a CardException to be thrown");
+            } catch (CardException e) {
+                first = e;
+                assertEquals(CardExceptionType.INVALID_NUMBER, e.getType());
+                assertEquals(0, e.getStackTrace().length);
+            }
+            try {
+                new Card("4242424242424242", "test", "06", "2099", "100").setNumber("1234");
+                fail("Expected a CardException to be thrown");
+            } catch (CardException e) {
+                assertSame(first, e);
+            }
+        } finally {
+            CardException.setStackless(false);
+        }
+        try {
+            new Card("4242424242424241", "test", "06", "2099", "100");
+            fail("Expected a CardException to be thrown");
+        } catch (CardException e) {
+            assertTrue(e != first);
+            assertTrue(e.getStackTrace().length > 0);
+        }
+    }
+}
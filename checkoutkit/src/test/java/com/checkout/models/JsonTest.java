@@ -0,0 +1,38 @@
+package com.checkout.models;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JsonTest {
+
+    @Test
+    public void sharedInstanceTest() throws Exception {
+        assertSame(Json.gson(), Json.gson());
+        assertSame(ModelAdapterFactory.CARD_TOKEN_RESPONSE, Json.gson().getAdapter(CardTokenResponse.class));
+    }
+
+    @Test
+    public void modelsMappingTest() throws Exception {
+        CustDetails details = new CustDetails("100 test street", "", "E1", "UK", "London", "", "44", "00000000");
+        CardToken token = new CardToken("06", "2099", details, "card_789E87FC-A6BF-4B74-BDB1-80BCC4DD968C", "4242", "Visa", "C96C9E67-DF9A-442A-93C5-CEEE7955314B", "test");
+        CardTokenResponse response = new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", false, "2015-08-03T14:56:14Z", false, token);
+
+        Gson reflective = new Gson();
+        assertEquals(reflective.toJson(token), token.getJson());
+        assertEquals(reflective.toJson(response), response.getJson());
+        assertEquals(token, CardTokenResponse.fromJson(response.getJson()).getCard());
+    }
+
+    @Test
+    public void warmUpTest() throws Exception {
+        Json.warmUp();
+        assertTrue(Json.isWarm());
+        Json.warmUp();
+        assertTrue(Json.isWarm());
+    }
+}
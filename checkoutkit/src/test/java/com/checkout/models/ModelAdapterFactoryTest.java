@@ -0,0 +1,87 @@
+package com.checkout.models;
+
+import com.checkout.httpconnector.ResponseError;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ModelAdapterFactoryTest {
+
+    private Gson reflective = new Gson();
+    private Gson adapters = new GsonBuilder().registerTypeAdapterFactory(new ModelAdapterFactory()).create();
+
+    private CustDetails details = new CustDetails("100 test street", null, "E1", "UK", "London", "", "44", "00000000");
+    private CardToken token = new CardToken("06", "2099", details, "card_789E87FC-A6BF-4B74-BDB1-80BCC4DD968C", "4242", "Visa", "C96C9E67-DF9A-442A-93C5-CEEE7955314B", "test <&>");
+
+    /*
+     * Both Gson instances must write the same JSON and read it back to the same object
+     */
+    private <T> void assertSameMapping(Object model, Class<T> type) {
+        String json = reflective.toJson(model);
+        assertEquals(json, adapters.toJson(model));
+        assertEquals(json, reflective.toJson(adapters.fromJson(json, type)));
+    }
+
+    @Test
+    public void writeAndReadTest() throws Exception {
+        List<CardProvider> providers = new ArrayList<>();
+        providers.add(new CardProvider("cp_1", "VISA", true));
+        providers.add(new CardProvider("cp_2", null, false));
+        providers.add(null);
+
+        assertSameMapping(new Card("4242424242424242", "test", "06", "2099", "100", details), Card.class);
+        assertSameMapping(new Card("4242424242424242", null, "06", "2099", "100"), Card.class);
+        assertSameMapping(details, CustDetails.class);
+        assertSameMapping(new CustDetails(null, null, null, null, null, null, null, null), CustDetails.class);
+        assertSameMapping(token, CardToken.class);
+        assertSameMapping(new CardTokenResponse("card_tok_BE4BEDC5-E804-402C-8770-10F1E8415F50", true, "2015-08-03T14:56:14Z", false, token), CardTokenResponse.class);
+        assertSameMapping(new CardTokenResponse(null, false, null, true, null), CardTokenResponse.class);
+        assertSameMapping(new CardProviderResponse("list", 3, providers), CardProviderResponse.class);
+        assertSameMapping(new CardProviderResponse(null, 0, null), CardProviderResponse.class);
+        assertSameMapping(new ResponseError("70000", "Your API key is invalid.", "evt_1", Arrays.asList("a", null, "b")), ResponseError.class);
+        assertSameMapping(new ResponseError(null, null, null, null), ResponseError.class);
+    }
+
+    @Test
+    public void serializeNullsTest() throws Exception {
+        Gson reflectiveNulls = new GsonBuilder().serializeNulls().create();
+        Gson adaptersNulls = new GsonBuilder().serializeNulls().registerTypeAdapterFactory(new ModelAdapterFactory()).create();
+        CardTokenResponse response = new CardTokenResponse(null, false, null, false, new CardToken(null, null, null, null, null, null, null, null));
+        assertEquals(reflectiveNulls.toJson(response), adaptersNulls.toJson(response));
+    }
+
+    @Test
+    public void lenientReadTest() throws Exception {
+        String json = "{\"id\":\"card_tok_1\",\"liveMode\":\"true\",\"created\":12,\"used\":null,\"unknown\":{\"a\":[1,2]},"
+                + "\"card\":{\"billDetails\":{\"phone\":{\"number\":true}},\"last4\":4242,\"extra\":null}}";
+        assertEquals(reflective.toJson(reflective.fromJson(json, CardTokenResponse.class)),
+                reflective.toJson(adapters.fromJson(json, CardTokenResponse.class)));
+
+        String providers = "{\"count\":\"2\",\"data\":[{\"id\":\"cp_1\",\"cvvRequired\":\"false\"}],\"object\":null}";
+        assertEquals(reflective.toJson(reflective.fromJson(providers, CardProviderResponse.class)),
+                reflective.toJson(adapters.fromJson(providers, CardProviderResponse.class)));
+
+        assertNull(adapters.fromJson("null", CardTokenResponse.class));
+        assertEquals("null", adapters.toJson(null, CardToken.class));
+    }
+
+    @Test
+    public void invalidNumberTest() throws Exception {
+        try {
+            adapters.fromJson("{\"count\":\"two\"}", CardProviderResponse.class);
+            fail("Expected a JsonSyntaxException to be thrown");
+        } catch (JsonSyntaxException e) {
+            // expected, like the reflective mapping
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.checkout.resilience;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    /*
+     * Listener keeping the transitions as "FROM>TO"
+     */
+    private static class Transitions implements ResilienceListener {
+        final List<String> seen = new ArrayList<>();
+
+        @Override
+        public void onStateChange(CircuitBreaker breaker, CircuitBreaker.State from, CircuitBreaker.State to) {
+            seen.add(from + ">" + to);
+        }
+
+        @Override
+        public void onBulkheadFull(Bulkhead bulkhead) {
+            seen.add("FULL:" + bulkhead.getName());
+        }
+    }
+
+    @Test
+    public void opensOnFailureRateTest() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 10, 4, 50, 100, 1000, 60000, 2);
+        Transitions transitions = new Transitions();
+        breaker.setListener(transitions);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(FAST);
+        breaker.onFailure(FAST);
+        breaker.onSuccess(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.getRejected());
+        assertEquals(1, transitions.seen.size());
+        assertEquals("CLOSED>OPEN", transitions.seen.get(0));
+    }
+
+    @Test
+    public void opensOnSlowCallRateTest() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 10, 4, 50, 60, 1000, 60000, 2);
+        breaker.onSuccess(SLOW);
+        breaker.onSuccess(SLOW);
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onSuccess(SLOW);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void slidingWindowTest() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 4, 4, 50, 100, 1000, 60000, 2);
+        breaker.onFailure(FAST);
+        for (int i = 0; i < 20; i++) {
+            breaker.onSuccess(FAST);
+        }
+        breaker.onFailure(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenTest() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 10, 2, 50, 100, 1000, 50, 2);
+        Transitions transitions = new Transitions();
+        breaker.setListener(transitions);
+        breaker.onFailure(FAST);
+        breaker.onFailure(FAST);
+        assertFalse(breaker.tryAcquire());
+        Thread.sleep(100);
+
+        /* two probes are let through, the failed one reopens the circuit */
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess(FAST);
+        breaker.onFailure(FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(100);
+
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals("[CLOSED>OPEN, OPEN>HALF_OPEN, HALF_OPEN>OPEN, OPEN>HALF_OPEN, HALF_OPEN>CLOSED]", transitions.seen.toString());
+    }
+
+    @Test
+    public void cancelledTest() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 10, 1, 50, 100, 1000, 50, 1);
+        assertTrue(breaker.tryAcquire());
+        breaker.onCancelled();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure(FAST);
+        Thread.sleep(100);
+
+        /* the permit of the cancelled probe goes to the next call, never more than the probe calls */
+        assertTrue(breaker.tryAcquire());
+        breaker.onCancelled();
+        breaker.onCancelled();
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess(FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void bulkheadTest() {
+        Resilience resilience = new Resilience() {
+            @Override
+            protected Bulkhead newBulkhead(String environment) {
+                return new Bulkhead(environment, 2);
+            }
+        };
+        Transitions transitions = new Transitions();
+        resilience.addListener(transitions);
+        Bulkhead bulkhead = resilience.getBulkhead("SANDBOX");
+        assertTrue(bulkhead == resilience.getBulkhead("SANDBOX"));
+        assertTrue(bulkhead.tryAcquire());
+        assertTrue(bulkhead.tryAcquire());
+        assertFalse(bulkhead.tryAcquire());
+        assertEquals(2, bulkhead.getInFlight());
+        assertEquals(1, bulkhead.getRejected());
+        bulkhead.release();
+        assertTrue(bulkhead.tryAcquire());
+        assertEquals("[FULL:SANDBOX]", transitions.seen.toString());
+    }
+}